@@ -94,6 +94,57 @@ public class TestFul {
 	/** Number of jobs to store on the worker side (integer, default: 50)  */
 	public static final String PROPERTY_RUNNER_WORKER_JOBS = "testful.runner.nWorkerJobs";
 
+	/** Maximum number of jobs (and of results) exchanged at once between workers and job repositories (integer, default: 20)  */
+	public static final String PROPERTY_RUNNER_BATCH = "testful.runner.batch";
+
+	/** Number of seconds a worker can stay silent before its jobs are dispatched to other workers (integer, default: 60)  */
+	public static final String PROPERTY_RUNNER_LEASE = "testful.runner.lease";
+
+	/** Adapts the number of local workers and the number of prefetched jobs to the load of the machine (Boolean, default: false)  */
+	public static final String PROPERTY_RUNNER_ADAPTIVE = "testful.runner.adaptive";
+
+	/** Executes the jobs of local workers in separate JVMs (Boolean, default: false)  */
+	public static final String PROPERTY_RUNNER_FORK = "testful.runner.fork";
+
+	/** Number of jobs executed by a forked JVM before recycling it (integer, default: 1000)  */
+	public static final String PROPERTY_RUNNER_FORK_JOBS = "testful.runner.fork.jobs";
+
+	/** Percentage of the heap of a forked JVM that can be used before recycling it (integer, default: 80)  */
+	public static final String PROPERTY_RUNNER_FORK_MEMORY = "testful.runner.fork.memory";
+
+	/** Seconds a forked JVM can stay silent while executing a job: then it is killed and replaced by a fresh one (integer, default: 60)  */
+	public static final String PROPERTY_RUNNER_FORK_TIMEOUT = "testful.runner.fork.timeout";
+
+	/** Additional arguments for forked JVMs, separated by spaces (String, default: "")  */
+	public static final String PROPERTY_RUNNER_FORK_JVM_ARGS = "testful.runner.fork.jvmArgs";
+
+	/** Transport used to export the job repository to remote workers: rmi or nio; worker managers are always contacted through rmi (String, default: rmi)  */
+	public static final String PROPERTY_RUNNER_TRANSPORT = "testful.runner.transport";
+
+	/** Port used by the nio transport; 0 to use any free port (integer, default: 0)  */
+	public static final String PROPERTY_RUNNER_PORT = "testful.runner.port";
+
+	/** Directory of the persistent cache of bytecode, shared by workers and runs; empty to disable it (String, default: "")  */
+	public static final String PROPERTY_RUNNER_CACHE = "testful.runner.cache";
+
+	/** Maximum size of the persistent cache of bytecode, in megabytes: the least recently used elements are evicted (integer, default: 256)  */
+	public static final String PROPERTY_RUNNER_CACHE_SIZE = "testful.runner.cache.size";
+
+	/** Jobs requiring fresh classes reuse class loaders, restoring the static state of instrumented classes instead of loading them again; the restore is shallow (objects reachable from static fields are not reset, and static initializers are not executed again), and it must be enabled also when instrumenting classes (Boolean, default: false)  */
+	public static final String PROPERTY_RUNNER_RESTORE_STATIC = "testful.runner.restoreStatic";
+
+	/** The operations of tests being evolved are sent as blocks shared among tests, which workers retrieve only once (Boolean, default: true)  */
+	public static final String PROPERTY_RUNNER_TEST_BLOCKS = "testful.runner.testBlocks";
+
+	/** Tests invoke public methods and constructors through generated call stubs instead of reflection (Boolean, default: true)  */
+	public static final String PROPERTY_EXECUTOR_COMPILED = "testful.executor.compiled";
+
+	/** Tests identical to tests already evaluated (e.g., unmodified offsprings) reuse their evaluation instead of being executed again (Boolean, default: false)  */
+	public static final String PROPERTY_EVALUATION_CACHE = "testful.evaluationCache";
+
+	/** The instrumented classes check if the test must be stopped only at the beginning of methods and on the back-edges of loops, instead of before every invocation, return, and back-edge (Boolean, default: true)  */
+	public static final String PROPERTY_STOPPER_SAFEPOINTS = "testful.stopper.safepoints";
+
 	// --------------------- end of testful's system properties ----------------------
 
 	//  ------------------------- Shared values --------------------------------------
@@ -24,6 +24,8 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.BitSet;
 
+import testful.utils.CompactIO;
+
 public abstract class BitSetCoverage implements CoverageInformation {
 	private static final long serialVersionUID = 3484091845044514922L;
 
@@ -90,7 +92,7 @@ public abstract class BitSetCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(coverage);
+		CompactIO.writeBitSet(out, coverage);
 	}
 
 	/* (non-Javadoc)
@@ -98,6 +100,6 @@ public abstract class BitSetCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		coverage = (BitSet) in.readObject();
+		coverage = CompactIO.readBitSet(in);
 	}
 }
@@ -28,9 +28,20 @@ import testful.utils.ElementManager;
 public class CoverageTestExecutor extends TestExecutor<ElementManager<String, CoverageInformation>> {
 
 	public static Job<TestExecutorInput, ElementManager<String, CoverageInformation>, CoverageTestExecutor> getContext(DataFinder finder, Test test, boolean reloadClasses, TrackerDatum ... data) {
+		return getContext(finder, new TestExecutorInput(test, false, data), reloadClasses);
+	}
+
+	/**
+	 * Creates the job evaluating the coverage of a test
+	 * @param finder the data finder
+	 * @param input the input of the job (if it uses blobs, they must be released when the job completes: see {@link TestExecutorInput#releaseBlobs()})
+	 * @param reloadClasses true if the test requires fresh classes
+	 * @return the job
+	 */
+	public static Job<TestExecutorInput, ElementManager<String, CoverageInformation>, CoverageTestExecutor> getContext(DataFinder finder, TestExecutorInput input, boolean reloadClasses) {
 		Job<TestExecutorInput, ElementManager<String, CoverageInformation>, CoverageTestExecutor> ctx =
 			new Job<TestExecutorInput, ElementManager<String, CoverageInformation>, CoverageTestExecutor>(
-					CoverageTestExecutor.class, finder, new TestExecutorInput(test, false, data));
+					CoverageTestExecutor.class, finder, input);
 
 		ctx.setReloadClasses(reloadClasses);
 		return ctx;
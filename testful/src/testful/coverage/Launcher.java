@@ -259,12 +259,13 @@ public class Launcher {
 
 
 			if(config.stopperOnly) {
-				Instrumenter.run(config, false, false, toInstrument, testful.coverage.stopper.ExecutionStopperInstrumenter.singleton );
+				Instrumenter.run(config, false, false, toInstrument, testful.coverage.stopper.ExecutionStopperInstrumenter.singleton, testful.coverage.soot.StaticStateInstrumenter.singleton );
 			} else {
 				Instrumenter.run(config, config.isBoundaryValueCoverage(), config.isNullPointerHandling(), toInstrument,
 						new testful.coverage.whiteBox.WhiteInstrumenter(config),
 						new testful.coverage.behavior.BehaviorInstrumenter(config),
-						testful.coverage.stopper.ExecutionStopperInstrumenter.singleton
+						testful.coverage.stopper.ExecutionStopperInstrumenter.singleton,
+						testful.coverage.soot.StaticStateInstrumenter.singleton
 						);
 			}
 
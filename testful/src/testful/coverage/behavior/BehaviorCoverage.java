@@ -22,16 +22,21 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import testful.TestFul;
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 public class BehaviorCoverage implements CoverageInformation {
 
@@ -224,16 +229,64 @@ public class BehaviorCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(stateMachine);
+		// abstractions are interned: each distinct one is serialized once, and it is then referred by its index
+		final Map<Object, Integer> ids = new HashMap<Object, Integer>();
+		final List<Object> table = new ArrayList<Object>();
+		for(Entry<Abstraction, Set<Operation>> e : stateMachine.entrySet()) {
+			intern(ids, table, e.getKey());
+			for(Operation op : e.getValue()) {
+				intern(ids, table, op.getPartition());
+				intern(ids, table, op.getTarget());
+			}
+		}
+
+		out.writeObject(table.toArray());
+
+		CompactIO.writeVarInt(out, stateMachine.size());
+		for(Entry<Abstraction, Set<Operation>> e : stateMachine.entrySet()) {
+			CompactIO.writeVarInt(out, ids.get(e.getKey()));
+			CompactIO.writeVarInt(out, e.getValue().size());
+			for(Operation op : e.getValue()) {
+				CompactIO.writeVarInt(out, ids.get(op.getPartition()));
+				CompactIO.writeVarInt(out, ids.get(op.getTarget()));
+			}
+		}
+	}
+
+	private static void intern(Map<Object, Integer> ids, List<Object> table, Object o) {
+		if(!ids.containsKey(o)) {
+			ids.put(o, table.size());
+			table.add(o);
+		}
 	}
 
 	/* (non-Javadoc)
 	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		stateMachine = (Map<Abstraction, Set<Operation>>) in.readObject();
+		final Object[] table = (Object[]) in.readObject();
+
+		try {
+			final int nStates = CompactIO.readVarInt(in);
+			stateMachine = new LinkedHashMap<Abstraction, Set<Operation>>(nStates * 4 / 3 + 1);
+			for(int i = 0; i < nStates; i++) {
+				final Abstraction state = (Abstraction) table[CompactIO.readVarInt(in)];
+
+				final int nOps = CompactIO.readVarInt(in);
+				final Set<Operation> ops = new LinkedHashSet<Operation>(nOps * 4 / 3 + 1);
+				for(int j = 0; j < nOps; j++) {
+					final AbstractionMethod partition = (AbstractionMethod) table[CompactIO.readVarInt(in)];
+					final Abstraction target = (Abstraction) table[CompactIO.readVarInt(in)];
+					ops.add(new Operation(partition, target));
+				}
+
+				stateMachine.put(state, ops);
+			}
+		} catch(RuntimeException e) {
+			// invalid index or wrong type in the table
+			throw new StreamCorruptedException("Invalid behavioral coverage: " + e);
+		}
 	}
 }
 
@@ -25,6 +25,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 public class FaultsCoverage implements CoverageInformation {
 
@@ -105,7 +106,7 @@ public class FaultsCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeInt(faults.size());
+		CompactIO.writeVarInt(out, faults.size());
 		for (Fault f : faults)
 			Fault.write(f, out);
 	}
@@ -115,7 +116,7 @@ public class FaultsCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		int faultSize = in.readInt();
+		int faultSize = CompactIO.readVarInt(in);
 		for (int i = 0; i < faultSize; i++)
 			faults.add(Fault.read(in));
 	}
@@ -0,0 +1,126 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.coverage.soot;
+
+import java.util.Collections;
+
+import soot.Body;
+import soot.Local;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.SootMethodRef;
+import soot.Unit;
+import soot.VoidType;
+import soot.jimple.IdentityStmt;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.jimple.ReturnVoidStmt;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.tagkit.ConstantValueTag;
+import soot.tagkit.Tag;
+import soot.util.Chain;
+import testful.IConfigProject;
+import testful.TestFul;
+import testful.coverage.soot.Instrumenter.UnifiedInstrumentator;
+import testful.runner.StaticState;
+
+/**
+ * Instruments the static initializer of classes, recording the static state of the class
+ * as soon as it is initialized (see {@link StaticState}).
+ * Static fields that are not compile-time constants lose the final modifier, to allow
+ * the runtime to restore them.
+ * Classes are instrumented only if the runtime restores their static state
+ * (see {@link TestFul#PROPERTY_RUNNER_RESTORE_STATIC}): otherwise this instrumenter does nothing.
+ *
+ * @author matteo
+ */
+public class StaticStateInstrumenter implements UnifiedInstrumentator {
+
+	public static final StaticStateInstrumenter singleton = new StaticStateInstrumenter();
+
+	/** if false, classes are reloaded: their static state is not recorded, and their fields keep the final modifier */
+	private static final boolean ENABLED = TestFul.getProperty(TestFul.PROPERTY_RUNNER_RESTORE_STATIC, false);
+
+	private static final SootMethodRef initializedRef;
+	static {
+		Scene.v().loadClassAndSupport(StaticState.class.getName());
+		SootClass staticState = Scene.v().getSootClass(StaticState.class.getName());
+		initializedRef = staticState.getMethodByName("initialized").makeRef();
+	}
+
+	/** the name of the class whose static initializer is being instrumented (null for other methods) */
+	private String clinit;
+
+	private StaticStateInstrumenter() { }
+
+	@Override
+	public void preprocess(SootClass sClass) {
+		if(!ENABLED) return;
+
+		for (SootField field : sClass.getFields())
+			if(field.isStatic() && field.isFinal() && !isConstant(field))
+				field.setModifiers(field.getModifiers() & ~Modifier.FINAL);
+
+		// each class must notify its initialization, even if it does not have a static initializer
+		if(!sClass.declaresMethodByName(SootMethod.staticInitializerName)) {
+			SootMethod meth = new SootMethod(SootMethod.staticInitializerName, Collections.emptyList(), VoidType.v(), Modifier.STATIC);
+			sClass.addMethod(meth);
+
+			JimpleBody body = Jimple.v().newBody(meth);
+			body.getUnits().add(Jimple.v().newReturnVoidStmt());
+			meth.setActiveBody(body);
+		}
+	}
+
+	private static boolean isConstant(SootField field) {
+		for (Tag tag : field.getTags())
+			if(tag instanceof ConstantValueTag) return true;
+
+		return false;
+	}
+
+	@Override
+	public void init(Body oldBody, Body newBody, Chain<Unit> newUnits, IdentityStmt[] paramDefs) {
+		final SootMethod method = newBody.getMethod();
+
+		if(ENABLED && SootMethod.staticInitializerName.equals(method.getName())) clinit = method.getDeclaringClass().getName();
+		else clinit = null;
+	}
+
+	@Override
+	public void processPre(Chain<Unit> newUnits, Stmt op) {
+		if(clinit == null) return;
+
+		if(op instanceof ReturnVoidStmt)
+			newUnits.add(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(initializedRef, StringConstant.v(clinit))));
+	}
+
+	@Override
+	public void processPost(Chain<Unit> newUnits, Stmt op) { }
+
+	@Override
+	public void exceptional(Chain<Unit> newUnits, Local exc) { }
+
+	@Override
+	public void done(IConfigProject config) { }
+}
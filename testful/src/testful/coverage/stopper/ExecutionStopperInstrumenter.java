@@ -18,19 +18,22 @@
 
 package testful.coverage.stopper;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import soot.Body;
+import soot.BooleanType;
 import soot.Local;
 import soot.Scene;
 import soot.SootClass;
+import soot.SootFieldRef;
 import soot.SootMethod;
 import soot.SootMethodRef;
 import soot.Unit;
 import soot.jimple.GotoStmt;
 import soot.jimple.IdentityStmt;
 import soot.jimple.IfStmt;
+import soot.jimple.IntConstant;
 import soot.jimple.Jimple;
 import soot.jimple.RetStmt;
 import soot.jimple.ReturnStmt;
@@ -38,12 +41,18 @@ import soot.jimple.ReturnVoidStmt;
 import soot.jimple.Stmt;
 import soot.util.Chain;
 import testful.IConfigProject;
+import testful.TestFul;
 import testful.coverage.soot.Instrumenter.UnifiedInstrumentator;
 import testful.coverage.soot.Skip;
 
 /**
  * Instruments the class, forcing the termination of the execution when a flag
  * is set to true.
+ * By default, the flag is checked only at the beginning of methods and on the
+ * back-edges of loops: the check is inlined as a read of the flag, and
+ * {@link TestStoppedException#stop()} is invoked only when the flag is set.
+ * Otherwise (see {@link TestFul#PROPERTY_STOPPER_SAFEPOINTS}), {@link TestStoppedException#check()}
+ * is invoked before every invocation, return, and back-edge.
  *
  * @author matteo
  */
@@ -51,14 +60,28 @@ public class ExecutionStopperInstrumenter implements UnifiedInstrumentator {
 
 	public static final ExecutionStopperInstrumenter singleton = new ExecutionStopperInstrumenter();
 
+	/** if true, the flag is checked only at the beginning of methods and on the back-edges of loops */
+	private static final boolean SAFEPOINTS = TestFul.getProperty(TestFul.PROPERTY_STOPPER_SAFEPOINTS, true);
+
 	private static final SootMethodRef checkRef;
+	private static final SootMethodRef stopRef;
+	private static final SootFieldRef killRef;
 	static {
 		Scene.v().loadClassAndSupport(TestStoppedException.class.getName());
 		SootClass stoppedException = Scene.v().getSootClass(TestStoppedException.class.getName());
 		checkRef = stoppedException.getMethodByName("check").makeRef();
+		stopRef = stoppedException.getMethodByName("stop").makeRef();
+		killRef = stoppedException.getFieldByName("kill").makeRef();
 	}
 
-	private List<Unit> previous;
+	/** the statements already processed in the current method (null if the method is the static initializer) */
+	private Set<Unit> previous;
+
+	/** the local used to read the kill flag */
+	private Local localKill;
+
+	/** true if the check at the beginning of the current method has not been added yet */
+	private boolean entryCheck;
 
 	@Override
 	public void preprocess(SootClass sClass) { }
@@ -68,27 +91,68 @@ public class ExecutionStopperInstrumenter implements UnifiedInstrumentator {
 	 */
 	@Override
 	public void init(Body oldBody, Body newBody, Chain<Unit> newUnits, IdentityStmt[] paramDefs) {
+		entryCheck = false;
+
 		if(SootMethod.staticInitializerName.equals(newBody.getMethod().getName())) {
 			previous = null;
-		} else {
-			previous = new ArrayList<Unit>();
+			return;
+		}
+
+		previous = new HashSet<Unit>();
+
+		if(SAFEPOINTS) {
+			localKill = Jimple.v().newLocal("__testful_stopper_kill__", BooleanType.v());
+			newBody.getLocals().add(localKill);
+
+			// the check at the beginning of the method (it handles recursion) is added before the first statement:
+			// it must be covered by the handler of the method, which notifies its exceptional termination to the trackers
+			entryCheck = true;
 		}
 	}
 
 	@Override
 	public void processPre(Chain<Unit> newUnits, Stmt op) {
-		if(op.hasTag(Skip.NAME)) return;
 		if(previous == null) return; // skip if the static constructor is being analyzed
 
+		if(entryCheck && !(op instanceof IdentityStmt)) {
+			entryCheck = false;
+			addCheck(newUnits);
+		}
+
+		if(op.hasTag(Skip.NAME)) return;
+
 		previous.add(op);
 
 		Unit target = null;
 		if(op instanceof GotoStmt) target = ((GotoStmt) op).getTarget();
 		else if(op instanceof IfStmt) target = ((IfStmt) op).getTarget();
+		final boolean backEdge = target != null && previous.contains(target);
+
+		if(SAFEPOINTS) {
+			if(backEdge) addCheck(newUnits);
 
-		if((op instanceof RetStmt || op instanceof ReturnStmt || op instanceof ReturnVoidStmt) ||
-				op.containsInvokeExpr() || (target != null && previous.contains(target)))
+		} else if((op instanceof RetStmt || op instanceof ReturnStmt || op instanceof ReturnVoidStmt) ||
+				op.containsInvokeExpr() || backEdge) {
 			newUnits.add(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(checkRef)));
+		}
+	}
+
+	/**
+	 * Adds the inlined check of the kill flag:
+	 * <pre>
+	 * kill = TestStoppedException.kill
+	 * if kill == 0 goto after
+	 * TestStoppedException.stop()
+	 * after: nop
+	 * </pre>
+	 * @param newUnits the chain being built
+	 */
+	private void addCheck(Chain<Unit> newUnits) {
+		final Unit after = Jimple.v().newNopStmt();
+		newUnits.add(Jimple.v().newAssignStmt(localKill, Jimple.v().newStaticFieldRef(killRef)));
+		newUnits.add(Jimple.v().newIfStmt(Jimple.v().newEqExpr(localKill, IntConstant.v(0)), after));
+		newUnits.add(Jimple.v().newInvokeStmt(Jimple.v().newStaticInvokeExpr(stopRef)));
+		newUnits.add(after);
 	}
 
 	@Override
@@ -99,4 +163,4 @@ public class ExecutionStopperInstrumenter implements UnifiedInstrumentator {
 
 	@Override
 	public void done(IConfigProject config) { }
-}
\ No newline at end of file
+}
@@ -23,15 +23,19 @@ import java.util.logging.Logger;
 
 import testful.TestFul;
 import testful.runner.RemoteClassLoader;
-import testful.utils.Timer;
-import testful.utils.Timer.TimerCallBack;
+import testful.runner.Worker;
+import testful.utils.Watchdog;
+import testful.utils.Watchdog.Deadline;
 
 /**
  * Ensure that third-party code terminates within a given threshold.
+ * It also stops the execution when the job is cancelled.
+ * The deadline of each operation is checked by the {@link Watchdog} shared by all the workers:
+ * starting and stopping the stopper does not require any lock.
  *
  * @author matteo
  */
-public final class Stopper implements TimerCallBack {
+public final class Stopper implements Watchdog.Alarm, Worker.KillSwitch {
 
 	/** If the kill switch is enabled and the classes' loading time is less then  this threshold, stops the execution of the controlled thread */
 	private static final long LOADING_THRESHOLD = 10;
@@ -40,18 +44,13 @@ public final class Stopper implements TimerCallBack {
 	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
 	private static final boolean LOG_FINER = logger.isLoggable(Level.FINER);
 
-	private static ThreadLocal<Timer> timers = new ThreadLocal<Timer>() {
-
-		@Override
-		protected Timer initialValue() {
-			return new Timer(Thread.currentThread().getName() + "-timer");
-		}
-	};
-
 	private final RemoteClassLoader loader;
-	private final Timer timer;
+	private final Deadline deadline;
 	private final Thread controlledThread;
 
+	/** true if the execution of the current operation is being stopped. Set while holding the lock of this */
+	private volatile boolean killed;
+
 	public Stopper() {
 		controlledThread = Thread.currentThread();
 
@@ -59,8 +58,18 @@ public final class Stopper implements TimerCallBack {
 		if(TestFul.DEBUG && !(cl instanceof RemoteClassLoader)) TestFul.debug("Stopper must be loaded by the Testful Class Loader");
 		loader = (RemoteClassLoader) cl;
 
-		timer = timers.get();
-		timer.setCallBack(this);
+		deadline = Watchdog.getDeadline();
+		deadline.setAlarm(this);
+
+		Worker.setKillSwitch(this);
+	}
+
+	/**
+	 * Checks if the job being executed has been cancelled
+	 * @return true if the job has been cancelled, and the execution must not continue
+	 */
+	public boolean isCancelled() {
+		return Worker.isCancelled();
 	}
 
 	/**
@@ -70,50 +79,84 @@ public final class Stopper implements TimerCallBack {
 	public void start(int maxExecTime) {
 
 		// reset the loading counter
-		loader.getLoadingTime();
+		loader.getLoadingTime(controlledThread);
 
-		if(LOG_FINER) logger.finer("Alarm " + timer + " set " + maxExecTime + " ms from now");
-		timer.start(maxExecTime);
+		if(LOG_FINER) logger.finer("Alarm " + deadline + " set " + maxExecTime + " ms from now");
+		deadline.arm(maxExecTime);
 	}
 
 	/**
 	 * Stops the timer: the Stopper does not try to kill the execution of any operation.
 	 */
 	public void stop() {
-		timer.stop();
-		TestStoppedException.dontKill();
-
-		// reset the loading counter
-		loader.getLoadingTime();
+		deadline.disarm();
+
+		// the operation has been stopped (or it is being stopped): wait for it, and clear the stop
+		if(killed) {
+			synchronized(this) {
+				if(killed) {
+					killed = false;
+					TestStoppedException.dontKill();
+				}
+			}
+		}
 
-		if(LOG_FINER) logger.finer("Alarm " + timer + " cleared");
+		if(LOG_FINER) logger.finer("Alarm " + deadline + " cleared");
 	}
 
 	/* (non-Javadoc)
-	 * @see testful.utils.Timer.TimerCallBack#timerExpired()
+	 * @see testful.utils.Watchdog.Alarm#expired(testful.utils.Watchdog.Deadline)
 	 */
 	@Override
-	public void timerExpired() {
+	public void expired(Deadline d) {
 
-		long loadingTime = loader.getLoadingTime();
-		if(LOG_FINER) logger.finer("Alarm " + timer + ": " + loadingTime + " ms spent to load classes");
+		long loadingTime = loader.getLoadingTime(controlledThread);
+		if(LOG_FINER) logger.finer("Alarm " + deadline + ": " + loadingTime + " ms spent to load classes");
 		if(loadingTime > LOADING_THRESHOLD) {
-			timer.stop();
-			timer.start(loadingTime);
-			if(LOG_FINE) logger.fine("Alarm " + timer + " is delayed of " + loadingTime + "ms to compensate the classes loading time");
-		} else {
-			TestStoppedException.kill();
-			controlledThread.interrupt();
-			if(LOG_FINE) logger.fine("Alarm " + timer + " is ringing");
+			deadline.postpone(loadingTime);
+			if(LOG_FINE) logger.fine("Alarm " + deadline + " is delayed of " + loadingTime + "ms to compensate the classes loading time");
+		} else if(stopExecution()) {
+			if(LOG_FINE) logger.fine("Alarm " + deadline + " is ringing");
 		}
 	}
 
+	/**
+	 * Stops the operation being executed, because the job has been cancelled.
+	 * If no operation is running, it does nothing: the execution
+	 * stops before starting the next operation (see {@link #isCancelled()}).
+	 */
+	@Override
+	public void kill() {
+		if(stopExecution() && LOG_FINE) logger.fine("Alarm " + deadline + ": the job has been cancelled");
+	}
+
+	/**
+	 * Stops the operation being executed, if any.
+	 * The flag killed is set before checking the deadline, while {@link #stop()} disarms the deadline
+	 * before checking the flag: either the operation is not stopped, or stop clears the stop.
+	 * @return true if the operation has been stopped
+	 */
+	private synchronized boolean stopExecution() {
+		final boolean wasKilled = killed;
+		killed = true;
+
+		if(!deadline.isArmed()) {
+			killed = wasKilled;
+			return false;
+		}
+
+		TestStoppedException.kill();
+		controlledThread.interrupt();
+		return true;
+	}
+
 	/**
 	 * Discards the timer: release the resources.
 	 * Note: after invoking this method, the instance is no longer usable
 	 */
 	public void done() {
-		timer.setCallBack(null);
-		if(LOG_FINER) logger.finer("Alarm " + timer + " de-registered");
+		Worker.setKillSwitch(null);
+		deadline.setAlarm(null);
+		if(LOG_FINER) logger.finer("Alarm " + deadline + " de-registered");
 	}
 }
@@ -31,8 +31,13 @@ public class TestStoppedException extends RuntimeException implements FaultyExec
 
 	private static final long serialVersionUID = -7939628914571439861L;
 
-	/** if set to true, stops the execution */
-	private static volatile boolean kill = false;
+	/**
+	 * If set to true, stops the execution.
+	 * Instrumented classes read this flag directly (see {@link ExecutionStopperInstrumenter}):
+	 * use {@link #kill()} and {@link #dontKill()} to change it.
+	 * It is volatile to prevent the JIT from hoisting the read out of the loops of the CUT.
+	 */
+	public static volatile boolean kill = false;
 
 	/** If true (and if kill is true) interrupts the static initialization of classes. */
 	private static final boolean STOP_CLINIT = false;
@@ -40,22 +45,34 @@ public class TestStoppedException extends RuntimeException implements FaultyExec
 	/** the exception that is thrown */
 	private static TestStoppedException singleton = null;
 
+	/**
+	 * Stops the execution, if it has been requested.
+	 * This is the fast path: it is small enough to be inlined by the JIT.
+	 */
 	public static void check() {
-		if (kill) {
-			if (singleton == null)
-				singleton = new TestStoppedException();
-
-			if(!STOP_CLINIT) {
-				for (StackTraceElement ste : Thread.currentThread().getStackTrace()) {
-					if(ste.getMethodName().equals("<clinit>")) {
-						Logger.getLogger("testful.coverage.stopper").fine("Not killing the thread: executing the static initialization of " + ste.getClassName());
-						return;
-					}
+		if (kill) stop();
+	}
+
+	/**
+	 * Stops the execution, unless the current thread is performing the static initialization of a class.
+	 * It is invoked when the kill flag is set, and it is kept out of {@link #check()} to keep the fast path small.
+	 */
+	public static void stop() {
+		if(!kill) return;
+
+		if (singleton == null)
+			singleton = new TestStoppedException();
+
+		if(!STOP_CLINIT) {
+			for (StackTraceElement ste : Thread.currentThread().getStackTrace()) {
+				if(ste.getMethodName().equals("<clinit>")) {
+					Logger.getLogger("testful.coverage.stopper").fine("Not killing the thread: executing the static initialization of " + ste.getClassName());
+					return;
 				}
 			}
-
-			throw singleton;
 		}
+
+		throw singleton;
 	}
 
 	public static void kill() {
@@ -24,6 +24,7 @@ import java.io.ObjectOutput;
 
 import testful.TestFul;
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 /**
  * Measures the distance to execute a given branch, optionally
@@ -150,13 +151,13 @@ public class CoverageBranchTarget implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeInt(branchId);
+		CompactIO.writeVarInt(out, branchId);
 		out.writeBoolean(pUse);
 		out.writeDouble(distance);
 		if(defId != null) {
 			out.writeBoolean(true);
-			out.writeInt(defId.getId());
-			Stack.write(defId.getContext(), out);
+			CompactIO.writeVarInt(out, defId.getId());
+			new Stack.Writer().write(defId.getContext(), out);
 
 		} else {
 			out.writeBoolean(false);
@@ -168,14 +169,14 @@ public class CoverageBranchTarget implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		branchId = in.readInt();
+		branchId = CompactIO.readVarInt(in);
 		pUse = in.readBoolean();
 		distance = in.readDouble();
 
 		// if defId != null
 		if(in.readBoolean()) {
-			int id = in.readInt();
-			Stack context = Stack.read(in);
+			int id = CompactIO.readVarInt(in);
+			Stack context = new Stack.Reader().read(in);
 			defId = new ContextualId(id, context);
 		} else {
 			defId = null;
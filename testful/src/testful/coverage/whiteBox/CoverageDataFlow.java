@@ -28,6 +28,7 @@ import java.util.Set;
 
 import testful.TestFul;
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 /**
  * Contains the coverage of the du-pairs
@@ -219,21 +220,22 @@ public class CoverageDataFlow implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeInt(duPairs.size());
+		final Stack.Writer stacks = new Stack.Writer();
+		CompactIO.writeVarInt(out, duPairs.size());
 
 		for (DefUse du : duPairs) {
 
 			if(du.def != null) {
 				out.writeBoolean(true);
-				out.writeInt(du.def.getId());
-				Stack.write(du.def.getContext(), out);
+				CompactIO.writeVarInt(out, du.def.getId());
+				stacks.write(du.def.getContext(), out);
 
 			} else {
 				out.writeBoolean(false);
 			}
 
-			out.writeInt(du.use.getId());
-			Stack.write(du.use.getContext(), out);
+			CompactIO.writeVarInt(out, du.use.getId());
+			stacks.write(du.use.getContext(), out);
 		}
 	}
 
@@ -242,19 +244,20 @@ public class CoverageDataFlow implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		int num = in.readInt();
+		final Stack.Reader stacks = new Stack.Reader();
+		int num = CompactIO.readVarInt(in);
 
 		for (int i = 0; i < num; i++) {
 
 			ContextualId def = null;
 			if(in.readBoolean()) {
-				int id = in.readInt();
-				Stack ctx = Stack.read(in);
+				int id = CompactIO.readVarInt(in);
+				Stack ctx = stacks.read(in);
 				def = new ContextualId(id, ctx);
 			}
 
-			int id = in.readInt();
-			Stack ctx = Stack.read(in);
+			int id = CompactIO.readVarInt(in);
+			Stack ctx = stacks.read(in);
 			ContextualId use = new ContextualId(id, ctx);
 
 			duPairs.add(new DefUse(def, use));
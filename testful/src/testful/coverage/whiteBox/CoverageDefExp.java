@@ -29,6 +29,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 public class CoverageDefExp implements CoverageInformation {
 	private static final long serialVersionUID = 456863110951663193L;
@@ -127,16 +128,17 @@ public class CoverageDefExp implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeInt(quality);
-		out.writeInt(defExpo.size());
+		final Stack.Writer stacks = new Stack.Writer();
+		CompactIO.writeVarInt(out, quality);
+		CompactIO.writeVarInt(out, defExpo.size());
 
 		for (Entry<Stack, Set<ContextualId>> e : defExpo.entrySet()) {
 
-			Stack.write(e.getKey(), out);
-			out.writeInt(e.getValue().size());
+			stacks.write(e.getKey(), out);
+			CompactIO.writeVarInt(out, e.getValue().size());
 			for (ContextualId v : e.getValue()) {
-				out.writeInt(v.getId());
-				Stack.write(v.getContext(), out);
+				CompactIO.writeVarInt(out, v.getId());
+				stacks.write(v.getContext(), out);
 			}
 		}
 
@@ -147,17 +149,18 @@ public class CoverageDefExp implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		quality = in.readInt();
+		final Stack.Reader stacks = new Stack.Reader();
+		quality = CompactIO.readVarInt(in);
 
-		int size = in.readInt();
+		int size = CompactIO.readVarInt(in);
 		for (int i = 0; i < size; i++) {
 
-			Stack key = Stack.read(in);
+			Stack key = stacks.read(in);
 
-			int valueSize = in.readInt();
+			int valueSize = CompactIO.readVarInt(in);
 			Set<ContextualId> value = new HashSet<ContextualId>(valueSize*3/2);
 			for (int j = 0; j < valueSize; j++)
-				value.add(new ContextualId(in.readInt(), Stack.read(in)));
+				value.add(new ContextualId(CompactIO.readVarInt(in), stacks.read(in)));
 
 			defExpo.put(key, value);
 		}
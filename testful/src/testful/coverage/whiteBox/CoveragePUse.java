@@ -27,6 +27,7 @@ import java.util.LinkedHashSet;
 import java.util.Set;
 
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 /**
  * Contains the coverage of the P-Uses (Predicate Uses).
@@ -192,15 +193,16 @@ public class CoveragePUse implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeInt(coverage.size());
+		final Stack.Writer stacks = new Stack.Writer();
+		CompactIO.writeVarInt(out, coverage.size());
 		for (PUse c : coverage) {
-			out.writeInt(c.getBranchId());
+			CompactIO.writeVarInt(out, c.getBranchId());
 
 			ContextualId def = c.getDef();
 			if(def != null) {
 				out.writeBoolean(true);
-				out.writeInt(def.getId());
-				Stack.write(def.getContext(), out);
+				CompactIO.writeVarInt(out, def.getId());
+				stacks.write(def.getContext(), out);
 			} else {
 				out.writeBoolean(false);
 			}
@@ -212,10 +214,11 @@ public class CoveragePUse implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		int size = in.readInt();
+		final Stack.Reader stacks = new Stack.Reader();
+		int size = CompactIO.readVarInt(in);
 		for (int i = 0; i < size; i++) {
-			int branchId = in.readInt();
-			ContextualId def = in.readBoolean() ? new ContextualId(in.readInt(), Stack.read(in)) : null;
+			int branchId = CompactIO.readVarInt(in);
+			ContextualId def = in.readBoolean() ? new ContextualId(CompactIO.readVarInt(in), stacks.read(in)) : null;
 			coverage.add(new PUse(branchId, def));
 		}
 	}
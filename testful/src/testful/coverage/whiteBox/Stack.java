@@ -22,18 +22,26 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import testful.utils.CompactIO;
 
 /**
  * Manages the dynamic stack of calls.
+ * Stacks are immutable: the tracker interns them (see {@link TrackerWhiteBox#getStack()}).
  * @author matteo
  */
 public final class Stack implements Serializable {
 	private static final long serialVersionUID = 4163032478310472158L;
 
-	private final Integer[] stack;
+	private final int[] stack;
 	private final int hash;
-	public Stack(Integer[] s) {
+	public Stack(int[] s) {
 		stack = s;
 		hash = Arrays.hashCode(stack);
 	}
@@ -60,27 +68,66 @@ public final class Stack implements Serializable {
 		return Arrays.toString(stack);
 	}
 
-	public static void write(Stack v, ObjectOutput out) throws IOException {
-
-		if(v != null) {
-			out.writeBoolean(true);
-			out.writeShort(v.stack.length);
-			for (Integer s : v.stack)
-				out.writeInt(s);
-
-		} else {
-			out.writeBoolean(false);
+	/**
+	 * Writes stacks, interning them: each stack is written in full only the first time,
+	 * and then it is referred by its position. Use one writer for each serialized object.
+	 */
+	public static class Writer {
+
+		private final Map<Stack, Integer> ids = new HashMap<Stack, Integer>();
+
+		/**
+		 * Writes a stack
+		 * @param v the stack (can be null)
+		 * @param out the output
+		 * @throws IOException if the output fails
+		 */
+		public void write(Stack v, ObjectOutput out) throws IOException {
+			if(v == null) {
+				CompactIO.writeVarInt(out, 0);
+				return;
+			}
+
+			final Integer id = ids.get(v);
+			if(id != null) {
+				CompactIO.writeVarInt(out, id);
+				return;
+			}
+
+			// a new stack
+			ids.put(v, ids.size() + 1);
+			CompactIO.writeVarInt(out, ids.size());
+			CompactIO.writeVarInt(out, v.stack.length);
+			for (int e : v.stack)
+				CompactIO.writeVarInt(out, e);
 		}
 	}
 
-	public static Stack read(ObjectInput in) throws IOException {
-		if(!in.readBoolean()) return null;
-
-		short stackLen = in.readShort();
-		Integer[] stack = new Integer[stackLen];
-		for (int i = 0; i < stackLen; i++)
-			stack[i] = in.readInt();
-
-		return new Stack(stack);
+	/** Reads the stacks written by a {@link Writer} */
+	public static class Reader {
+
+		private final List<Stack> stacks = new ArrayList<Stack>();
+
+		/**
+		 * Reads a stack
+		 * @param in the input
+		 * @return the stack (possibly null)
+		 * @throws IOException if the input fails or it is malformed
+		 */
+		public Stack read(ObjectInput in) throws IOException {
+			final int id = CompactIO.readVarInt(in);
+			if(id == 0) return null;
+			if(id <= stacks.size()) return stacks.get(id - 1);
+			if(id != stacks.size() + 1) throw new StreamCorruptedException("Invalid reference to stack " + id);
+
+			final int stackLen = CompactIO.readVarInt(in);
+			final int[] stack = new int[stackLen];
+			for (int i = 0; i < stackLen; i++)
+				stack[i] = CompactIO.readVarInt(in);
+
+			final Stack ret = new Stack(stack);
+			stacks.add(ret);
+			return ret;
+		}
 	}
 }
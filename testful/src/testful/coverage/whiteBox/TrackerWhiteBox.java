@@ -19,9 +19,8 @@
 package testful.coverage.whiteBox;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Deque;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -76,8 +75,7 @@ public class TrackerWhiteBox extends Tracker {
 	public void reset() {
 		covBlocks = new BitSet();
 		covBranches = new BitSet();
-		stack = new LinkedList<Integer>();
-		callNum = new HashMap<Integer, Integer>();
+		resetContext();
 
 		ConditionTargetDatum condTargetDatum = (ConditionTargetDatum) Tracker.getDatum(ConditionTargetDatum.KEY);
 		if(condTargetDatum != null) {
@@ -158,51 +156,151 @@ public class TrackerWhiteBox extends Tracker {
 	}
 
 	// ------------------------ Context tracking ------------------------------
-	private static final Integer ONE = 1;
+	// The stacks and the contextual ids are interned in two open-addressing tables,
+	// keyed by the index of the stack and by the id of the method (or of the data access):
+	// once they are created, tracking calls and data accesses does not allocate anything.
+
+	/** the maximum number of interned stacks: when it is exceeded, the tables are cleared at the next reset */
+	private static final int MAX_STACKS = 64 * 1024;
+
+	/** the maximum number of interned contextual ids: when it is exceeded, the tables are cleared at the next reset */
+	private static final int MAX_CONTEXTUAL_IDS = 256 * 1024;
+
+	/** stores the number of calls to each method (indexed by the id of the method) */
+	private int[] callNum = new int[64];
+
+	/** the ids of the methods called since the last reset are lower than this bound */
+	private int callNumBound;
 
-	/** stores the number of calls to each method */
-	private Map<Integer, Integer> callNum;
 	/** stores the stack trace, without recursion */
-	private Deque<Integer> stack;
+	private int[] stackMethods = new int[16];
+
+	/** the index of the interned stack at each depth (stackIdx[0] is the empty stack) */
+	private int[] stackIdx = new int[17];
+
+	/** the depth of the stack trace */
+	private int depth;
+
+	/** the interned stacks, by index */
+	private Stack[] stacks;
+	private int nStacks;
+
+	/** the keys of the calls from an interned stack (see {@link #key(int, int)}) */
+	private long[] callKeys;
+
+	/** the index of the stack reached by the calls; 0 marks a free slot */
+	private int[] callValues;
+
+	/** the keys of the interned contextual ids (see {@link #key(int, int)}) */
+	private long[] idKeys;
+
+	/** the interned contextual ids; null marks a free slot */
+	private ContextualId[] idValues;
+	private int nIds;
+
+	private void resetContext() {
+		// a return may pop a method that is not on the top of the stack: clear every method called
+		Arrays.fill(callNum, 0, callNumBound, 0);
+		callNumBound = 0;
+		depth = 0;
+
+		if(stacks == null || nStacks > MAX_STACKS || nIds > MAX_CONTEXTUAL_IDS) {
+			stacks = new Stack[64];
+			stacks[0] = new Stack(new int[0]);
+			nStacks = 1;
+
+			callKeys = new long[128];
+			callValues = new int[128];
+
+			idKeys = new long[1024];
+			idValues = new ContextualId[1024];
+			nIds = 0;
+		}
+	}
+
+	private static long key(int stack, int id) {
+		return ((long) stack << 32) | (id & 0xFFFFFFFFL);
+	}
+
+	private static int slot(long key, int mask) {
+		final int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
 	public void trackCall(int id) {
-		Integer ID = id;
+		if(id >= callNum.length) callNum = Arrays.copyOf(callNum, Math.max(id + 1, 2 * callNum.length));
+		if(id >= callNumBound) callNumBound = id + 1;
+		if(callNum[id]++ > 0) return;
 
-		Integer num = callNum.get(ID);
-		if(num == null) {
-			stackCache = null;
-			stack.addLast(ID);
-			callNum.put(ID, ONE);
-		} else {
-			callNum.put(ID, num+1);
+		if(depth == stackMethods.length) {
+			stackMethods = Arrays.copyOf(stackMethods, 2 * depth);
+			stackIdx = Arrays.copyOf(stackIdx, 2 * depth + 1);
 		}
+
+		stackMethods[depth++] = id;
+		stackIdx[depth] = getCallee(stackIdx[depth-1], id);
 	}
 
 	public void trackReturn(int id) {
-		Integer ID = id;
-
-		Integer num = callNum.get(ID);
-		if(!TestFul.DEBUG || num != null) {
-			if(num <= 1) {
-				stackCache = null;
-				callNum.remove(ID);
-				Integer LAST = stack.removeLast();
-
-				if(TestFul.DEBUG && !LAST.equals(ID))
-					TestFul.debug("Context: the method called is not the last on the stack!");
-			} else {
-				callNum.put(ID, num-1);
-			}
-		} else {
+		if(id >= callNum.length || callNum[id] == 0) {
 			logger.fine("WARN: no call for " + id);
+			return;
 		}
+
+		if(--callNum[id] > 0) return;
+
+		depth--;
+		if(TestFul.DEBUG && stackMethods[depth] != id)
+			TestFul.debug("Context: the method called is not the last on the stack!");
 	}
 
-	private Stack stackCache;
-	public Stack getStack() {
-		if(stackCache == null)
-			stackCache = new Stack(stack.toArray(new Integer[stack.size()]));
+	/**
+	 * Returns the interned stack reached by calling a method.
+	 * The stack being created must already be in stackMethods[0..depth-1].
+	 * @param caller the index of the stack of the caller
+	 * @param id the id of the method being called
+	 * @return the index of the stack of the method being called
+	 */
+	private int getCallee(int caller, int id) {
+		final long key = key(caller, id);
+		final int mask = callKeys.length - 1;
+
+		int i = slot(key, mask);
+		while(callValues[i] != 0) {
+			if(callKeys[i] == key) return callValues[i];
+			i = (i + 1) & mask;
+		}
+
+		if(nStacks == stacks.length) stacks = Arrays.copyOf(stacks, 2 * nStacks);
+		final int ret = nStacks++;
+		stacks[ret] = new Stack(Arrays.copyOf(stackMethods, depth));
+
+		callKeys[i] = key;
+		callValues[i] = ret;
+
+		// the calls are nStacks-1 (the empty stack is not reached by any call)
+		if(2 * nStacks > callKeys.length) {
+			final long[] oldKeys = callKeys;
+			final int[] oldValues = callValues;
+			callKeys = new long[2 * oldKeys.length];
+			callValues = new int[2 * oldKeys.length];
+
+			final int newMask = callKeys.length - 1;
+			for (int j = 0; j < oldKeys.length; j++) {
+				if(oldValues[j] == 0) continue;
+
+				int k = slot(oldKeys[j], newMask);
+				while(callValues[k] != 0) k = (k + 1) & newMask;
+				callKeys[k] = oldKeys[j];
+				callValues[k] = oldValues[j];
+			}
+		}
 
-		return stackCache;
+		return ret;
+	}
+
+	public Stack getStack() {
+		return stacks[stackIdx[depth]];
 	}
 
 	/**
@@ -211,7 +309,38 @@ public class TrackerWhiteBox extends Tracker {
 	 * @return the contextual identification
 	 */
 	public ContextualId getDataAccess(int id) {
-		return new ContextualId(id, getStack());
+		final int stack = stackIdx[depth];
+		final long key = key(stack, id);
+		final int mask = idKeys.length - 1;
+
+		int i = slot(key, mask);
+		while(idValues[i] != null) {
+			if(idKeys[i] == key) return idValues[i];
+			i = (i + 1) & mask;
+		}
+
+		final ContextualId ret = new ContextualId(id, stacks[stack]);
+		idKeys[i] = key;
+		idValues[i] = ret;
+
+		if(2 * ++nIds > idKeys.length) {
+			final long[] oldKeys = idKeys;
+			final ContextualId[] oldValues = idValues;
+			idKeys = new long[2 * oldKeys.length];
+			idValues = new ContextualId[2 * oldKeys.length];
+
+			final int newMask = idKeys.length - 1;
+			for (int j = 0; j < oldKeys.length; j++) {
+				if(oldValues[j] == null) continue;
+
+				int k = slot(oldKeys[j], newMask);
+				while(idValues[k] != null) k = (k + 1) & newMask;
+				idKeys[k] = oldKeys[j];
+				idValues[k] = oldValues[j];
+			}
+		}
+
+		return ret;
 	}
 
 	// ------------------------ Def-Use coverage ------------------------------
@@ -0,0 +1,224 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.evolutionary;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.coverage.CoverageInformation;
+import testful.model.Operation;
+import testful.runner.TestfulFuture;
+import testful.utils.ElementManager;
+
+/**
+ * Remembers the evaluations of tests: a map from the operations of a test to its evaluation.
+ * Offsprings that are not modified by the crossover nor by the mutation,
+ * and the identical tests built by the local search, reuse the evaluation of
+ * the original test (even if it is still running) instead of being executed again.
+ * Only whole tests are reused: tests sharing a prefix are executed from scratch.
+ * <br/>
+ * Each consumer receives its own future: cancelling it does not affect the other consumers,
+ * and the evaluation is cancelled only when all its consumers have cancelled their futures.
+ * The coverage is shared among all the consumers of the same evaluation: it must not be modified.
+ * Evaluations that fail or that are cancelled are forgotten.
+ * The cache keeps the most recently used evaluations.
+ *
+ * @author matteo
+ */
+class EvaluationCache {
+
+	private static final Logger logger = Logger.getLogger("testful.evolutionary");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	/** the maximum number of evaluations kept in the cache */
+	private static final int MAX_RESULTS = 4 * 1024;
+
+	/** An evaluation, shared among its consumers (guarded by the cache) */
+	private class Evaluation {
+		final List<Operation> ops;
+		final TestfulFuture<ElementManager<String, CoverageInformation>> future;
+
+		/** the number of consumers that did not cancel their future */
+		int consumers;
+
+		Evaluation(List<Operation> ops, TestfulFuture<ElementManager<String, CoverageInformation>> future) {
+			this.ops = ops;
+			this.future = future;
+		}
+
+		/**
+		 * Creates the future of a new consumer
+		 * @return the future of the consumer
+		 */
+		Future<ElementManager<String, CoverageInformation>> newConsumer() {
+			consumers++;
+			return new Consumer(this);
+		}
+
+		/**
+		 * A consumer has cancelled its future
+		 * @return true if the evaluation must be cancelled (it has no more consumers)
+		 */
+		boolean cancelled() {
+			if(--consumers > 0) return false;
+
+			if(evaluations.get(ops) == this) evaluations.remove(ops);
+			return true;
+		}
+	}
+
+	/** The future of a consumer of an evaluation */
+	private class Consumer implements Future<ElementManager<String, CoverageInformation>> {
+
+		private final Evaluation evaluation;
+
+		/** true if the consumer has cancelled the future */
+		private volatile boolean cancelled;
+
+		Consumer(Evaluation evaluation) {
+			this.evaluation = evaluation;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			final boolean last;
+			synchronized(EvaluationCache.this) {
+				if(cancelled || evaluation.future.isDone()) return false;
+
+				cancelled = true;
+				last = evaluation.cancelled();
+			}
+
+			if(last) evaluation.future.cancel(mayInterruptIfRunning);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled || evaluation.future.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return cancelled || evaluation.future.isDone();
+		}
+
+		@Override
+		public ElementManager<String, CoverageInformation> get() throws InterruptedException, ExecutionException {
+			if(cancelled) throw new CancellationException();
+			final ElementManager<String, CoverageInformation> ret = evaluation.future.get();
+			if(cancelled) throw new CancellationException();
+			return ret;
+		}
+
+		@Override
+		public ElementManager<String, CoverageInformation> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if(cancelled) throw new CancellationException();
+			final ElementManager<String, CoverageInformation> ret = evaluation.future.get(timeout, unit);
+			if(cancelled) throw new CancellationException();
+			return ret;
+		}
+	}
+
+	/** Key=the operations of a test; Value=its evaluation (in access order) */
+	private final Map<List<Operation>, Evaluation> evaluations = new LinkedHashMap<List<Operation>, Evaluation>(16, 0.75f, true) {
+		private static final long serialVersionUID = 6829414087542916530L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Operation>, Evaluation> eldest) {
+			return size() > MAX_RESULTS;
+		}
+	};
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Retrieves the evaluation of a test
+	 * @param ops the operations of the test
+	 * @return a new future for the evaluation of the test, or null if the test has not been evaluated
+	 */
+	public synchronized Future<ElementManager<String, CoverageInformation>> get(Operation[] ops) {
+		final Evaluation e = evaluations.get(Arrays.asList(ops));
+
+		if(e == null || e.future.isCancelled()) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		if(LOG_FINE && hits % 1000 == 0) logger.fine("Evaluation cache: " + hits + " hits, " + misses + " misses");
+
+		return e.newConsumer();
+	}
+
+	/**
+	 * Stores the evaluation of a test
+	 * @param ops the operations of the test
+	 * @param result the evaluation of the test
+	 * @return the future to give to the consumer requesting the evaluation
+	 */
+	@SuppressWarnings("unchecked")
+	public Future<ElementManager<String, CoverageInformation>> put(Operation[] ops, Future<ElementManager<String, CoverageInformation>> result) {
+		if(!(result instanceof TestfulFuture<?>)) return result;
+
+		final Evaluation e = new Evaluation(Arrays.asList(ops.clone()), (TestfulFuture<ElementManager<String, CoverageInformation>>) result);
+
+		final Future<ElementManager<String, CoverageInformation>> ret;
+		synchronized (this) {
+			evaluations.put(e.ops, e);
+			ret = e.newConsumer();
+		}
+
+		// forget the evaluations that do not complete successfully
+		e.future.addListener(new TestfulFuture.Listener<ElementManager<String, CoverageInformation>>() {
+			@Override
+			public void done(TestfulFuture<ElementManager<String, CoverageInformation>> f) {
+				boolean failed = f.isCancelled();
+				if(!failed) {
+					try {
+						f.get();
+					} catch(ExecutionException exc) {
+						failed = true;
+					} catch(InterruptedException exc) {
+						// never happens: the future is completed
+						failed = true;
+					}
+				}
+
+				if(failed) remove(e);
+			}
+		});
+
+		return ret;
+	}
+
+	private synchronized void remove(Evaluation e) {
+		if(evaluations.get(e.ops) == e) evaluations.remove(e.ops);
+	}
+}
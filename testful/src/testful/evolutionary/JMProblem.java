@@ -18,15 +18,16 @@
 
 package testful.evolutionary;
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jmetal.base.Problem;
 import jmetal.base.Solution;
+import jmetal.base.TerminationCriterion;
 import jmetal.util.JMException;
 import testful.coverage.CoverageInformation;
 import testful.coverage.whiteBox.CoverageBasicBlocks;
@@ -36,9 +37,9 @@ import testful.model.Collector;
 import testful.model.Operation;
 import testful.model.Test;
 import testful.model.TestCoverage;
+import testful.runner.CompletionQueue;
 import testful.utils.CoverageWriter;
 import testful.utils.ElementManager;
-import testful.utils.SimpleEntry;
 
 /**
  * Testful problem for JMetal.
@@ -59,6 +60,9 @@ public class JMProblem extends Problem<Operation> {
 	private final CoverageWriter coverageWriter;
 	private final Collector[] collectors;
 
+	/** if not null, the evaluation of individuals is abandoned as soon as the search terminates */
+	private TerminationCriterion terminationCriterion;
+
 	public JMProblem(TestfulProblem problem, IConfigEvolutionary config) {
 		problemName_ = "Testful";
 		numberOfObjectives_  =
@@ -98,6 +102,15 @@ public class JMProblem extends Problem<Operation> {
 		return problem;
 	}
 
+	/**
+	 * Sets the termination criterion of the search: when it is terminated,
+	 * pending evaluations are cancelled.
+	 * @param terminationCriterion the termination criterion (null to always complete evaluations)
+	 */
+	public void setTerminationCriterion(TerminationCriterion terminationCriterion) {
+		this.terminationCriterion = terminationCriterion;
+	}
+
 	@Override
 	public List<Operation> generateNewDecisionVariable() {
 		return problem.generateTest();
@@ -119,18 +132,37 @@ public class JMProblem extends Problem<Operation> {
 
 	@Override
 	public int evaluate(Iterable<Solution<Operation>> set) throws JMException {
-		List<SimpleEntry<Future<ElementManager<String, CoverageInformation>>, Solution<Operation>>> futures = new LinkedList<SimpleEntry<Future<ElementManager<String,CoverageInformation>>,Solution<Operation>>>();
+		CompletionQueue<ElementManager<String, CoverageInformation>, Solution<Operation>> futures = new CompletionQueue<ElementManager<String,CoverageInformation>, Solution<Operation>>();
 
 		int n = 0;
 		for(Solution<Operation> solution : set) {
 			n++;
 			Test test = problem.getTest(solution.getDecisionVariables().variables_);
-			Future<ElementManager<String, CoverageInformation>> future = problem.evaluate(test);
-			futures.add(new SimpleEntry<Future<ElementManager<String, CoverageInformation>>, Solution<Operation>>(future, solution));
+			futures.add(problem.evaluate(test), solution);
 		}
 
 		try {
-			for(Entry<Future<ElementManager<String, CoverageInformation>>, Solution<Operation>> entry : futures) {
+			long nextCheck = System.currentTimeMillis() + 1000;
+
+			// process the results as soon as they are available
+			while(!futures.isEmpty()) {
+				Entry<Future<ElementManager<String, CoverageInformation>>, Solution<Operation>> entry = futures.poll(1, TimeUnit.SECONDS);
+
+				// the search is terminated: do not waste time evaluating the remaining individuals
+				if(terminationCriterion != null && (entry == null || System.currentTimeMillis() > nextCheck)) {
+					nextCheck = System.currentTimeMillis() + 1000;
+
+					if(terminationCriterion.isTerminated()) {
+						int cancelled = futures.cancelAll();
+						if(logger.isLoggable(Level.FINE)) logger.fine("Search terminated: cancelled the evaluation of " + cancelled + " individuals");
+						n -= cancelled;
+
+						if(entry == null) break;
+					}
+				}
+
+				if(entry == null || entry.getKey().isCancelled()) continue;
+
 				ElementManager<String, CoverageInformation> cov = entry.getKey().get();
 				Solution<Operation> solution = entry.getValue();
 				evaluateObjectives(solution, cov);
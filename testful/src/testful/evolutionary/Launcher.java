@@ -111,6 +111,7 @@ public class Launcher {
 		algorithm.setPopulationSize(config.getPopSize());
 		algorithm.setInherit(config.getFitnessInheritance());
 		algorithm.setTerminationCriterion(TimeTerminationCriterion.getTimeTerminationCriterion(config.getTime() * 1000));
+		problem.setTerminationCriterion(algorithm.getTerminationCriterion());
 
 		try {
 			testfulProblem.addReserve(genRandomSeeds(config, testfulProblem));
@@ -77,6 +77,7 @@ import testful.model.Test;
 import testful.model.TestCoverage;
 import testful.model.transformation.SimplifierDynamic;
 import testful.model.transformation.Splitter;
+import testful.runner.Job.Priority;
 import testful.utils.ElementManager;
 import testful.utils.ElementWithKey;
 import ec.util.MersenneTwisterFast;
@@ -237,7 +238,7 @@ public class LocalSearchBranch extends LocalSearchPopulation<Operation> {
 		final int localSearchId = this.localSearchId.incrementAndGet();
 		Integer nAttempts = attempts.containsKey(test.target) ? attempts.get(test.target) : 0;
 
-		final ElementManager<String, CoverageInformation> covs = problem.evaluate(test.test, data).get();
+		final ElementManager<String, CoverageInformation> covs = problem.evaluate(test.test, data, Priority.HIGH).get();
 		CoverageBranchTarget covCondOrig = (CoverageBranchTarget)covs.get(CoverageBranchTarget.KEY);
 
 		if(TestFul.DEBUG && covCondOrig == null) {
@@ -270,7 +271,7 @@ public class LocalSearchBranch extends LocalSearchPopulation<Operation> {
 			boolean canContinue = mutate(ops, pos);
 
 			final Test newTest = problem.getTest(ops);
-			ElementManager<String, CoverageInformation> cov = problem.evaluate(newTest, data).get();
+			ElementManager<String, CoverageInformation> cov = problem.evaluate(newTest, data, Priority.HIGH).get();
 			CoverageBranchTarget covCond = (CoverageBranchTarget) cov.get(CoverageBranchTarget.KEY);
 			if(covCond == null) covCond = new CoverageBranchTarget(test.target.getBranchId(), test.target.isPUse(), test.target.getDefinitionId());
 
@@ -615,14 +616,20 @@ public class LocalSearchBranch extends LocalSearchPopulation<Operation> {
 		}
 
 		List<Test> parts = new ArrayList<Test>();
-		for (Future<Test> opResult : opResultFuture) {
-			Test simpl = SimplifierDynamic.singleton.perform(opResult.get());
-			OperationResult.remove(simpl.getTest());
-			parts.addAll(Splitter.split(true, simpl));
+		Iterator<Future<Test>> opResultIter = opResultFuture.iterator();
+		try {
+			while(opResultIter.hasNext()) {
+				Test simpl = SimplifierDynamic.singleton.perform(opResultIter.next().get());
+				OperationResult.remove(simpl.getTest());
+				parts.addAll(Splitter.split(true, simpl));
+			}
+		} finally {
+			// if something went wrong, do not waste time on the remaining jobs
+			cancel(opResultIter);
 		}
 
 		List<Future<ElementManager<String, CoverageInformation>>> futures = new ArrayList<Future<ElementManager<String, CoverageInformation>>>(parts.size());
-		for(Test t : parts) futures.add(problem.evaluate(t));
+		for(Test t : parts) futures.add(problem.evaluate(t, null, Priority.HIGH));
 
 		if(terminationCriterion instanceof EvaluationTerminationCriterion)
 			((EvaluationTerminationCriterion)terminationCriterion).addEvaluations(parts.size());
@@ -632,12 +639,26 @@ public class LocalSearchBranch extends LocalSearchPopulation<Operation> {
 		// iterate both on parts and on futures
 		Iterator<Test> partsIter = parts.iterator();
 		Iterator<Future<ElementManager<String, CoverageInformation>>> futuresIter = futures.iterator();
-		while(partsIter.hasNext())
-			tests.add(new TestCoverage(partsIter.next(), futuresIter.next().get()));
+		try {
+			while(partsIter.hasNext() && !terminationCriterion.isTerminated())
+				tests.add(new TestCoverage(partsIter.next(), futuresIter.next().get()));
+		} finally {
+			// the search is terminated (or something went wrong): abandon the remaining jobs
+			cancel(futuresIter);
+		}
 
 		return tests;
 	}
 
+	/**
+	 * Cancels the jobs of the remaining futures
+	 * @param iter the iterator on the futures to cancel
+	 */
+	private static void cancel(Iterator<? extends Future<?>> iter) {
+		while(iter.hasNext())
+			iter.next().cancel(true);
+	}
+
 	private Set<TestWithScore> getTargets(Collection<TestCoverage> tests) {
 
 		// calculate the executed branches
@@ -29,6 +29,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jmetal.util.PseudoRandom;
+import testful.TestFul;
 import testful.coverage.CoverageInformation;
 import testful.coverage.CoverageTestExecutor;
 import testful.coverage.TrackerDatum;
@@ -43,6 +44,7 @@ import testful.model.TestClusterBuilder;
 import testful.model.TestCoverage;
 import testful.model.TestSuite;
 import testful.model.executor.TestExecutorInput;
+import testful.runner.BlobType;
 import testful.runner.ClassType;
 import testful.runner.DataFinderCaching;
 import testful.runner.DataFinderImpl;
@@ -50,6 +52,7 @@ import testful.runner.Job;
 import testful.runner.ObjectType;
 import testful.runner.RemoteClassLoader;
 import testful.runner.RunnerPool;
+import testful.runner.TestfulFuture;
 import testful.utils.ElementManager;
 
 /**
@@ -66,10 +69,15 @@ public class TestfulProblem implements Serializable {
 	private final TestCluster cluster;
 	private final ReferenceFactory refFactory;
 	private final ObjectType objectType;
+	/** the blocks of operations shared among tests (null if tests are sent as a whole) */
+	private final BlobType blobs;
 	private final WhiteBoxAnalysisData whiteAnalysis;
 	private final TrackerDatum[] data;
 	private final boolean reloadClasses;
 
+	/** the evaluations of tests executed with the default tracker data (null if disabled) */
+	private final transient EvaluationCache evaluations = TestFul.getProperty(TestFul.PROPERTY_EVALUATION_CACHE, false) ? new EvaluationCache() : null;
+
 	/** Saves the tests with the best coverage (including fault coverage!) */
 	private final OptimalTestCreator optimal = new OptimalTestCreator();
 
@@ -82,7 +90,15 @@ public class TestfulProblem implements Serializable {
 
 			final ClassType classType = new ClassType(config);
 			objectType = new ObjectType();
-			final DataFinderImpl finderImpl = new DataFinderImpl(classType, objectType);
+
+			final DataFinderImpl finderImpl;
+			if(TestFul.getProperty(TestFul.PROPERTY_RUNNER_TEST_BLOCKS, true)) {
+				blobs = new BlobType();
+				finderImpl = new DataFinderImpl(classType, objectType, blobs);
+			} else {
+				blobs = null;
+				finderImpl = new DataFinderImpl(classType, objectType);
+			}
 
 			whiteAnalysis = new WhiteBoxAnalysisData();
 			classType.addClassData(whiteAnalysis);
@@ -157,14 +173,49 @@ public class TestfulProblem implements Serializable {
 	}
 
 	public Future<ElementManager<String, CoverageInformation>> evaluate(Test test, TrackerDatum[] data) {
+		return evaluate(test, data, Job.Priority.NORMAL);
+	}
+
+	/**
+	 * Evaluates a test
+	 * @param test the test to evaluate
+	 * @param data the tracker data to use (if null, uses the default ones)
+	 * @param priority the priority of the evaluation
+	 * @return the future coverage of the test
+	 */
+	public Future<ElementManager<String, CoverageInformation>> evaluate(Test test, TrackerDatum[] data, Job.Priority priority) {
 		if(data == null) data = this.data;
 
+		// only the evaluations with the default tracker data are reused
+		final EvaluationCache cache = data == this.data ? evaluations : null;
+		if(cache != null) {
+			final Future<ElementManager<String, CoverageInformation>> ret = cache.get(test.getTest());
+			if(ret != null) return ret;
+		}
+
 		invTot.addAndGet(test.getTest().length);
 
+		final TestExecutorInput input = new TestExecutorInput(test, false, data);
+		input.setBlobs(blobs);
+
 		Job<TestExecutorInput, ElementManager<String, CoverageInformation>, CoverageTestExecutor> ctx =
-			CoverageTestExecutor.getContext(finder, test, reloadClasses, data);
+			CoverageTestExecutor.getContext(finder, input, reloadClasses);
+		ctx.setPriority(priority);
+
+		final TestfulFuture<ElementManager<String, CoverageInformation>> ret = RunnerPool.getRunnerPool().execute(ctx);
+
+		// the blocks of the test are kept until the job completes
+		if(blobs != null) {
+			ret.addListener(new TestfulFuture.Listener<ElementManager<String, CoverageInformation>>() {
+				@Override
+				public void done(TestfulFuture<ElementManager<String, CoverageInformation>> f) {
+					input.releaseBlobs();
+				}
+			});
+		}
 
-		return RunnerPool.getRunnerPool().execute(ctx);
+		if(cache != null) return cache.put(test.getTest(), ret);
+		return ret;
 	}
 
 	public long getNumberOfExecutedOperations() {
@@ -21,14 +21,16 @@ package testful.model;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import testful.TestFul;
 
 /**
  * ClassRegistry is a Façade to the remote class-loader
  * and allows one to convert testful.model's element into java.lang.reflect ones.
+ * The elements are cached in arrays indexed by the id of testful.model's elements,
+ * which are dense and small (see {@link TestClusterBuilder}).
  * @author matteo
  */
 public class ClassRegistry implements IClassRegistry {
@@ -45,16 +47,28 @@ public class ClassRegistry implements IClassRegistry {
 		this.loader = loader;
 	}
 
-	private final Map<Integer, Class<?>> clazzCache = new HashMap<Integer, Class<?>>();
+	/**
+	 * Returns an array able to store the element with the given id
+	 * @param cache the array
+	 * @param id the id of the element
+	 * @return the array, or an enlarged copy of it
+	 */
+	private static <T> T[] ensure(T[] cache, int id) {
+		if(id < cache.length) return cache;
+		return Arrays.copyOf(cache, Math.max(id + 1, 2 * cache.length));
+	}
+
+	private Class<?>[] clazzCache = new Class<?>[32];
 	/* (non-Javadoc)
 	 * @see testful.model.IClassRegistry#getClass(testful.model.Clazz)
 	 */
 	@Override
 	public Class<?> getClass(Clazz clazz) throws ClassNotFoundException {
 
-		Class<?> cache = clazzCache.get(clazz.getId());
-		if(cache != null) {
-			return cache;
+		final int id = clazz.getId();
+		if(id < clazzCache.length) {
+			Class<?> cache = clazzCache[id];
+			if(cache != null) return cache;
 		}
 
 		final Class<?> ret;
@@ -126,7 +140,8 @@ public class ClassRegistry implements IClassRegistry {
 			ret = loader.loadClass(clazz.getClassName());
 		}
 
-		clazzCache.put(clazz.getId(), ret);
+		clazzCache = ensure(clazzCache, id);
+		clazzCache[id] = ret;
 
 		return ret;
 	}
@@ -144,59 +159,135 @@ public class ClassRegistry implements IClassRegistry {
 		return ret;
 	}
 
-	private final Map<Integer, Field> fieldCache = new HashMap<Integer, Field>();
+	private Field[] fieldCache = new Field[16];
 	/* (non-Javadoc)
 	 * @see testful.model.IClassRegistry#getField(testful.model.StaticValue)
 	 */
 	@Override
 	public Field getField(StaticValue value) throws ClassNotFoundException, SecurityException, NoSuchFieldException {
 
-		Field cache = fieldCache.get(value.getId());
-		if(cache != null) return cache;
+		final int id = value.getId();
+		if(id < fieldCache.length) {
+			Field cache = fieldCache[id];
+			if(cache != null) return cache;
+		}
 
 		Class<?> declaringClass = getClass(value.getDeclaringClass());
 		Field field = declaringClass.getField(value.getName());
-		fieldCache.put(value.getId(), field);
+		fieldCache = ensure(fieldCache, id);
+		fieldCache[id] = field;
 
 		return field;
 	}
 
-	private final Map<Integer, Method> methodCache = new HashMap<Integer, Method>();
+	private Method[] methodCache = new Method[64];
 	/* (non-Javadoc)
 	 * @see testful.model.IClassRegistry#getMethod(testful.model.Methodz)
 	 */
 	@Override
 	public Method getMethod(Methodz m) throws ClassNotFoundException, SecurityException, NoSuchMethodException {
 
-		Method cache = methodCache.get(m.getId());
-		if(cache != null) return cache;
+		final int id = m.getId();
+		if(id < methodCache.length) {
+			Method cache = methodCache[id];
+			if(cache != null) return cache;
+		}
 
 		Class<?> c = getClass(m.getClazz());
 		Class<?>[] params = getClasses(m.getParameterTypes());
 		Method method = c.getMethod(m.getName(), params);
-		methodCache.put(m.getId(), method);
+		methodCache = ensure(methodCache, id);
+		methodCache[id] = method;
 
 		return method;
 	}
 
-	private final Map<Integer, Constructor<?>> constructorCache = new HashMap<Integer, Constructor<?>>();
+	private Constructor<?>[] constructorCache = new Constructor<?>[16];
 	/* (non-Javadoc)
 	 * @see testful.model.IClassRegistry#getConstructor(testful.model.Constructorz)
 	 */
 	@Override
 	public Constructor<?> getConstructor(Constructorz cns) throws ClassNotFoundException, SecurityException, NoSuchMethodException {
 
-		Constructor<?> cache = constructorCache.get(cns.getId());
-		if(cache != null) return cache;
+		final int id = cns.getId();
+		if(id < constructorCache.length) {
+			Constructor<?> cache = constructorCache[id];
+			if(cache != null) return cache;
+		}
 
 		Class<?> c = getClass(cns.getClazz());
 		Class<?>[] params = getClasses(cns.getParameterTypes());
 		Constructor<?> constructor = c.getConstructor(params);
-		constructorCache.put(cns.getId(), constructor);
+		constructorCache = ensure(constructorCache, id);
+		constructorCache[id] = constructor;
 
 		return constructor;
 	}
 
+	/** generates the call stubs (created when the first one is needed) */
+	private InvokerFactory invokerFactory;
+
+	private InvokerFactory getInvokerFactory() {
+		if(invokerFactory == null) invokerFactory = new InvokerFactory(loader);
+		return invokerFactory;
+	}
+
+	/** the call stubs of methods */
+	private Invoker[] methodInvokerCache = new Invoker[64];
+	/** the methods that must be invoked through reflection */
+	private final BitSet methodWithoutInvoker = new BitSet();
+	/* (non-Javadoc)
+	 * @see testful.model.IClassRegistry#getInvoker(testful.model.Methodz)
+	 */
+	@Override
+	public Invoker getInvoker(Methodz m) throws ClassNotFoundException, SecurityException, NoSuchMethodException {
+
+		final int id = m.getId();
+		if(id < methodInvokerCache.length) {
+			Invoker cache = methodInvokerCache[id];
+			if(cache != null) return cache;
+		}
+		if(methodWithoutInvoker.get(id)) return null;
+
+		Invoker invoker = getInvokerFactory().create(getClass(m.getClazz()), getMethod(m));
+		if(invoker == null) {
+			methodWithoutInvoker.set(id);
+		} else {
+			methodInvokerCache = ensure(methodInvokerCache, id);
+			methodInvokerCache[id] = invoker;
+		}
+
+		return invoker;
+	}
+
+	/** the call stubs of constructors */
+	private Invoker[] constructorInvokerCache = new Invoker[16];
+	/** the constructors that must be invoked through reflection */
+	private final BitSet constructorWithoutInvoker = new BitSet();
+	/* (non-Javadoc)
+	 * @see testful.model.IClassRegistry#getInvoker(testful.model.Constructorz)
+	 */
+	@Override
+	public Invoker getInvoker(Constructorz cns) throws ClassNotFoundException, SecurityException, NoSuchMethodException {
+
+		final int id = cns.getId();
+		if(id < constructorInvokerCache.length) {
+			Invoker cache = constructorInvokerCache[id];
+			if(cache != null) return cache;
+		}
+		if(constructorWithoutInvoker.get(id)) return null;
+
+		Invoker invoker = getInvokerFactory().create(getConstructor(cns));
+		if(invoker == null) {
+			constructorWithoutInvoker.set(id);
+		} else {
+			constructorInvokerCache = ensure(constructorInvokerCache, id);
+			constructorInvokerCache[id] = invoker;
+		}
+
+		return invoker;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
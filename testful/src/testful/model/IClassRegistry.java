@@ -38,4 +38,18 @@ public interface IClassRegistry {
 
 	public abstract Constructor<?> getConstructor(Constructorz cns) throws ClassNotFoundException, SecurityException, NoSuchMethodException;
 
+	/**
+	 * Returns the call stub of a method (see {@link InvokerFactory})
+	 * @param m the method
+	 * @return the call stub, or null if the method must be invoked through reflection
+	 */
+	public abstract Invoker getInvoker(Methodz m) throws ClassNotFoundException, SecurityException, NoSuchMethodException;
+
+	/**
+	 * Returns the call stub of a constructor (see {@link InvokerFactory})
+	 * @param cns the constructor
+	 * @return the call stub, or null if the constructor must be invoked through reflection
+	 */
+	public abstract Invoker getInvoker(Constructorz cns) throws ClassNotFoundException, SecurityException, NoSuchMethodException;
+
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.model;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes a method or a constructor of the class under test,
+ * as a generated call stub (see {@link InvokerFactory}).
+ * It behaves like {@link java.lang.reflect.Method#invoke(Object, Object...)}
+ * and {@link java.lang.reflect.Constructor#newInstance(Object...)}.
+ *
+ * @author matteo
+ */
+public interface Invoker {
+
+	/**
+	 * Performs the invocation. Primitive parameters are converted as {@link PrimitiveClazz#cast(Object)} does.
+	 * @param target the object accepting the method call (not null; ignored for static methods and constructors)
+	 * @param args the parameters
+	 * @return the value returned by the method (null for void methods), or the new object
+	 * @throws InvocationTargetException if the invoked method or constructor throws an exception
+	 */
+	public Object invoke(Object target, Object[] args) throws InvocationTargetException;
+
+}
@@ -0,0 +1,530 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates call stubs (see {@link Invoker}) for the methods and the constructors of the classes under test.
+ * Each stub is a tiny class, whose <code>invoke</code> method unpacks and converts the parameters,
+ * and then calls the method (or the constructor) directly, with
+ * <code>invokevirtual</code>, <code>invokeinterface</code>, <code>invokestatic</code> or <code>invokespecial</code>.
+ * Exceptions thrown by the invoked method are wrapped in an {@link InvocationTargetException}, as reflection does.
+ * <br/>
+ * Stubs are defined by a class loader child of the one loading the classes under test, and are
+ * generated only for public members of public classes: for other members, callers must rely on reflection.
+ * This class and {@link Invoker} must be loaded by the system class loader.
+ *
+ * @author matteo
+ */
+public class InvokerFactory {
+
+	private static final Logger logger = Logger.getLogger("testful.model.executor");
+
+	private static final AtomicLong idGenerator = new AtomicLong();
+
+	private static final String STUB_PREFIX = InvokerFactory.class.getName() + "$Stub";
+	private static final String INVOKER = Invoker.class.getName().replace('.', '/');
+	private static final String FACTORY = InvokerFactory.class.getName().replace('.', '/');
+
+	private static final String INVOKE_DESC = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+	/** The class loader defining the stubs */
+	private static class StubLoader extends ClassLoader {
+		public StubLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		public Class<?> define(String name, byte[] b) {
+			return defineClass(name, b, 0, b.length);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			// stubs must use the same Invoker of their users, whatever the parent class loader is
+			if(name.equals(Invoker.class.getName())) return Invoker.class;
+			if(name.equals(InvokerFactory.class.getName())) return InvokerFactory.class;
+			return super.loadClass(name, resolve);
+		}
+	}
+
+	private final StubLoader loader;
+
+	/**
+	 * Creates a factory of stubs
+	 * @param parent the class loader that loads the classes under test
+	 */
+	public InvokerFactory(ClassLoader parent) {
+		loader = new StubLoader(parent);
+	}
+
+	/**
+	 * Generates the stub for a method
+	 * @param owner the class whose method is invoked (it may inherit the method)
+	 * @param m the method
+	 * @return the stub, or null if it cannot be generated
+	 */
+	public Invoker create(Class<?> owner, Method m) {
+		if(!isAccessible(owner, m)) return null;
+
+		final int invoke;
+		if(Modifier.isStatic(m.getModifiers())) invoke = INVOKESTATIC;
+		else if(owner.isInterface()) invoke = INVOKEINTERFACE;
+		else invoke = INVOKEVIRTUAL;
+
+		return create(owner, m, invoke, m.getName(), m.getParameterTypes(), m.getReturnType());
+	}
+
+	/**
+	 * Generates the stub for a constructor
+	 * @param c the constructor
+	 * @return the stub, or null if it cannot be generated
+	 */
+	public Invoker create(Constructor<?> c) {
+		final Class<?> owner = c.getDeclaringClass();
+		if(Modifier.isAbstract(owner.getModifiers()) || !isAccessible(owner, c)) return null;
+
+		return create(owner, c, INVOKESPECIAL, "<init>", c.getParameterTypes(), Void.TYPE);
+	}
+
+	private static boolean isAccessible(Class<?> owner, Member m) {
+		if(!Modifier.isPublic(owner.getModifiers()) || !Modifier.isPublic(m.getModifiers())) return false;
+
+		final Class<?>[] params = (m instanceof Method) ? ((Method) m).getParameterTypes() : ((Constructor<?>) m).getParameterTypes();
+		for (Class<?> p : params) {
+			while(p.isArray()) p = p.getComponentType();
+			if(!p.isPrimitive() && !Modifier.isPublic(p.getModifiers())) return false;
+		}
+
+		return true;
+	}
+
+	private Invoker create(Class<?> owner, Member m, int invoke, String name, Class<?>[] params, Class<?> ret) {
+		final String stubName = STUB_PREFIX + idGenerator.incrementAndGet();
+
+		try {
+			final byte[] b = generate(stubName, owner, invoke, name, params, ret);
+			if(b == null) return null;
+
+			return (Invoker) loader.define(stubName, b).newInstance();
+
+		} catch(Throwable e) {
+			logger.log(Level.FINE, "Cannot generate the call stub for " + m + ": " + e, e);
+			return null;
+		}
+	}
+
+	// ----------------------------- class file generation -----------------------------
+
+	private static final int ACONST_NULL = 0x01;
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ALOAD_2 = 0x2c;
+	private static final int ALOAD_3 = 0x2d;
+	private static final int AALOAD = 0x32;
+	private static final int ASTORE_3 = 0x4e;
+	private static final int DUP = 0x59;
+	private static final int ARETURN = 0xb0;
+	private static final int RETURN = 0xb1;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC = 0xb8;
+	private static final int INVOKEINTERFACE = 0xb9;
+	private static final int NEW = 0xbb;
+	private static final int ATHROW = 0xbf;
+	private static final int CHECKCAST = 0xc0;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	/** The constant pool of the class being generated */
+	private static class ConstantPool {
+		private final Map<String, Integer> index = new HashMap<String, Integer>();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private int size = 1;
+
+		private Integer get(String key) {
+			return index.get(key);
+		}
+
+		private int put(String key) {
+			index.put(key, size);
+			return size++;
+		}
+
+		public int utf8(String s) throws IOException {
+			final String key = "U" + s;
+			Integer ret = get(key);
+			if(ret != null) return ret;
+
+			out.writeByte(1);
+			out.writeUTF(s);
+			return put(key);
+		}
+
+		public int clazz(String internalName) throws IOException {
+			final String key = "C" + internalName;
+			Integer ret = get(key);
+			if(ret != null) return ret;
+
+			final int name = utf8(internalName);
+			out.writeByte(7);
+			out.writeShort(name);
+			return put(key);
+		}
+
+		public int method(String owner, String name, String desc, boolean itf) throws IOException {
+			final String key = (itf ? "I" : "M") + owner + "." + name + desc;
+			Integer ret = get(key);
+			if(ret != null) return ret;
+
+			final int c = clazz(owner);
+			final int n = utf8(name);
+			final int d = utf8(desc);
+
+			out.writeByte(12);
+			out.writeShort(n);
+			out.writeShort(d);
+			final int nameAndType = put("N" + name + desc);
+
+			out.writeByte(itf ? 11 : 10);
+			out.writeShort(c);
+			out.writeShort(nameAndType);
+			return put(key);
+		}
+	}
+
+	private static byte[] generate(String stubName, Class<?> owner, int invoke, String name, Class<?>[] params, Class<?> ret) throws IOException {
+		final ConstantPool cp = new ConstantPool();
+		final String ownerName = internalName(owner);
+
+		final int thisClass = cp.clazz(stubName.replace('.', '/'));
+		final int superClass = cp.clazz("java/lang/Object");
+		final int itf = cp.clazz(INVOKER);
+		final int objectInit = cp.method("java/lang/Object", "<init>", "()V", false);
+		final int codeAttr = cp.utf8("Code");
+
+		// the body of invoke
+		final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		final DataOutputStream code = new DataOutputStream(codeBytes);
+
+		int stack = 0;
+		if(invoke == INVOKESPECIAL) {
+			code.writeByte(NEW);
+			code.writeShort(cp.clazz(ownerName));
+			code.writeByte(DUP);
+			stack += 2;
+		} else if(invoke != INVOKESTATIC) {
+			code.writeByte(ALOAD_1);
+			code.writeByte(CHECKCAST);
+			code.writeShort(cp.clazz(ownerName));
+			stack++;
+		}
+
+		final StringBuilder desc = new StringBuilder("(");
+		for (int i = 0; i < params.length; i++) {
+			final Class<?> p = params[i];
+			desc.append(descriptor(p));
+
+			code.writeByte(ALOAD_2);
+			if(i <= 5) {
+				code.writeByte(ICONST_0 + i);
+			} else if(i < 128) {
+				code.writeByte(BIPUSH);
+				code.writeByte(i);
+			} else {
+				code.writeByte(SIPUSH);
+				code.writeShort(i);
+			}
+			code.writeByte(AALOAD);
+
+			final String conversion = getConversion(p);
+			if(conversion != null) {
+				code.writeByte(INVOKESTATIC);
+				code.writeShort(cp.method(FACTORY, conversion, "(Ljava/lang/Object;)" + descriptor(p), false));
+			} else if(p != Object.class) {
+				code.writeByte(CHECKCAST);
+				code.writeShort(cp.clazz(internalName(p)));
+			}
+
+			stack += (p == Long.TYPE || p == Double.TYPE) ? 2 : 1;
+		}
+		desc.append(')').append(descriptor(ret));
+
+		// the call is the only instruction whose exceptions are wrapped
+		final int argSize = stack - (invoke == INVOKESPECIAL ? 1 : 0);
+		if(argSize > 255) return null;
+
+		final int callStart = codeBytes.size();
+		code.writeByte(invoke);
+		code.writeShort(cp.method(ownerName, name, desc.toString(), invoke == INVOKEINTERFACE));
+		if(invoke == INVOKEINTERFACE) {
+			code.writeByte(argSize);
+			code.writeByte(0);
+		}
+		final int callEnd = codeBytes.size();
+
+		if(ret == Void.TYPE) {
+			if(invoke != INVOKESPECIAL) code.writeByte(ACONST_NULL);
+		} else if(ret.isPrimitive()) {
+			final String box = internalName(getWrapper(ret));
+			code.writeByte(INVOKESTATIC);
+			code.writeShort(cp.method(box, "valueOf", "(" + descriptor(ret) + ")L" + box + ";", false));
+		}
+		code.writeByte(ARETURN);
+
+		final int handler = codeBytes.size();
+		code.writeByte(ASTORE_3);
+		code.writeByte(NEW);
+		code.writeShort(cp.clazz("java/lang/reflect/InvocationTargetException"));
+		code.writeByte(DUP);
+		code.writeByte(ALOAD_3);
+		code.writeByte(INVOKESPECIAL);
+		code.writeShort(cp.method("java/lang/reflect/InvocationTargetException", "<init>", "(Ljava/lang/Throwable;)V", false));
+		code.writeByte(ATHROW);
+
+		// aaload requires two more slots; long and double results require two slots
+		final int maxStack = Math.max(stack + 2, 3);
+
+		final int initName = cp.utf8("<init>");
+		final int initDesc = cp.utf8("()V");
+		final int invokeName = cp.utf8("invoke");
+		final int invokeDesc = cp.utf8(INVOKE_DESC);
+
+		final ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(classBytes);
+
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(49); // Java 5: no stack map frames are needed
+		out.writeShort(cp.size);
+		cp.out.flush();
+		cp.bytes.writeTo(out);
+
+		out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(itf);
+		out.writeShort(0); // fields
+
+		out.writeShort(2); // methods
+
+		// public <init>() { super(); }
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(initName);
+		out.writeShort(initDesc);
+		out.writeShort(1);
+		out.writeShort(codeAttr);
+		out.writeInt(2 + 2 + 4 + 5 + 2 + 2);
+		out.writeShort(1);
+		out.writeShort(1);
+		out.writeInt(5);
+		out.writeByte(ALOAD_0);
+		out.writeByte(INVOKESPECIAL);
+		out.writeShort(objectInit);
+		out.writeByte(RETURN);
+		out.writeShort(0);
+		out.writeShort(0);
+
+		// public Object invoke(Object target, Object[] args)
+		code.flush();
+		out.writeShort(ACC_PUBLIC);
+		out.writeShort(invokeName);
+		out.writeShort(invokeDesc);
+		out.writeShort(1);
+		out.writeShort(codeAttr);
+		out.writeInt(2 + 2 + 4 + codeBytes.size() + 2 + 8 + 2);
+		out.writeShort(maxStack);
+		out.writeShort(4);
+		out.writeInt(codeBytes.size());
+		codeBytes.writeTo(out);
+		out.writeShort(1);
+		out.writeShort(callStart);
+		out.writeShort(callEnd);
+		out.writeShort(handler);
+		out.writeShort(0); // any exception
+		out.writeShort(0);
+
+		out.writeShort(0); // attributes
+
+		out.flush();
+		return classBytes.toByteArray();
+	}
+
+	private static String internalName(Class<?> c) {
+		return c.getName().replace('.', '/');
+	}
+
+	private static String descriptor(Class<?> c) {
+		if(c.isArray()) return internalName(c);
+		if(c == Void.TYPE) return "V";
+		if(c == Boolean.TYPE) return "Z";
+		if(c == Byte.TYPE) return "B";
+		if(c == Character.TYPE) return "C";
+		if(c == Short.TYPE) return "S";
+		if(c == Integer.TYPE) return "I";
+		if(c == Long.TYPE) return "J";
+		if(c == Float.TYPE) return "F";
+		if(c == Double.TYPE) return "D";
+		return "L" + internalName(c) + ";";
+	}
+
+	private static Class<?> getWrapper(Class<?> c) {
+		if(c == Boolean.TYPE) return Boolean.class;
+		if(c == Byte.TYPE) return Byte.class;
+		if(c == Character.TYPE) return Character.class;
+		if(c == Short.TYPE) return Short.class;
+		if(c == Integer.TYPE) return Integer.class;
+		if(c == Long.TYPE) return Long.class;
+		if(c == Float.TYPE) return Float.class;
+		return Double.class;
+	}
+
+	/** the conversions of primitive values, keyed by the type of the parameter */
+	private static final Map<Class<?>, String> conversions = new HashMap<Class<?>, String>();
+	static {
+		for(Class<?> c : new Class<?>[] { Boolean.TYPE, Byte.TYPE, Character.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE }) {
+			// e.g., toInt for int, and toIntegerObject for java.lang.Integer
+			final String name = c.getName();
+			conversions.put(c, "to" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
+
+			final String wrapper = getWrapper(c).getSimpleName();
+			conversions.put(getWrapper(c), "to" + wrapper + "Object");
+		}
+	}
+
+	private static String getConversion(Class<?> c) {
+		return conversions.get(c);
+	}
+
+	// ----------------------------- conversions -----------------------------
+	// The parameters are converted as PrimitiveClazz.cast does, followed by the widening performed by reflection
+
+	private static IllegalArgumentException mismatch(Object o) {
+		return new IllegalArgumentException("argument type mismatch: " + (o == null ? "null" : o.getClass().getName()));
+	}
+
+	public static boolean toBoolean(Object o) {
+		if(o instanceof Boolean) return (Boolean) o;
+		throw mismatch(o);
+	}
+
+	public static byte toByte(Object o) {
+		if(o instanceof Number) return ((Number) o).byteValue();
+		throw mismatch(o);
+	}
+
+	public static char toChar(Object o) {
+		if(o instanceof Character) return (Character) o;
+		throw mismatch(o);
+	}
+
+	public static short toShort(Object o) {
+		if(o instanceof Number) return ((Number) o).shortValue();
+		throw mismatch(o);
+	}
+
+	public static int toInt(Object o) {
+		if(o instanceof Number) return ((Number) o).intValue();
+		if(o instanceof Character) return (Character) o;
+		throw mismatch(o);
+	}
+
+	public static long toLong(Object o) {
+		if(o instanceof Number) return ((Number) o).longValue();
+		if(o instanceof Character) return (Character) o;
+		throw mismatch(o);
+	}
+
+	public static float toFloat(Object o) {
+		if(o instanceof Number) return ((Number) o).floatValue();
+		if(o instanceof Character) return (Character) o;
+		throw mismatch(o);
+	}
+
+	public static double toDouble(Object o) {
+		if(o instanceof Number) return ((Number) o).doubleValue();
+		if(o instanceof Character) return (Character) o;
+		throw mismatch(o);
+	}
+
+	public static Boolean toBooleanObject(Object o) {
+		if(o == null || o instanceof Boolean) return (Boolean) o;
+		throw mismatch(o);
+	}
+
+	public static Byte toByteObject(Object o) {
+		if(o == null || o instanceof Byte) return (Byte) o;
+		if(o instanceof Number) return ((Number) o).byteValue();
+		throw mismatch(o);
+	}
+
+	public static Character toCharacterObject(Object o) {
+		if(o == null || o instanceof Character) return (Character) o;
+		throw mismatch(o);
+	}
+
+	public static Short toShortObject(Object o) {
+		if(o == null || o instanceof Short) return (Short) o;
+		if(o instanceof Number) return ((Number) o).shortValue();
+		throw mismatch(o);
+	}
+
+	public static Integer toIntegerObject(Object o) {
+		if(o == null || o instanceof Integer) return (Integer) o;
+		if(o instanceof Number) return ((Number) o).intValue();
+		throw mismatch(o);
+	}
+
+	public static Long toLongObject(Object o) {
+		if(o == null || o instanceof Long) return (Long) o;
+		if(o instanceof Number) return ((Number) o).longValue();
+		throw mismatch(o);
+	}
+
+	public static Float toFloatObject(Object o) {
+		if(o == null || o instanceof Float) return (Float) o;
+		if(o instanceof Number) return ((Number) o).floatValue();
+		throw mismatch(o);
+	}
+
+	public static Double toDoubleObject(Object o) {
+		if(o == null || o instanceof Double) return (Double) o;
+		if(o instanceof Number) return ((Number) o).doubleValue();
+		throw mismatch(o);
+	}
+}
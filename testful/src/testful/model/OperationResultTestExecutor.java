@@ -64,6 +64,7 @@ public class OperationResultTestExecutor extends TestExecutor<OperationResult[]>
 					OperationResultTestExecutor.class, finder, new TestExecutorInput(test, false, data));
 
 		ctx.setReloadClasses(reloadClasses);
+		ctx.setPriority(Job.Priority.HIGH); // used by simplification and local search: the caller waits for the result
 
 		final Future<OperationResult[]> infosFuture = RunnerPool.getRunnerPool().execute(ctx);
 		return new Future<T>() {
@@ -119,6 +120,7 @@ public class OperationResultTestExecutor extends TestExecutor<OperationResult[]>
 					OperationResultTestExecutor.class, finder, new TestExecutorInput(test, false, data));
 
 		ctx.setReloadClasses(reloadClasses);
+		ctx.setPriority(Job.Priority.HIGH);
 
 		OperationResult[] infos = RunnerPool.getRunnerPool().execute(ctx).get();
 
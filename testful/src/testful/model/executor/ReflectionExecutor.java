@@ -36,6 +36,7 @@ import testful.model.Clazz;
 import testful.model.Constructorz;
 import testful.model.CreateObject;
 import testful.model.Invoke;
+import testful.model.Invoker;
 import testful.model.Methodz;
 import testful.model.Operation;
 import testful.model.OperationResult;
@@ -63,6 +64,9 @@ public class ReflectionExecutor {
 	private static final boolean LOGGER_FINER  = logger.isLoggable(Level.FINER);
 	private static final boolean LOGGER_FINEST = logger.isLoggable(Level.FINEST);
 
+	/** if true, methods and constructors are invoked through call stubs, when available (see {@link TestFul#PROPERTY_EXECUTOR_COMPILED}) */
+	private static final boolean COMPILED = TestFul.getProperty(TestFul.PROPERTY_EXECUTOR_COMPILED, true);
+
 	/** The internal object repository */
 	private final Object[] repository;
 	private final Operation[] ops;
@@ -114,6 +118,9 @@ public class ReflectionExecutor {
 
 		for(Operation op : ops) {
 
+			// the job has been cancelled: do not execute remaining operations
+			if(stopper.isCancelled()) break;
+
 			final Integer maxExecTime;
 			if(op instanceof CreateObject) maxExecTime = ((CreateObject)op).getConstructor().getMaxExecutionTime();
 			else if (op instanceof Invoke) maxExecTime = ((Invoke)op).getMethod().getMaxExecutionTime();
@@ -274,6 +281,17 @@ public class ReflectionExecutor {
 		Constructorz constructor = op.getConstructor();
 		Reference[] params = op.getParams();
 
+		// get the call stub (it converts primitive values) or the Constructor object
+		final Invoker invoker;
+		Constructor<?> cons;
+		try {
+			invoker = COMPILED ? ClassRegistry.singleton.getInvoker(constructor) : null;
+			cons = invoker == null ? ClassRegistry.singleton.getConstructor(constructor) : null;
+		} catch (Exception exc) {
+			logger.log(Level.WARNING, exc.getMessage(), exc);
+			throw new TestfulInternalException.Impl(exc);
+		}
+
 		// initialize input parameters
 		Clazz[] constructozParamsType = constructor.getParameterTypes();
 		Object[] initargs = new Object[params.length];
@@ -285,26 +303,18 @@ public class ReflectionExecutor {
 				if(initargs[i] == null) {
 					if(opRes != null) opRes.setPreconditionError();
 					throw new PreconditionViolationException.Impl("The primitive value has not been initialized", null);
-				} else {
+				} else if(invoker == null) {
 					initargs[i] = ((PrimitiveClazz) constructozParamsType[i]).cast(initargs[i]);
 				}
 			}
 		}
 
-		// get the Constructor object
-		Constructor<?> cons;
-		try {
-			cons = ClassRegistry.singleton.getConstructor(constructor);
-		} catch (Exception exc) {
-			logger.log(Level.WARNING, exc.getMessage(), exc);
-			throw new TestfulInternalException.Impl(exc);
-		}
-
 		// perform the real invocation
 		Object newObject = null;
 		try {
 
-			newObject = cons.newInstance(initargs);
+			if(invoker != null) newObject = invoker.invoke(null, initargs);
+			else newObject = cons.newInstance(initargs);
 
 			// save results
 			if(targetPos != null) set(targetPos, newObject);
@@ -336,8 +346,10 @@ public class ReflectionExecutor {
 				throw exc;
 			}
 
-			if(discoverFaults)
+			if(discoverFaults) {
+				if(cons == null) cons = ClassRegistry.singleton.getConstructor(constructor);
 				FaultTracker.singleton.process(exc, cons.getExceptionTypes(), initargs, opRes, cons.getDeclaringClass().getName());
+			}
 
 			// a valid exception is thrown
 			if(opRes != null) opRes.setExceptional(exc, null, cluster, ClassRegistry.singleton);
@@ -407,6 +419,10 @@ public class ReflectionExecutor {
 			throw new PreconditionViolationException.Impl("The object accepting the method call is null", null);
 		}
 
+		// get the call stub (it converts primitive values) or the Method object
+		final Invoker invoker = COMPILED ? ClassRegistry.singleton.getInvoker(method) : null;
+		Method m = invoker == null ? ClassRegistry.singleton.getMethod(method) : null;
+
 		// create parameters
 		final Object[] args = new Object[params.length];
 		for(int i = 0; i < args.length; i++) {
@@ -416,20 +432,18 @@ public class ReflectionExecutor {
 				if(args[i] == null) {
 					if(opRes != null) opRes.setPreconditionError();
 					throw new PreconditionViolationException.Impl("The primitive value has not been initialized", null);
-				} else {
+				} else if(invoker == null) {
 					args[i] = ((PrimitiveClazz) paramsTypes[i]).cast(args[i]);
 				}
 			}
 		}
 
-		// get the Method object
-		final Method m = ClassRegistry.singleton.getMethod(method);
-
 		// perform the method call
 		Object result = null;
 		try {
 
-			result = m.invoke(baseObject, args);
+			if(invoker != null) result = invoker.invoke(baseObject, args);
+			else result = m.invoke(baseObject, args);
 
 			if(targetPos != null) set(targetPos, result);
 			if(opRes != null) opRes.setSuccessful(baseObject, result, cluster, ClassRegistry.singleton);
@@ -459,6 +473,8 @@ public class ReflectionExecutor {
 			}
 
 			if(discoverFaults) {
+				if(m == null) m = ClassRegistry.singleton.getMethod(method);
+
 				if(baseObject == null)
 					FaultTracker.singleton.process(exc, m.getExceptionTypes(), args, opRes, m.getDeclaringClass().getName());
 				else
@@ -24,7 +24,11 @@ import java.util.logging.Logger;
 
 import testful.coverage.Tracker;
 import testful.model.Test;
+import testful.model.TestCluster;
+import testful.runner.DataFinder;
 import testful.runner.Executor;
+import testful.runner.ObjectRegistry;
+import testful.runner.RemoteClassLoader;
 
 /**
  * Abstract manager for executing tests.<br/>
@@ -56,6 +60,29 @@ public abstract class TestExecutor<R extends Serializable> extends Executor<Test
 	protected Integer faults = null;
 	protected Long executionTime = null;
 
+	/* (non-Javadoc)
+	 * @see testful.runner.Executor#setInput(java.io.Serializable)
+	 */
+	@Override
+	public void setInput(TestExecutorInput input) {
+		super.setInput(input);
+		decodeTest(input, classLoader);
+	}
+
+	/**
+	 * Decodes the test of an input received from another JVM, using the test cluster
+	 * available to the class loader of the job (see {@link TestExecutorInput#decodeTest(TestCluster, DataFinder)}).
+	 * @param input the input of the job
+	 * @param loader the class loader of the job
+	 */
+	public static void decodeTest(TestExecutorInput input, RemoteClassLoader loader) {
+		if(input.getTest() != null) return;
+
+		final TestCluster cluster = (TestCluster) ObjectRegistry.singleton.getObject(TestCluster.ISERIALIZABLE_ID);
+		if(input.decodeTest(cluster, loader.getFinder()) == null)
+			logger.warning("Cannot decode the test to execute");
+	}
+
 	/**
 	 * Execute the test and retrieve the desired result. Internally, are performed
 	 * the following operations:
@@ -22,14 +22,23 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
 
 import testful.TestFul;
 import testful.coverage.TrackerDatum;
 import testful.model.Test;
-import testful.runner.ObjectRegistry;
+import testful.model.TestCluster;
+import testful.runner.BlobType;
+import testful.runner.DataFinder;
 
 /**
  * Provide a TestExecutor with all the inputs it requires.
+ * It is de-serialized with the class loader of the job, since it refers to classes
+ * (e.g., tracker data) that are not available to the class loader of the worker.
+ * The test is kept in its serialized form, and it is decoded by the test executor
+ * (see {@link #decodeTest(TestCluster, DataFinder)}), which has access to the test cluster.
+ * Local jobs are never serialized, and the test is used as it is.
  * @author matteo
  */
 public class TestExecutorInput implements Externalizable {
@@ -44,6 +53,18 @@ public class TestExecutorInput implements Externalizable {
 
 	private Test test;
 
+	/** the serialized test (null if it has not been serialized yet) */
+	private transient byte[] testSerialized;
+
+	/** the blobs used to share the operations of the test (see {@link TestSerializer}) */
+	private transient BlobType blobs;
+
+	/** the blocks of the test pinned in the blobs (null if none) */
+	private transient List<String> blocks;
+
+	/** true if the blocks of the test have been released: the test is no longer sent as blocks */
+	private transient boolean released;
+
 	@Deprecated
 	public TestExecutorInput() { }
 
@@ -55,12 +76,50 @@ public class TestExecutorInput implements Externalizable {
 
 	/**
 	 * Returns the test to execute
-	 * @return the test test to execute
+	 * @return the test test to execute (null if it has not been decoded yet)
 	 */
 	public Test getTest() {
 		return test;
 	}
 
+	/**
+	 * Decodes the test received from another JVM. It does nothing if the test is already available.
+	 * @param cluster the test cluster of the test
+	 * @param finder the data finder of the job
+	 * @return the test to execute (null if it cannot be decoded)
+	 */
+	public Test decodeTest(TestCluster cluster, DataFinder finder) {
+		if(test == null && testSerialized != null) {
+			test = TestSerializer.deserialize(cluster, finder, testSerialized);
+			testSerialized = null;
+		}
+
+		return test;
+	}
+
+	/**
+	 * Sends the operations of the test as blocks shared with other tests.
+	 * The blobs must be available through the data finder of the job.
+	 * @param blobs the blobs (null to send the whole test)
+	 */
+	public void setBlobs(BlobType blobs) {
+		this.blobs = blobs;
+	}
+
+	/**
+	 * Releases the blocks of the test pinned in the blobs.
+	 * It must be called once the job executing the test has been completed (or cancelled).
+	 */
+	public synchronized void releaseBlobs() {
+		released = true;
+
+		if(blocks != null) {
+			for (String id : blocks)
+				blobs.release(id);
+			blocks = null;
+		}
+	}
+
 	public TrackerDatum[] getTrackerData() {
 		return trackerData;
 	}
@@ -86,7 +145,21 @@ public class TestExecutorInput implements Externalizable {
 		for (TrackerDatum datum : trackerData)
 			out.writeObject(datum);
 
-		byte[] testSerialized = TestSerializer.serialize(test);
+		// the serialized test is cached, since jobs can be sent several times (e.g., if a worker dies):
+		// its blocks are pinned in the blobs until they are released
+		final byte[] testSerialized;
+		synchronized(this) {
+			if(this.testSerialized == null) {
+				if(released) {
+					this.testSerialized = TestSerializer.serialize(test);
+				} else {
+					blocks = new ArrayList<String>();
+					this.testSerialized = TestSerializer.serialize(test, blobs, blocks);
+				}
+			}
+			testSerialized = this.testSerialized;
+		}
+
 		out.writeInt(testSerialized.length);
 		out.write(testSerialized);
 
@@ -107,9 +180,7 @@ public class TestExecutorInput implements Externalizable {
 			trackerData[i] = (TrackerDatum) in.readObject();
 
 		int testSerializedLen = in.readInt();
-		byte[] testSerialized = new byte[testSerializedLen];
+		testSerialized = new byte[testSerializedLen];
 		in.readFully(testSerialized);
-
-		test = TestSerializer.deserialize(ObjectRegistry.singleton, testSerialized);
 	}
 }
@@ -20,11 +20,21 @@ package testful.model.executor;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -46,83 +56,85 @@ import testful.model.ResetRepository;
 import testful.model.StaticValue;
 import testful.model.Test;
 import testful.model.TestCluster;
-import testful.runner.ObjectRegistry;
+import testful.runner.BlobType;
+import testful.runner.DataFinder;
+import testful.utils.CompactIO;
 
 /**
- * Efficiently serializes and de-serializes Tests
+ * Efficiently serializes and de-serializes Tests.
+ * Tests are encoded in one of three modes:
+ * <ul>
+ * <li><b>inline</b>: the test carries all its operations;</li>
+ * <li><b>serialized</b>: the test carries all its operations, and uses the java serialization for their verifiers;</li>
+ * <li><b>blocks</b>: the operations are split in blocks, which are stored as blobs (see {@link BlobType})
+ * and are referred by their id. The blocks are pinned in the blobs, and they must be released once the test
+ * has been executed (see {@link BlobType#release(String)}). Blocks are delimited according to their content, hence tests
+ * sharing long sequences of operations (e.g., the offspring of crossover and mutation) share most of their blocks:
+ * workers retrieve through the data finder only the blocks they have not seen yet.</li>
+ * </ul>
  * @author matteo
  */
 public class TestSerializer {
 
 	private static final Logger logger = Logger.getLogger("testful.runner");
 
+	private static final byte MODE_INLINE = 0;
+	private static final byte MODE_BLOCKS = 1;
+	private static final byte MODE_SERIALIZED = 2;
+
+	/** the minimum number of operations in a block */
+	private static final int MIN_BLOCK = 8;
+
+	/** the average number of operations in a block (must be a power of 2) */
+	private static final int AVG_BLOCK = 32;
+
+	/** the maximum number of operations in a block (its length is written in a single byte) */
+	private static final int MAX_BLOCK = 127;
+
 	// ---------------------------------- serialize ----------------------------------
 
+	/**
+	 * Serializes a test, without storing its operations as blobs
+	 * @param test the test
+	 * @return the serialized test
+	 */
 	public static byte[] serialize(Test test) {
+		return serialize(test, null, null);
+	}
+
+	/**
+	 * Serializes a test, storing its operations as blobs if possible
+	 * @param test the test
+	 * @param blobs the blobs available to the job executing the test (if null, the inline mode is used)
+	 * @param blocks collects the ids of the blocks pinned in the blobs, which must be released once the test has been executed
+	 * @return the serialized test
+	 */
+	public static byte[] serialize(Test test, BlobType blobs, List<String> blocks) {
 		try {
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ObjectOutputStream oo = new ObjectOutputStream(baos);
-
-			// write the references: num.type.refs { ref.class.id, num.refs }
-			Map<Clazz, Integer> refNum = test.getReferenceFactory().getRefNum();
-			oo.writeInt(refNum.size());
-			for (Entry<Clazz, Integer> ref : refNum.entrySet()) {
-				oo.writeInt(ref.getKey().getId());
-				oo.writeInt(ref.getValue());
-			}
+			final boolean verifiers = hasVerifiers(test);
+
+			if(blobs != null && !verifiers && test.getTest().length >= 2 * MIN_BLOCK) {
+				baos.write(MODE_BLOCKS);
+				DataOutputStream out = new DataOutputStream(baos);
+				writeReferences(out, test);
+				writeBlocks(out, test.getTest(), blobs, blocks);
+				out.close();
+
+			} else {
+				baos.write(verifiers ? MODE_SERIALIZED : MODE_INLINE);
+				final OutputStream stream = verifiers ? new ObjectOutputStream(baos) : new DataOutputStream(baos);
+				final DataOutput oo = (DataOutput) stream;
+				writeReferences(oo, test);
 
-			// write the test: test.length { op.type [op-specific data] }
-			oo.writeInt(test.getTest().length);
-			for (Operation op : test.getTest()) {
-
-				if (op instanceof ResetRepository) {
-					// op.type=0 no_extra_data
-					oo.writeByte(0);
-
-				} else if(op instanceof AssignConstant) {
-					// op.type=1 target.id staticValue.id {info ~ null}
-					oo.writeByte(1);
-					AssignConstant ac = (AssignConstant)op;
-					oo.writeInt(ac.getTarget() == null ? -1 : ac.getTarget().getId());
-					oo.writeInt(ac.getValue() == null ? -1 : ac.getValue().getId());
-
-				} else if(op instanceof AssignPrimitive) {
-					// op.type=2 target.id value {info ~ null}
-					oo.writeByte(2);
-					AssignPrimitive ap = (AssignPrimitive)op;
-					oo.writeInt(ap.getTarget() == null ? -1 : ap.getTarget().getId());
-					writePrimitive(oo, ap.getValue());
-
-				} else if(op instanceof CreateObject) {
-					// op.type=3 target.id cosntructor.id params.len {param.id} {info ~ null}
-					oo.writeByte(3);
-					CreateObject co = (CreateObject)op;
-					oo.writeInt(co.getTarget() == null ? -1 : co.getTarget().getId());
-					oo.writeInt(co.getConstructor().getId());
-					oo.writeInt(co.getParams().length);
-					for (Reference param : co.getParams())
-						oo.writeInt(param.getId());
-
-					writeOpInfo(oo, op);
-
-				} else if(op instanceof Invoke) {
-					// op.type=3 target.id this.id method.id params.len {param.id} {info ~ null}
-					oo.writeByte(4);
-					Invoke in = (Invoke)op;
-					oo.writeInt(in.getTarget() == null ? -1 : in.getTarget().getId());
-					oo.writeInt(in.getThis() == null ? -1 : in.getThis().getId());
-					oo.writeInt(in.getMethod().getId());
-					oo.writeInt(in.getParams().length);
-					for (Reference param : in.getParams())
-						oo.writeInt(param.getId());
-
-					writeOpInfo(oo, op);
-
-				} else
-					logger.warning("Unknown operation: " + op.getClass().getName() + " - " + op);
+				// write the test: test.length { op }
+				CompactIO.writeVarInt(oo, test.getTest().length);
+				for (Operation op : test.getTest())
+					writeOperation(oo, op);
+
+				stream.close();
 			}
 
-			oo.close();
 			return baos.toByteArray();
 
 		} catch (IOException e) {
@@ -130,207 +142,362 @@ public class TestSerializer {
 			return new byte[0];
 		}
 	}
-	private static void writePrimitive(ObjectOutputStream oo, Serializable value) throws IOException {
-
-		// isNull [ type value ]
-
-		if(value == null) oo.writeBoolean(true);
-		else {
-			oo.writeBoolean(false);
-
-			if(value instanceof Boolean)        { oo.writeShort(0); oo.writeBoolean((Boolean) value); }
-			else if(value instanceof Byte)      { oo.writeShort(1); oo.writeByte((Byte) value); }
-			else if(value instanceof Character) { oo.writeShort(2); oo.writeChar((Character) value); }
-			else if(value instanceof Double)    { oo.writeShort(3); oo.writeDouble((Double) value); }
-			else if(value instanceof Float)     { oo.writeShort(4); oo.writeFloat((Float) value); }
-			else if(value instanceof Integer)   { oo.writeShort(5); oo.writeInt((Integer) value); }
-			else if(value instanceof Long)      { oo.writeShort(6); oo.writeLong((Long) value); }
-			else if(value instanceof Short)     { oo.writeShort(7); oo.writeShort((Short) value); }
-			else if(value instanceof String)    { oo.writeShort(8); oo.writeUTF((String) value); }
-			else { oo.writeShort(-1); logger.warning("Unexpected primitive: " + value); }
+
+	/** verifiers require the java serialization, which is expensive and cannot be used in blocks */
+	private static boolean hasVerifiers(Test test) {
+		for (Operation op : test.getTest())
+			if(op.getInfo(OperationResult.KEY) instanceof OperationResult.Verifier) return true;
+
+		return false;
+	}
+
+	private static void writeReferences(DataOutput out, Test test) throws IOException {
+		// write the references: num.type.refs { ref.class.id, num.refs }
+		Map<Clazz, Integer> refNum = test.getReferenceFactory().getRefNum();
+		CompactIO.writeVarInt(out, refNum.size());
+		for (Entry<Clazz, Integer> ref : refNum.entrySet()) {
+			CompactIO.writeVarInt(out, ref.getKey().getId());
+			CompactIO.writeVarInt(out, ref.getValue());
 		}
 	}
-	private static void writeOpInfo(ObjectOutputStream oo, Operation op) throws IOException {
 
-		OperationResult or = (OperationResult) op.getInfo(OperationResult.KEY);
+	private static void writeBlocks(DataOutput out, Operation[] ops, BlobType blobs, List<String> blocks) throws IOException {
+		final List<String> ids = new ArrayList<String>();
 
-		// isOpResult [ isVerifier [ verifier ] ]
-		if(or == null) oo.writeBoolean(false);
-		else {
-			oo.writeBoolean(true);
-			if(or instanceof OperationResult.Verifier) {
-				oo.writeBoolean(true);
-				oo.writeObject(or);
-			} else {
-				oo.writeBoolean(false);
+		final ByteArrayOutputStream block = new ByteArrayOutputStream();
+		final DataOutputStream blockOut = new DataOutputStream(block);
+
+		int start = 0;
+		for (int i = 0; i < ops.length; i++) {
+			if(i == start) {
+				// the header of the block: the number of operations (at most MAX_BLOCK)
+				block.reset();
+				blockOut.writeByte(0);
+			}
+
+			writeOperation(blockOut, ops[i]);
+
+			// the end of a block is chosen according to the (deterministic) hash code of its last operation:
+			// inserting or removing operations only affects the blocks containing them
+			final int len = i + 1 - start;
+			if(i == ops.length - 1 || len >= MAX_BLOCK || (len >= MIN_BLOCK && (mix(ops[i].hashCode()) & (AVG_BLOCK - 1)) == 0)) {
+				final byte[] data = block.toByteArray();
+				data[0] = (byte) len;
+				final String id = blobs.pin(data);
+				ids.add(id);
+				blocks.add(id);
+
+				start = i + 1;
 			}
 		}
+
+		// write the blocks: num.blocks { block.id }
+		CompactIO.writeVarInt(out, ids.size());
+		for (String id : ids)
+			out.writeUTF(id);
+	}
+
+	/** spreads the bits of a hash code */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	private static void writeOperation(DataOutput oo, Operation op) throws IOException {
+
+		if (op instanceof ResetRepository) {
+			// op.type=0 no_extra_data
+			oo.writeByte(0);
+
+		} else if(op instanceof AssignConstant) {
+			// op.type=1 target.id staticValue.id {info ~ null}
+			oo.writeByte(1);
+			AssignConstant ac = (AssignConstant)op;
+			writeId(oo, ac.getTarget() == null ? -1 : ac.getTarget().getId());
+			writeId(oo, ac.getValue() == null ? -1 : ac.getValue().getId());
+
+		} else if(op instanceof AssignPrimitive) {
+			// op.type=2 target.id value {info ~ null}
+			oo.writeByte(2);
+			AssignPrimitive ap = (AssignPrimitive)op;
+			writeId(oo, ap.getTarget() == null ? -1 : ap.getTarget().getId());
+			writePrimitive(oo, ap.getValue());
+
+		} else if(op instanceof CreateObject) {
+			// op.type=3 target.id cosntructor.id params.len {param.id} {info ~ null}
+			oo.writeByte(3);
+			CreateObject co = (CreateObject)op;
+			writeId(oo, co.getTarget() == null ? -1 : co.getTarget().getId());
+			CompactIO.writeVarInt(oo, co.getConstructor().getId());
+			CompactIO.writeVarInt(oo, co.getParams().length);
+			for (Reference param : co.getParams())
+				CompactIO.writeVarInt(oo, param.getId());
+
+			writeOpInfo(oo, op);
+
+		} else if(op instanceof Invoke) {
+			// op.type=3 target.id this.id method.id params.len {param.id} {info ~ null}
+			oo.writeByte(4);
+			Invoke in = (Invoke)op;
+			writeId(oo, in.getTarget() == null ? -1 : in.getTarget().getId());
+			writeId(oo, in.getThis() == null ? -1 : in.getThis().getId());
+			CompactIO.writeVarInt(oo, in.getMethod().getId());
+			CompactIO.writeVarInt(oo, in.getParams().length);
+			for (Reference param : in.getParams())
+				CompactIO.writeVarInt(oo, param.getId());
+
+			writeOpInfo(oo, op);
+
+		} else
+			logger.warning("Unknown operation: " + op.getClass().getName() + " - " + op);
+	}
+
+	/** writes an id, which can be -1 (i.e., null) */
+	private static void writeId(DataOutput oo, int id) throws IOException {
+		CompactIO.writeVarInt(oo, id + 1);
+	}
+
+	private static void writePrimitive(DataOutput oo, Serializable value) throws IOException {
+
+		// type [ value ]
+
+		if(value == null)                   { oo.writeByte(0); }
+		else if(value instanceof Boolean)   { oo.writeByte(1); oo.writeBoolean((Boolean) value); }
+		else if(value instanceof Byte)      { oo.writeByte(2); oo.writeByte((Byte) value); }
+		else if(value instanceof Character) { oo.writeByte(3); oo.writeChar((Character) value); }
+		else if(value instanceof Double)    { oo.writeByte(4); oo.writeDouble((Double) value); }
+		else if(value instanceof Float)     { oo.writeByte(5); oo.writeFloat((Float) value); }
+		else if(value instanceof Integer)   { oo.writeByte(6); oo.writeInt((Integer) value); }
+		else if(value instanceof Long)      { oo.writeByte(7); oo.writeLong((Long) value); }
+		else if(value instanceof Short)     { oo.writeByte(8); oo.writeShort((Short) value); }
+		else if(value instanceof String)    { oo.writeByte(9); oo.writeUTF((String) value); }
+		else { oo.writeByte(-1); logger.warning("Unexpected primitive: " + value); }
+	}
+
+	private static void writeOpInfo(DataOutput oo, Operation op) throws IOException {
+
+		OperationResult or = (OperationResult) op.getInfo(OperationResult.KEY);
+
+		// info: 0 (none), 1 (operation result), 2 (verifier) [ verifier ]
+		if(or == null) oo.writeByte(0);
+		else if(or instanceof OperationResult.Verifier) {
+			oo.writeByte(2);
+			((ObjectOutput) oo).writeObject(or);
+		} else {
+			oo.writeByte(1);
+		}
 	}
 
 	// --------------------------------- deserialize ---------------------------------
 
-	public static Test deserialize(ObjectRegistry registry, byte[] serialized) {
+	/**
+	 * De-serializes a test
+	 * @param testCluster the test cluster of the test
+	 * @param finder the data finder providing the blocks of the test (see {@link BlobType})
+	 * @param serialized the serialized test
+	 * @return the test, or null if it cannot be de-serialized
+	 */
+	public static Test deserialize(TestCluster testCluster, DataFinder finder, byte[] serialized) {
 
-		ObjectInputStream oi = null;
+		InputStream stream = null;
 		try {
 
-			ByteArrayInputStream bais = new ByteArrayInputStream(serialized);
-			oi = new ObjectInputStream(bais);
+			if(serialized.length == 0) throw new StreamCorruptedException("Empty serialized test");
 
-			//			String execClassName = oi.readUTF();
-			//			boolean discoverFaults = oi.readBoolean();
+			stream = new ByteArrayInputStream(serialized, 1, serialized.length - 1);
+			final byte mode = serialized[0];
+			if(mode == MODE_SERIALIZED) stream = new ObjectInputStream(stream);
+			else if(mode == MODE_INLINE || mode == MODE_BLOCKS) stream = new DataInputStream(stream);
+			else throw new StreamCorruptedException("Unknown serialization mode " + mode);
 
-			final TestCluster testCluster;
-			final ReferenceFactory testRefFactory;
-			final Operation[] testOps;
-
-			// use the ObjectRegistry and the advanced serialization
-			testCluster = (TestCluster) registry.getObject(TestCluster.ISERIALIZABLE_ID);
+			final DataInput oi = (DataInput) stream;
 
 			// read the references: num.type.refs { ref.class.id, num.refs }
-			int refLen = oi.readInt();
+			int refLen = CompactIO.readVarInt(oi);
 
 			Map<Clazz, Integer> refMap = new TreeMap<Clazz, Integer>();
 			for(int i = 0; i < refLen; i++) {
-				Clazz clazz = testCluster.getClazzById(oi.readInt());
-				int num = oi.readInt();
+				Clazz clazz = testCluster.getClazzById(CompactIO.readVarInt(oi));
+				int num = CompactIO.readVarInt(oi);
 				refMap.put(clazz, num);
 			}
-			testRefFactory = new ReferenceFactory(refMap);
+			final ReferenceFactory testRefFactory = new ReferenceFactory(refMap);
 			final Reference[] testRefs = testRefFactory.getReferences();
 
-			// read the operations
-			int testLen = oi.readInt();
-			testOps = new Operation[testLen];
-			for (int i = 0; i < testLen; i++) {
+			final Operation[] testOps;
+			if(mode != MODE_BLOCKS) {
+				testOps = readOperations(oi, testCluster, testRefs);
+
+			} else {
+				// read the blocks: num.blocks { block.id }
+				final String[] ids = new String[CompactIO.readVarInt(oi)];
+				for (int i = 0; i < ids.length; i++)
+					ids[i] = oi.readUTF();
+
+				final byte[][] blocks = finder.getData(BlobType.NAME, ids);
 
-				byte operationType = oi.readByte();
-				switch(operationType) {
-				case 0: { // ResetRepository
-					testOps[i] = ResetRepository.singleton;
-					break;
+				final List<Operation> ops = new ArrayList<Operation>();
+				for (int i = 0; i < blocks.length; i++) {
+					if(blocks[i] == null) throw new IOException("Cannot retrieve the block " + ids[i]);
+
+					for (Operation op : readOperations(new DataInputStream(new ByteArrayInputStream(blocks[i])), testCluster, testRefs))
+						ops.add(op);
 				}
 
-				case 1: { // AssignConstant
-					int targetId = oi.readInt();
-					Reference ref = (targetId < 0 ? null : testRefs[targetId]);
+				testOps = ops.toArray(new Operation[ops.size()]);
+			}
+
+			return new Test(testCluster, testRefFactory, testOps);
 
-					int valueId = oi.readInt();
-					StaticValue staticValue = valueId < 0 ? null : testCluster.getStaticValueById(valueId);
+		} catch(Exception exc) {
+			logger.log(Level.WARNING, exc.getMessage(), exc);
 
-					testOps[i] = new AssignConstant(ref, staticValue);
-					break;
+		} finally {
+			if(stream != null) {
+				try {
+					stream.close();
+				} catch(IOException e) {
+					logger.log(Level.WARNING, e.getMessage(), e);
 				}
+			}
+		}
 
-				case 2: { // AssignPrimitive
-					int targetId = oi.readInt();
-					Reference ref = (targetId < 0 ? null : testRefs[targetId]);
+		return null;
+	}
 
-					Serializable value = readPrimitive(oi);
+	private static Operation[] readOperations(DataInput oi, TestCluster testCluster, Reference[] testRefs) throws IOException, ClassNotFoundException {
 
-					testOps[i] = new AssignPrimitive(ref, value);
-					break;
-				}
+		// the object input stream, if the operations have been written with java serialization
+		final ObjectInput objIn = oi instanceof ObjectInput ? (ObjectInput) oi : null;
 
-				case 3: { // CreateObject
-					int targetId = oi.readInt();
-					Reference target = (targetId < 0 ? null : testRefs[targetId]);
+		int testLen = CompactIO.readVarInt(oi);
+		Operation[] testOps = new Operation[testLen];
+		for (int i = 0; i < testLen; i++) {
 
-					int constructorId = oi.readInt();
-					Constructorz constructor = testCluster.getConstructorById(constructorId);
+			byte operationType = oi.readByte();
+			switch(operationType) {
+			case 0: { // ResetRepository
+				testOps[i] = ResetRepository.singleton;
+				break;
+			}
 
-					int paramLen = oi.readInt();
-					Reference[] params = new Reference[paramLen];
-					for (int j = 0; j < paramLen; j++) {
-						int paramId = oi.readInt();
-						params[j] = testRefs[paramId];
-					}
+			case 1: { // AssignConstant
+				int targetId = readId(oi);
+				Reference ref = (targetId < 0 ? null : testRefs[targetId]);
 
-					testOps[i] = new CreateObject(target, constructor, params);
-					readOpInfo(oi, testOps[i]);
-					break;
-				}
+				int valueId = readId(oi);
+				StaticValue staticValue = valueId < 0 ? null : testCluster.getStaticValueById(valueId);
 
-				case 4: { // Invoke
-					int targetId = oi.readInt();
-					Reference target = (targetId < 0 ? null : testRefs[targetId]);
+				testOps[i] = new AssignConstant(ref, staticValue);
+				break;
+			}
 
-					int thisId = oi.readInt();
-					Reference _this = (thisId < 0 ? null : testRefs[thisId]);
+			case 2: { // AssignPrimitive
+				int targetId = readId(oi);
+				Reference ref = (targetId < 0 ? null : testRefs[targetId]);
 
-					int methodId = oi.readInt();
-					Methodz method = testCluster.getMethodById(methodId);
+				Serializable value = readPrimitive(oi);
 
-					int paramLen = oi.readInt();
-					Reference[] params = new Reference[paramLen];
-					for (int j = 0; j < paramLen; j++) {
-						int paramId = oi.readInt();
-						params[j] = testRefs[paramId];
-					}
+				testOps[i] = new AssignPrimitive(ref, value);
+				break;
+			}
 
-					testOps[i] = new Invoke(target, _this, method, params);
-					readOpInfo(oi, testOps[i]);
-					break;
-				}
+			case 3: { // CreateObject
+				int targetId = readId(oi);
+				Reference target = (targetId < 0 ? null : testRefs[targetId]);
 
-				default:
-					logger.warning("Unknown operation serialized type " + operationType);
+				int constructorId = CompactIO.readVarInt(oi);
+				Constructorz constructor = testCluster.getConstructorById(constructorId);
+
+				int paramLen = CompactIO.readVarInt(oi);
+				Reference[] params = new Reference[paramLen];
+				for (int j = 0; j < paramLen; j++) {
+					int paramId = CompactIO.readVarInt(oi);
+					params[j] = testRefs[paramId];
 				}
+
+				testOps[i] = new CreateObject(target, constructor, params);
+				readOpInfo(oi, objIn, testOps[i]);
+				break;
 			}
 
-			return new Test(testCluster, testRefFactory, testOps);
+			case 4: { // Invoke
+				int targetId = readId(oi);
+				Reference target = (targetId < 0 ? null : testRefs[targetId]);
 
-		} catch(Exception exc) {
-			logger.log(Level.WARNING, exc.getMessage(), exc);
+				int thisId = readId(oi);
+				Reference _this = (thisId < 0 ? null : testRefs[thisId]);
 
-		} finally {
-			if(oi != null) {
-				try {
-					oi.close();
-				} catch(IOException e) {
-					logger.log(Level.WARNING, e.getMessage(), e);
+				int methodId = CompactIO.readVarInt(oi);
+				Methodz method = testCluster.getMethodById(methodId);
+
+				int paramLen = CompactIO.readVarInt(oi);
+				Reference[] params = new Reference[paramLen];
+				for (int j = 0; j < paramLen; j++) {
+					int paramId = CompactIO.readVarInt(oi);
+					params[j] = testRefs[paramId];
 				}
+
+				testOps[i] = new Invoke(target, _this, method, params);
+				readOpInfo(oi, objIn, testOps[i]);
+				break;
+			}
+
+			default:
+				throw new StreamCorruptedException("Unknown operation serialized type " + operationType);
 			}
 		}
 
-		return null;
+		return testOps;
 	}
 
-	private static Serializable readPrimitive(ObjectInputStream oi) throws IOException {
+	private static int readId(DataInput oi) throws IOException {
+		return CompactIO.readVarInt(oi) - 1;
+	}
 
-		// isNull [ type value ]
+	private static Serializable readPrimitive(DataInput oi) throws IOException {
 
-		boolean isNull = oi.readBoolean();
-		if(isNull) return null;
+		// type [ value ]
 
 		final Serializable ret;
-		short type = oi.readShort();
+		byte type = oi.readByte();
 		switch(type) {
-		case 0: ret = oi.readBoolean(); break;
-		case 1: ret = oi.readByte(); break;
-		case 2: ret = oi.readChar(); break;
-		case 3: ret = oi.readDouble(); break;
-		case 4: ret = oi.readFloat(); break;
-		case 5: ret = oi.readInt(); break;
-		case 6: ret = oi.readLong(); break;
-		case 7: ret = oi.readShort(); break;
-		case 8: ret = oi.readUTF(); break;
+		case 0: ret = null; break;
+		case 1: ret = oi.readBoolean(); break;
+		case 2: ret = oi.readByte(); break;
+		case 3: ret = oi.readChar(); break;
+		case 4: ret = oi.readDouble(); break;
+		case 5: ret = oi.readFloat(); break;
+		case 6: ret = oi.readInt(); break;
+		case 7: ret = oi.readLong(); break;
+		case 8: ret = oi.readShort(); break;
+		case 9: ret = oi.readUTF(); break;
 		default: logger.warning("Unexpected serialized primitive type: " + type); ret = null;
 		}
 
 		return ret;
 	}
 
-	private static void readOpInfo(ObjectInput oi, Operation op) throws ClassNotFoundException, IOException {
+	private static void readOpInfo(DataInput oi, ObjectInput objIn, Operation op) throws ClassNotFoundException, IOException {
+
+		byte info = oi.readByte();
+		switch(info) {
+		case 0:
+			break;
+
+		case 1:
+			op.addInfo(new OperationResult());
+			break;
 
-		boolean isOpResult = oi.readBoolean();
-		if(isOpResult) {
+		case 2:
+			if(objIn == null) throw new StreamCorruptedException("Unexpected verifier");
+			op.addInfo((OperationResult.Verifier) objIn.readObject());
+			break;
 
-			boolean isVerifier = oi.readBoolean();
-			if(isVerifier)
-				op.addInfo((OperationResult.Verifier) oi.readObject());
-			else
-				op.addInfo(new OperationResult());
+		default:
+			throw new StreamCorruptedException("Unknown operation information " + info);
 		}
 	}
 
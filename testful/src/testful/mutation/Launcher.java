@@ -13,6 +13,7 @@ import java.util.zip.GZIPOutputStream;
 import testful.TestFul;
 import testful.coverage.CoverageInformation;
 import testful.coverage.soot.Instrumenter;
+import testful.coverage.soot.StaticStateInstrumenter;
 import testful.coverage.stopper.ExecutionStopperInstrumenter;
 import testful.model.Test;
 import testful.model.TestCoverage;
@@ -54,6 +55,7 @@ public class Launcher {
 
 		Instrumenter.run(config, false, false, config.getGenMutant(),
 				ExecutionStopperInstrumenter.singleton,
+				StaticStateInstrumenter.singleton,
 				new MutatorFunctions(config)
 				);
 	}
@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 public class MutationCoverage implements CoverageInformation {
 	private static final long serialVersionUID = 302573182673397798L;
@@ -114,7 +115,7 @@ public class MutationCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeShort(covs.size());
+		CompactIO.writeVarInt(out, covs.size());
 
 		for (Entry<String, MutationCoverageSingle> c : covs.entrySet()) {
 			out.writeUTF(c.getKey());
@@ -127,7 +128,7 @@ public class MutationCoverage implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		int size = in.readShort();
+		int size = CompactIO.readVarInt(in);
 
 		for (int i = 0; i < size; i++) {
 
@@ -6,6 +6,7 @@ import java.io.ObjectOutput;
 import java.util.BitSet;
 
 import testful.coverage.CoverageInformation;
+import testful.utils.CompactIO;
 
 public class MutationCoverageSingle implements CoverageInformation {
 
@@ -204,9 +205,9 @@ public class MutationCoverageSingle implements CoverageInformation {
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeObject(execAlive);
-		out.writeObject(killed);
-		out.writeObject(notExecuted);
+		CompactIO.writeBitSet(out, execAlive);
+		CompactIO.writeBitSet(out, killed);
+		CompactIO.writeBitSet(out, notExecuted);
 	}
 
 	/* (non-Javadoc)
@@ -214,8 +215,8 @@ public class MutationCoverageSingle implements CoverageInformation {
 	 */
 	@Override
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		execAlive = (BitSet) in.readObject();
-		killed = (BitSet) in.readObject();
-		notExecuted = (BitSet) in.readObject();
+		execAlive = CompactIO.readBitSet(in);
+		killed = CompactIO.readBitSet(in);
+		notExecuted = CompactIO.readBitSet(in);
 	}
 }
@@ -13,6 +13,7 @@ import testful.model.Operation;
 import testful.model.OperationResult;
 import testful.model.Test;
 import testful.model.executor.ReflectionExecutor;
+import testful.model.executor.TestExecutor;
 import testful.model.executor.TestExecutorInput;
 import testful.runner.DataFinder;
 import testful.runner.Executor;
@@ -47,6 +48,7 @@ public class MutationTestExecutor extends Executor<TestExecutorInput, MutationCo
 	@Override
 	public void setInput(TestExecutorInput input) {
 		super.setInput(input);
+		TestExecutor.decodeTest(input, classLoader);
 
 		TrackerDatum[] inputTrackerData = input.getTrackerData();
 
@@ -187,14 +189,16 @@ public class MutationTestExecutor extends Executor<TestExecutorInput, MutationCo
 	private boolean execute(String className, int mutationID) {
 
 		try {
-			RemoteClassLoader loader = isReloadClasses() ? classLoader.getNew() : classLoader;
+			// reuse the class loader, restoring the static state of the classes, if possible
+			final boolean newLoader = isReloadClasses() && !(RemoteClassLoader.RESTORE_STATIC && classLoader.restoreStaticState());
+			RemoteClassLoader loader = newLoader ? classLoader.getNew() : classLoader;
 
 			Class<?> config = loader.loadClass(Utils.CONFIG_CLASS);
 			Field mutationField = config.getField(Utils.getCurField(className));
 			mutationField.set(null, mutationID);
 
 			final int faults;
-			if(isReloadClasses()) {
+			if(newLoader) {
 				Class<?> re = loader.loadClass(ReflectionExecutor.class.getName());
 				Method execute = re.getMethod("execute", Test.class, Boolean.TYPE, Boolean.TYPE);
 				faults = (Integer) execute.invoke(null, getInput().getTest(), false, true);
@@ -19,10 +19,8 @@
 package testful.random;
 
 import java.util.Map.Entry;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -40,6 +38,7 @@ import testful.model.TestCluster;
 import testful.model.TestCoverage;
 import testful.model.TestSuite;
 import testful.model.executor.TestExecutorInput;
+import testful.runner.CompletionQueue;
 import testful.runner.DataFinder;
 import testful.runner.Job;
 import testful.runner.RunnerPool;
@@ -57,7 +56,8 @@ public abstract class RandomTest {
 
 	private AtomicInteger testsDone = new AtomicInteger();
 
-	protected final BlockingQueue<Entry<Operation[], Future<ElementManager<String, CoverageInformation>>>> tests = new LinkedBlockingQueue<Entry<Operation[], Future<ElementManager<String, CoverageInformation>>>>();
+	/** tests being evaluated: they are retrieved as soon as their evaluation completes */
+	protected final CompletionQueue<ElementManager<String, CoverageInformation>, Operation[]> tests = new CompletionQueue<ElementManager<String, CoverageInformation>, Operation[]>();
 	private final OptimalTestCreator optimal;
 	private final DataFinder finder;
 	private final boolean reloadClasses;
@@ -93,6 +93,10 @@ public abstract class RandomTest {
 
 		work(duration);
 
+		// the time is over: do not wait for the evaluation of pending tests
+		final int cancelled = tests.cancelAll();
+		if(logger.isLoggable(Level.FINE)) logger.fine("Cancelled the evaluation of " + cancelled + " tests");
+
 		try {
 			while(getRunningJobs() > 0)
 				Thread.sleep(1000);
@@ -120,15 +124,13 @@ public abstract class RandomTest {
 			public void run() {
 				while(keepRunning) {
 					try {
-						if(tests.isEmpty()) {
-							Thread.sleep(1000);
-						} else {
-							Entry<Operation[], Future<ElementManager<String, CoverageInformation>>> entry = tests.take();
-							ElementManager<String, CoverageInformation> cov = entry.getValue().get();
+						Entry<Future<ElementManager<String, CoverageInformation>>, Operation[]> entry = tests.poll(1, TimeUnit.SECONDS);
+						if(entry != null && !entry.getKey().isCancelled()) {
+							ElementManager<String, CoverageInformation> cov = entry.getKey().get();
 							testsDone.incrementAndGet();
-							numCall += entry.getKey().length;
+							numCall += entry.getValue().length;
 
-							final TestCoverage testCoverage = new TestCoverage(new Test(cluster, refFactory, entry.getKey()), cov);
+							final TestCoverage testCoverage = new TestCoverage(new Test(cluster, refFactory, entry.getValue()), cov);
 							optimal.update(testCoverage);
 						}
 					} catch(InterruptedException e) {
@@ -18,17 +18,11 @@
 
 package testful.random;
 
-import java.util.concurrent.Future;
-import java.util.logging.Level;
-
-import testful.coverage.CoverageInformation;
 import testful.coverage.TrackerDatum;
 import testful.model.Operation;
 import testful.model.ReferenceFactory;
 import testful.model.TestCluster;
 import testful.runner.DataFinder;
-import testful.utils.ElementManager;
-import testful.utils.SimpleEntry;
 
 public class RandomTestSimple extends RandomTest {
 
@@ -44,17 +38,13 @@ public class RandomTestSimple extends RandomTest {
 		start = System.currentTimeMillis();
 		stop = start + duration;
 
-		try {
-			while(System.currentTimeMillis() < stop) {
+		while(System.currentTimeMillis() < stop) {
 
-				Operation[] ops = new Operation[TEST_SIZE];
-				for(int i = 0; i < TEST_SIZE; i++)
-					ops[i] = Operation.randomlyGenerate(cluster, refFactory, random);
+			Operation[] ops = new Operation[TEST_SIZE];
+			for(int i = 0; i < TEST_SIZE; i++)
+				ops[i] = Operation.randomlyGenerate(cluster, refFactory, random);
 
-				tests.put(new SimpleEntry<Operation[], Future<ElementManager<String, CoverageInformation>>>(ops, execute(ops)));
-			}
-		} catch(InterruptedException e) {
-			logger.log(Level.WARNING, "Interrupted: " + e.getMessage(), e);
+			tests.add(execute(ops), ops);
 		}
 	}
 }
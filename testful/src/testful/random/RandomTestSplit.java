@@ -18,10 +18,6 @@
 
 package testful.random;
 
-import java.util.concurrent.Future;
-import java.util.logging.Level;
-
-import testful.coverage.CoverageInformation;
 import testful.coverage.TrackerDatum;
 import testful.model.Operation;
 import testful.model.ReferenceFactory;
@@ -29,8 +25,6 @@ import testful.model.TestCluster;
 import testful.model.transformation.Splitter;
 import testful.model.transformation.Splitter.Listener;
 import testful.runner.DataFinder;
-import testful.utils.ElementManager;
-import testful.utils.SimpleEntry;
 
 public class RandomTestSplit extends RandomTest {
 
@@ -51,11 +45,7 @@ public class RandomTestSplit extends RandomTest {
 
 			@Override
 			public void notify(TestCluster cluster, ReferenceFactory refFactory, Operation[] ops) {
-				try {
-					tests.put(new SimpleEntry<Operation[], Future<ElementManager<String, CoverageInformation>>>(ops, execute(ops)));
-				} catch(InterruptedException e) {
-					logger.log(Level.WARNING, "Interrupted: " + e.getMessage(), e);
-				}
+				tests.add(execute(ops), ops);
 			}
 		});
 
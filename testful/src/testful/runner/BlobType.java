@@ -0,0 +1,166 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import testful.utils.ConcurrentCache;
+
+/**
+ * Short-lived blobs of data, addressed by their content.
+ * Jobs can refer to blobs instead of carrying them: workers retrieve the blobs they have not seen yet
+ * through the data finder, and keep them in its cache (see {@link DataFinderCaching}).
+ * Blobs that have not been used recently are discarded, unless they are pinned by the jobs referring to them
+ * (see {@link #pin(byte[])}): workers never see a blob disappearing while a job referring to it is pending.
+ *
+ * @author matteo
+ */
+public class BlobType implements DataType {
+
+	public static final String NAME = "blob";
+
+	/** the maximum size of the blobs kept, in bytes */
+	private static final long MAX_SIZE = 32 * 1024 * 1024;
+
+	/** the maximum number of ids kept, to avoid hashing again the blobs being added */
+	private static final int MAX_IDS = 64 * 1024;
+
+	/** the length of the ids of blobs (the prefix of the hash of their content) */
+	private static final int ID_LENGTH = 16;
+
+	private final ConcurrentCache<String, byte[]> blobs = new ConcurrentCache<String, byte[]>(MAX_SIZE, ConcurrentCache.BYTES);
+
+	/** the ids of the blobs, keyed by their content: blobs added again are not hashed */
+	private final ConcurrentCache<Content, String> ids = new ConcurrentCache<Content, String>(MAX_IDS);
+
+	/** A blob pinned by pending jobs */
+	private static class Pinned {
+		final byte[] data;
+		int refs;
+
+		Pinned(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	/** the blobs pinned by pending jobs (guarded by itself). Key=id; Value=blob */
+	private final Map<String, Pinned> pinned = new HashMap<String, Pinned>();
+
+	/** The content of a blob, usable as a key */
+	private static class Content {
+		private final byte[] data;
+		private final int hashCode;
+
+		public Content(byte[] data) {
+			this.data = data;
+			hashCode = Arrays.hashCode(data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) return true;
+			if(!(obj instanceof Content)) return false;
+
+			final Content other = (Content) obj;
+			return hashCode == other.hashCode && Arrays.equals(data, other.data);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Adds a blob. Adding again a blob marks it as recently used.
+	 * @param data the blob
+	 * @return the id of the blob
+	 */
+	public String add(byte[] data) {
+		final Content content = new Content(data);
+
+		String id = ids.get(content);
+		if(id == null) {
+			id = ContentCache.hash(data).substring(0, ID_LENGTH);
+			ids.put(content, id);
+		}
+
+		if(blobs.get(id) == null) blobs.put(id, data);
+		return id;
+	}
+
+	/**
+	 * Adds a blob, and keeps it until it is released (see {@link #release(String)}).
+	 * A blob can be pinned several times: it is kept until it is released the same number of times.
+	 * @param data the blob
+	 * @return the id of the blob
+	 */
+	public String pin(byte[] data) {
+		final String id = add(data);
+
+		synchronized(pinned) {
+			Pinned p = pinned.get(id);
+			if(p == null) {
+				p = new Pinned(data);
+				pinned.put(id, p);
+			}
+			p.refs++;
+		}
+
+		return id;
+	}
+
+	/**
+	 * Releases a blob pinned with {@link #pin(byte[])}
+	 * @param id the id of the blob
+	 */
+	public void release(String id) {
+		synchronized(pinned) {
+			final Pinned p = pinned.get(id);
+			if(p != null && --p.refs <= 0) pinned.remove(id);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see testful.runner.DataType#getData(java.lang.String)
+	 */
+	@Override
+	public byte[] getData(String id) throws RemoteException {
+		final byte[] ret = blobs.get(id);
+		if(ret != null) return ret;
+
+		synchronized(pinned) {
+			final Pinned p = pinned.get(id);
+			return p == null ? null : p.data;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return NAME + " " + blobs;
+	}
+}
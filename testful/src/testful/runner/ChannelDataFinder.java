@@ -0,0 +1,104 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+/**
+ * Replaces the data finder of jobs sent through a channel (the pipe of a forked worker,
+ * or the connection of the nio transport): it retrieves the data from the other
+ * side of the channel.
+ *
+ * @author matteo
+ */
+class ChannelDataFinder implements DataFinder, Serializable {
+
+	private static final long serialVersionUID = 2811548096451573632L;
+
+	/** A channel able to retrieve data from the JVM that sent the job */
+	static interface Channel {
+
+		/**
+		 * Retrieves some data from the other side of the channel
+		 * @param key the key of the data finder
+		 * @param type the type of the data
+		 * @param ids the ids of the data
+		 * @return the data (null if an element is not available)
+		 * @throws IOException if the channel is broken
+		 */
+		public byte[][] requestData(String key, String type, String[] ids) throws IOException;
+
+		/**
+		 * Retrieves the hashes of some data from the other side of the channel
+		 * @param key the key of the data finder
+		 * @param type the type of the data
+		 * @param ids the ids of the data
+		 * @return the hashes of the data (null if an element is not available)
+		 * @throws IOException if the channel is broken
+		 */
+		public String[] requestHashes(String key, String type, String[] ids) throws IOException;
+	}
+
+	private final String key;
+
+	/** the channel (null in the JVM that sent the job) */
+	private transient Channel channel;
+
+	public ChannelDataFinder(String key) {
+		this.key = key;
+	}
+
+	void setChannel(Channel channel) {
+		this.channel = channel;
+	}
+
+	@Override
+	public String getKey() {
+		return key;
+	}
+
+	@Override
+	public byte[] getData(String type, String id) throws RemoteException {
+		return getData(type, new String[] { id })[0];
+	}
+
+	@Override
+	public byte[][] getData(String type, String[] ids) throws RemoteException {
+		if(channel == null) throw new RemoteException("The data finder " + key + " is not connected");
+
+		try {
+			return channel.requestData(key, type, ids);
+		} catch(IOException e) {
+			throw new RemoteException("Cannot retrieve " + ids.length + " elements of type " + type + " through the channel", e);
+		}
+	}
+
+	@Override
+	public String[] getHashes(String type, String[] ids) throws RemoteException {
+		if(channel == null) throw new RemoteException("The data finder " + key + " is not connected");
+
+		try {
+			return channel.requestHashes(key, type, ids);
+		} catch(IOException e) {
+			throw new RemoteException("Cannot retrieve the hashes of " + ids.length + " elements of type " + type + " through the channel", e);
+		}
+	}
+}
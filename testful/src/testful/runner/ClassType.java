@@ -18,14 +18,23 @@
 
 package testful.runner;
 
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,13 +49,28 @@ import testful.utils.JavaUtils;
 public class ClassType implements DataType {
 	public static final String NAME = "bytecode";
 
+	/**
+	 * The id of the manifest: the names of the classes served so far, separated by new lines.
+	 * Workers retrieve these classes at once (see {@link DataFinderCaching#prefetchClasses()}).
+	 */
+	public static final String MANIFEST = "#manifest";
+
 	private static Logger logger = Logger.getLogger("testful.executor.classloader");
 	private static final boolean LOG_FINER = logger.isLoggable(Level.FINER);
 	private static final ClassLoader classLoader = DataFinderImpl.class.getClassLoader();
 
 	private final File[] where;
+
+	/** the jars in the classpath (null for other entries) */
+	private final JarFile[] jars;
+
+	/** maps the name of a .class file to the position of the first jar containing it */
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
 	private final Collection<ClassData> data = new ArrayList<ClassData>();
 
+	/** the names of the classes served so far (guarded by itself) */
+	private final Set<String> served = new LinkedHashSet<String>();
+
 
 	public ClassType(IConfigProject config) {
 		this(JavaUtils.merge(config.getDirInstrumented(), config.getDirCompiled(), config.getLibraries()));
@@ -54,6 +78,8 @@ public class ClassType implements DataType {
 
 	public ClassType(File ... where) {
 		this.where = where;
+		jars = new JarFile[where.length];
+		buildIndex();
 	}
 
 	@Override
@@ -71,19 +97,16 @@ public class ClassType implements DataType {
 	 */
 	@Override
 	public byte[] getData(String name) throws RemoteException {
-		// try looking in the where class directories
+		if(MANIFEST.equals(name)) return getManifest();
+
+		// try looking in the where class directories and jars
 		{
 			try {
-				URL classURL = searchClassFile(name);
-				byte[] ret = ByteReader.readBytes(classURL.openStream());
-				if(LOG_FINER) logger.finer("serving class " + name + " from " + classURL);
-
-				for (ClassData datum : data)
-					datum.load(name, classURL);
-
-				return ret;
-			} catch(FileNotFoundException e) {
-				// not found
+				final byte[] ret = readClassFile(name);
+				if(ret != null) {
+					served(name);
+					return ret;
+				}
 			} catch(IOException e) {
 				// this should not happen!
 				logger.log(Level.WARNING, "I/O error: " + e, e);
@@ -98,6 +121,7 @@ public class ClassType implements DataType {
 					byte[] ret = ByteReader.readBytes(resource.openStream());
 					if(ret != null) {
 						if(LOG_FINER) logger.finer("serving class " + name + " from " + resource);
+						served(name);
 						return ret;
 					}
 				} catch(IOException e) {
@@ -110,57 +134,122 @@ public class ClassType implements DataType {
 		return null;
 	}
 
+	private void served(String name) {
+		synchronized(served) {
+			served.add(name);
+		}
+	}
+
+	private byte[] getManifest() {
+		final StringBuilder sb = new StringBuilder();
+		synchronized(served) {
+			for (String name : served) {
+				if(sb.length() > 0) sb.append('\n');
+				sb.append(name);
+			}
+		}
+
+		try {
+			return sb.toString().getBytes("UTF-8");
+		} catch(UnsupportedEncodingException e) {
+			// never happens: UTF-8 is always supported
+			return null;
+		}
+	}
+
+	/**
+	 * Builds the index of the jars in the classpath: for each class, it stores the position
+	 * of the first jar that contains it. Each jar is opened once, and it is kept open.
+	 */
+	private void buildIndex() {
+		for (int i = 0; i < where.length; i++) {
+			final File element = where[i];
+			if(!element.isFile()) continue;
+
+			if(!element.getName().endsWith(".jar")) {
+				logger.warning("classpath entry " + element.getAbsolutePath() + " is a file, but it does not ends with .jar");
+				continue;
+			}
+
+			try {
+				final JarFile jar = new JarFile(element);
+				jars[i] = jar;
+
+				final Enumeration<JarEntry> entries = jar.entries();
+				while(entries.hasMoreElements()) {
+					final JarEntry entry = entries.nextElement();
+					final String entryName = entry.getName();
+
+					if(!entry.isDirectory() && entryName.endsWith(".class") && !index.containsKey(entryName))
+						index.put(entryName, i);
+				}
+
+			} catch(IOException e) {
+				logger.log(Level.WARNING, "cannot read classpath entry " + element.getAbsolutePath() + ": " + e.getMessage(), e);
+			}
+		}
+
+		if(LOG_FINER) logger.finer("Indexed " + index.size() + " classes in the jars of the classpath");
+	}
+
 	/**
 	 * Looks for the class with the specified name in the paths specified by the user, and
-	 * returns the corresponding file. The returned value does exist and it is readable.
+	 * returns its bytecode. Class directories are checked each time (since their content may change),
+	 * while jars are looked up in the index.
 	 * @param name the full.qualified.Class$Name
-	 * @return the file that contains the bytecode
-	 * @throws FileNotFoundException if the file is not found
+	 * @return the bytecode of the class, or null if the class is not found
+	 * @throws IOException if the class cannot be read
 	 */
-	private URL searchClassFile(String name) throws FileNotFoundException {
+	private byte[] readClassFile(String name) throws IOException {
 		final String fileName = name.replace('.', File.separatorChar) + ".class";
 		final String urlName = name.replace('.', '/') + ".class";
 
-		for(File element : where) {
+		// the first jar containing the class: directories after it are not considered
+		final Integer inJar = index.get(urlName);
+		final int last = inJar == null ? where.length : inJar;
+
+		for(int i = 0; i < last; i++) {
+			final File element = where[i];
 
 			// if it is a class directory, look for a .class file
-			if(element.isDirectory()) {
+			if(jars[i] == null && element.isDirectory()) {
 				File w = new File(element, fileName);
 				if(w.exists()) {
 					if(w.canRead()) {
-						try {
-							return w.toURI().toURL();
-						} catch (MalformedURLException e) {
-							logger.log(Level.WARNING, "found " + name + " in " + w.getAbsolutePath() + ", but cannot transform to a valid URL", e);
-						}
+						final URL url = w.toURI().toURL();
+						if(LOG_FINER) logger.finer("serving class " + name + " from " + url);
+						for (ClassData datum : data)
+							datum.load(name, url);
+
+						return ByteReader.readBytes(new FileInputStream(w));
 					} else {
 						logger.warning("found " + name + " in " + w.getAbsolutePath() + ", but cannot read it");
 					}
 				}
 			}
+		}
 
-			// if it is a jar, create the jar:<element>!/urlClass URL
-			if(element.isFile()) {
-				if(!element.getName().endsWith(".jar"))
-					logger.warning("classpath entry " + element.getAbsolutePath() + " is a file, but it does not ends with .jar");
-				else if(!element.canRead())
-					logger.warning("cannot read classpath entry " + element.getAbsolutePath());
-				else {
-					try {
-						final URL url = new URL("jar:" + element.toURI().toURL().toString() + "!/" + urlName);
-
-						// try to access the file
-						url.openStream().close();
-
-						return url;
-					} catch (MalformedURLException e) {
-						logger.log(Level.WARNING, "found " + name + " in " + element.getAbsolutePath() + ", but cannot transform to a valid URL", e);
-					} catch (IOException e) {
-					}
-				}
-			}
+		if(inJar == null) return null;
+
+		final JarFile jar = jars[inJar];
+		final JarEntry entry = jar.getJarEntry(urlName);
+		if(LOG_FINER) logger.finer("serving class " + name + " from " + jar.getName());
+
+		if(!data.isEmpty()) {
+			final URL url = new URL("jar:" + where[inJar].toURI().toURL().toString() + "!/" + urlName);
+			for (ClassData datum : data)
+				datum.load(name, url);
 		}
 
-		throw new FileNotFoundException();
+		final InputStream is = jar.getInputStream(entry);
+		try {
+			if(entry.getSize() < 0) return ByteReader.readBytes(is);
+
+			final byte[] ret = new byte[(int) entry.getSize()];
+			new DataInputStream(is).readFully(ret);
+			return ret;
+		} finally {
+			is.close();
+		}
 	}
 }
@@ -0,0 +1,133 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import testful.utils.SimpleEntry;
+
+/**
+ * Collects futures, and returns them in completion order (i.e., as soon as their job is completed).
+ * Each future is associated with an attachment (e.g., the input of the job),
+ * which is returned together with the future.
+ * Futures that do not support listeners (i.e., which are not {@link TestfulFuture})
+ * are returned immediately, in submission order.
+ *
+ * @author matteo
+ * @param <R> the type of the result of futures
+ * @param <A> the type of the attachment
+ */
+public class CompletionQueue<R extends Serializable, A> {
+
+	/** completed futures, not yet retrieved */
+	private final BlockingQueue<Entry<Future<R>, A>> completed = new LinkedBlockingQueue<Entry<Future<R>, A>>();
+
+	/** the number of futures added and not yet retrieved */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/** futures added and not yet retrieved */
+	private final Set<Future<R>> futures = Collections.newSetFromMap(new ConcurrentHashMap<Future<R>, Boolean>());
+
+	/**
+	 * Adds a future to the queue
+	 * @param future the future
+	 * @param attachment the attachment of the future
+	 */
+	public void add(Future<R> future, A attachment) {
+		pending.incrementAndGet();
+		futures.add(future);
+
+		final Entry<Future<R>, A> entry = new SimpleEntry<Future<R>, A>(future, attachment);
+
+		if(future instanceof TestfulFuture<?>) {
+			((TestfulFuture<R>) future).addListener(new TestfulFuture.Listener<R>() {
+				@Override
+				public void done(TestfulFuture<R> f) {
+					completed.add(entry);
+				}
+			});
+
+		} else {
+			completed.add(entry);
+		}
+	}
+
+	/**
+	 * Retrieves a completed future, waiting if necessary
+	 * @return the completed future (the key) and its attachment (the value)
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Entry<Future<R>, A> take() throws InterruptedException {
+		Entry<Future<R>, A> ret = completed.take();
+		retrieved(ret);
+		return ret;
+	}
+
+	/**
+	 * Retrieves a completed future, waiting up to the specified wait time if necessary
+	 * @param timeout how long to wait before giving up
+	 * @param unit the unit of the timeout
+	 * @return the completed future (the key) and its attachment (the value), or null if the timeout expires
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Entry<Future<R>, A> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		Entry<Future<R>, A> ret = completed.poll(timeout, unit);
+		if(ret != null) retrieved(ret);
+		return ret;
+	}
+
+	private void retrieved(Entry<Future<R>, A> entry) {
+		futures.remove(entry.getKey());
+		pending.decrementAndGet();
+	}
+
+	/**
+	 * Cancels all the futures not yet completed, stopping the execution of their jobs.
+	 * Cancelled futures are still returned by {@link #take()} and {@link #poll(long, TimeUnit)}.
+	 * @return the number of cancelled futures
+	 */
+	public int cancelAll() {
+		int n = 0;
+		for (Future<R> future : futures)
+			if(future.cancel(true)) n++;
+
+		return n;
+	}
+
+	/**
+	 * Returns the number of futures added and not yet retrieved
+	 * @return the number of futures added and not yet retrieved
+	 */
+	public int size() {
+		return pending.get();
+	}
+
+	public boolean isEmpty() {
+		return pending.get() == 0;
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.TestFul;
+
+/**
+ * A persistent cache of data (e.g., the bytecode of classes), shared by all the workers
+ * and by subsequent runs on the same machine. Elements are addressed by the hash of their content:
+ * workers ask the data finder for the hashes of the elements they need (see {@link DataFinder#getHashes(String, String[])}),
+ * and transfer only the ones that are not in the cache.
+ * Elements are stored in separate files. The cache is bounded: when it grows beyond its maximum size,
+ * the least recently used elements (i.e., the files with the oldest modification time) are evicted.
+ * The cache is disabled by default (see {@link TestFul#PROPERTY_RUNNER_CACHE}).
+ *
+ * @author matteo
+ */
+public class ContentCache {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.classloader");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+	private static final boolean LOG_FINEST = logger.isLoggable(Level.FINEST);
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static ContentCache singleton;
+	private static boolean initialized;
+
+	/**
+	 * Returns the persistent cache (see {@link TestFul#PROPERTY_RUNNER_CACHE})
+	 * @return the persistent cache, or null if it is disabled
+	 */
+	public static synchronized ContentCache getCache() {
+		if(!initialized) {
+			initialized = true;
+
+			final String dir = TestFul.getProperty(TestFul.PROPERTY_RUNNER_CACHE, "");
+
+			if(!dir.trim().isEmpty()) {
+				final File base = new File(dir.trim());
+				final long maxSize = Math.max(1, TestFul.getProperty(TestFul.PROPERTY_RUNNER_CACHE_SIZE, 256)) * 1024L * 1024L;
+				if(base.isDirectory() || base.mkdirs()) singleton = new ContentCache(base, maxSize);
+				else logger.warning("Cannot create the cache directory " + base);
+			}
+		}
+
+		return singleton;
+	}
+
+	/**
+	 * Calculates the hash of some data
+	 * @param data the data
+	 * @return the hash of the data
+	 */
+	public static String hash(byte[] data) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+
+			final char[] ret = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				ret[2*i] = HEX[(digest[i] >> 4) & 0xF];
+				ret[2*i + 1] = HEX[digest[i] & 0xF];
+			}
+			return new String(ret);
+
+		} catch(NoSuchAlgorithmException e) {
+			// never happens: SHA-1 is always available
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final File base;
+
+	/** the maximum size of the cache (in bytes) */
+	private final long maxSize;
+
+	/** the (estimated) size of the cache, in bytes: other processes may be using the same directory */
+	private final AtomicLong size;
+
+	ContentCache(File base, long maxSize) {
+		this.base = base;
+		this.maxSize = maxSize;
+
+		long size = 0;
+		for (File f : getFiles()) size += f.length();
+		this.size = new AtomicLong(size);
+	}
+
+	/**
+	 * Returns the elements in the cache
+	 * @return the files of the elements in the cache
+	 */
+	private List<File> getFiles() {
+		final List<File> ret = new ArrayList<File>();
+
+		final File[] dirs = base.listFiles();
+		if(dirs != null) {
+			for (File dir : dirs) {
+				final File[] files = dir.listFiles();
+				if(files != null)
+					for (File f : files)
+						if(!f.getName().endsWith(".tmp")) ret.add(f);
+			}
+		}
+
+		return ret;
+	}
+
+	private File getFile(String hash) {
+		return new File(new File(base, hash.substring(0, 2)), hash);
+	}
+
+	/**
+	 * Retrieves an element from the cache
+	 * @param hash the hash of the element
+	 * @return the element, or null if it is not in the cache
+	 */
+	public byte[] get(String hash) {
+		final File file = getFile(hash);
+		if(!file.isFile()) return null;
+
+		try {
+			final FileInputStream in = new FileInputStream(file);
+			try {
+				final byte[] ret = new byte[(int) file.length()];
+				int n = 0;
+				while(n < ret.length) {
+					final int r = in.read(ret, n, ret.length - n);
+					if(r < 0) break;
+					n += r;
+				}
+
+				// discard corrupted elements (e.g., truncated or modified by other processes)
+				if(n < ret.length || !hash.equals(hash(ret))) {
+					logger.warning("Discarding the corrupted element " + file);
+					if(file.delete()) size.addAndGet(-ret.length);
+					else logger.warning("Cannot delete " + file);
+					return null;
+				}
+
+				// the modification time tracks the last use of the element
+				file.setLastModified(System.currentTimeMillis());
+
+				if(LOG_FINEST) logger.finest("Read " + hash + " from the cache");
+				return ret;
+
+			} finally {
+				in.close();
+			}
+
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "Cannot read " + file + ": " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores an element in the cache
+	 * @param data the element
+	 */
+	public void put(byte[] data) {
+		final String hash = hash(data);
+
+		final File file = getFile(hash);
+		if(file.isFile()) return;
+
+		final File dir = file.getParentFile();
+		if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			logger.warning("Cannot create the cache directory " + dir);
+			return;
+		}
+
+		// other processes may be writing the same element: write a temporary file, and then rename it
+		try {
+			final File tmp = File.createTempFile(hash, ".tmp", dir);
+			final FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				out.write(data);
+			} finally {
+				out.close();
+			}
+
+			if(tmp.renameTo(file)) {
+				if(size.addAndGet(data.length) > maxSize) evict();
+			} else if(!tmp.delete()) {
+				logger.warning("Cannot delete " + tmp);
+			}
+
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "Cannot write " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/** An element of the cache, with its last use and its size (read once: they may change while sorting) */
+	private static class Element implements Comparable<Element> {
+		final File file;
+		final long lastModified;
+		final long length;
+
+		Element(File file) {
+			this.file = file;
+			lastModified = file.lastModified();
+			length = file.length();
+		}
+
+		@Override
+		public int compareTo(Element o) {
+			return lastModified < o.lastModified ? -1 : (lastModified == o.lastModified ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used elements, until the cache is down to 3/4 of its maximum size
+	 */
+	private synchronized void evict() {
+		if(size.get() <= maxSize) return;
+
+		final List<Element> elements = new ArrayList<Element>();
+		long total = 0;
+		for (File f : getFiles()) {
+			final Element e = new Element(f);
+			elements.add(e);
+			total += e.length;
+		}
+
+		Collections.sort(elements);
+
+		int n = 0;
+		final long target = maxSize / 4 * 3;
+		for (Element e : elements) {
+			if(total <= target) break;
+
+			if(e.file.delete()) {
+				total -= e.length;
+				n++;
+			}
+		}
+
+		size.set(total);
+		if(LOG_FINE) logger.fine("Evicted " + n + " elements from the cache " + base);
+	}
+}
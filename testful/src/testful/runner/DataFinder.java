@@ -37,4 +37,22 @@ public interface DataFinder extends Remote {
 	 * @return the payload containing the information
 	 */
 	public byte[] getData(String type, String id) throws RemoteException;
+
+	/**
+	 * Retrieves several pieces of information at once (e.g., the bytecode of a cluster of classes),
+	 * with a single (remote) invocation
+	 * @param type the type of the data. It MUST not contain a "#"
+	 * @param ids the ids of the information
+	 * @return the payloads containing the information (in the same order of ids; null if an information is not available)
+	 */
+	public byte[][] getData(String type, String[] ids) throws RemoteException;
+
+	/**
+	 * Retrieves the hashes of several pieces of information (see {@link ContentCache#hash(byte[])}):
+	 * elements already in the persistent cache do not need to be transferred again.
+	 * @param type the type of the data. It MUST not contain a "#"
+	 * @param ids the ids of the information
+	 * @return the hashes of the information (in the same order of ids; null if an information is not available)
+	 */
+	public String[] getHashes(String type, String[] ids) throws RemoteException;
 }
@@ -18,18 +18,20 @@
 
 package testful.runner;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.LinkedHashSet;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import testful.TestFul;
-import testful.utils.CachingMap;
-import testful.utils.CachingMap.Cacheable;
+import testful.utils.ConcurrentCache;
 
 public class DataFinderCaching implements DataFinder {
 
@@ -37,24 +39,30 @@ public class DataFinderCaching implements DataFinder {
 	private static final boolean LOG_FINER = logger.isLoggable(Level.FINER);
 	private static final boolean LOG_FINEST = logger.isLoggable(Level.FINEST);
 
-	private final static int MAX_ELEMS = 3000;
-	private final static long MIN_AGE = 15 * 60 * 1000; // 15 min
-	private final static long MIN_UNUSED = 5 * 60 * 1000; //  5 min
+	/** the maximum size of the cached elements, in bytes */
+	private final static long MAX_SIZE = 32 * 1024 * 1024;
 
 	private final String key;
-	private final CachingMap<String, byte[]> cache;
+	private final ConcurrentCache<String, byte[]> cache;
+	/** the elements that cannot be found (blobs are never marked as missing: they can be added again) */
 	private final Set<String> missing;
 
 	private final DataFinder finder;
 
+	/** the persistent cache (null if it is disabled, or if the data finder is local) */
+	private final ContentCache store;
+
 	public DataFinderCaching(DataFinder classFinder) throws RemoteException {
 
-		cache = new CachingMap<String, byte[]>(MAX_ELEMS, MIN_AGE, MIN_UNUSED);
-		missing = new LinkedHashSet<String>();
+		cache = new ConcurrentCache<String, byte[]>(MAX_SIZE, ConcurrentCache.BYTES);
+		missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 		finder = classFinder;
 		key = classFinder.getKey();
 
+		// local data finders are faster than the persistent cache
+		store = classFinder instanceof DataFinderImpl ? null : ContentCache.getCache();
+
 		if(TestFul.getProperty(TestFul.PROPERTY_RUNNER_REMOTE, false)) {
 			try {
 				UnicastRemoteObject.exportObject(this, 0);
@@ -75,7 +83,7 @@ public class DataFinderCaching implements DataFinder {
 	 * @see testful.runner.DataFinder#getData(java.lang.String, java.lang.String)
 	 */
 	@Override
-	public synchronized byte[] getData(String type, String id) throws RemoteException {
+	public byte[] getData(String type, String id) throws RemoteException {
 		if(type == null || id == null) {
 			NoSuchElementException exc = new NoSuchElementException("Cannot find element " + type + " " + id);
 			logger.log(Level.WARNING, exc.getMessage(), exc);
@@ -84,10 +92,10 @@ public class DataFinderCaching implements DataFinder {
 
 		final String name = type + "#" + id;
 
-		CachingMap.Cacheable<byte[]> tmp = cache.get(name);
-		if(tmp != null) {
+		final byte[] cached = cache.get(name);
+		if(cached != null) {
 			if(LOG_FINEST) logger.finest("(" + key + ") serving cached element " + name);
-			return tmp.getElement();
+			return cached;
 		}
 
 		if(missing.contains(name)) {
@@ -96,14 +104,14 @@ public class DataFinderCaching implements DataFinder {
 		}
 
 		try {
-			byte[] buff = finder.getData(type, id);
+			byte[] buff = fetch(type, new String[] { id })[0];
 
 			if(buff == null) {
 				if(LOG_FINER) logger.finer("(" + key + ") serving retrieved element " + name + " (missing)");
-				missing.add(name);
+				if(!BlobType.NAME.equals(type)) missing.add(name);
 			} else {
 				if(LOG_FINER) logger.finer("(" + key + ") serving retrieved element " + name);
-				cache.put(name, new Cacheable<byte[]>(buff));
+				cache.put(name, buff);
 			}
 
 			return buff;
@@ -114,13 +122,117 @@ public class DataFinderCaching implements DataFinder {
 	}
 
 	@Override
-	public String toString() {
-		StringBuilder sb = new StringBuilder();
+	public byte[][] getData(String type, String[] ids) throws RemoteException {
+		final byte[][] ret = new byte[ids.length][];
+
+		// the positions of the elements to retrieve
+		final List<Integer> toFetch = new ArrayList<Integer>();
+
+		for (int i = 0; i < ids.length; i++) {
+			final String name = type + "#" + ids[i];
+
+			ret[i] = cache.get(name);
+			if(ret[i] == null && !missing.contains(name)) toFetch.add(i);
+		}
+
+		if(toFetch.isEmpty()) return ret;
+
+		final String[] fetchIds = new String[toFetch.size()];
+		for (int i = 0; i < fetchIds.length; i++)
+			fetchIds[i] = ids[toFetch.get(i)];
+
+		try {
+			final byte[][] fetched = fetch(type, fetchIds);
 
-		sb.append(this.getClass().getName()).append("\n");
-		for(Entry<String, Cacheable<byte[]>> entry : cache.entrySet())
-			sb.append("  ").append(entry.getKey()).append(" (").append(entry.getValue().getElement().length).append(" byte)\n");
+			for (int i = 0; i < fetchIds.length; i++) {
+				final String name = type + "#" + fetchIds[i];
 
-		return sb.toString();
+				if(fetched[i] != null) cache.put(name, fetched[i]);
+				else if(!BlobType.NAME.equals(type)) missing.add(name);
+
+				ret[toFetch.get(i)] = fetched[i];
+			}
+
+			if(LOG_FINER) logger.finer("(" + key + ") retrieved " + fetchIds.length + " elements of type " + type + " at once");
+
+		} catch(RemoteException e) {
+			logger.log(Level.WARNING, "(" + key + ") cannot retrieve " + fetchIds.length + " elements of type " + type, e);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Retrieves some elements from the data finder.
+	 * If the persistent cache is enabled, only the elements that are not in the cache are transferred
+	 * (except for blobs, see {@link BlobType}).
+	 * @param type the type of the elements
+	 * @param ids the ids of the elements
+	 * @return the elements (null if an element is not available)
+	 * @throws RemoteException if the data finder is not reachable
+	 */
+	private byte[][] fetch(String type, String[] ids) throws RemoteException {
+		// blobs are short-lived, and their ids are already hashes: they are not worth the persistent cache
+		if(store == null || BlobType.NAME.equals(type)) return finder.getData(type, ids);
+
+		final String[] hashes = finder.getHashes(type, ids);
+		final byte[][] ret = new byte[ids.length][];
+
+		// the positions of the elements to transfer
+		final List<Integer> toFetch = new ArrayList<Integer>();
+		int hits = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if(hashes[i] == null) continue;
+
+			ret[i] = store.get(hashes[i]);
+			if(ret[i] != null) hits++;
+			else toFetch.add(i);
+		}
+
+		if(LOG_FINER) logger.finer("(" + key + ") " + hits + " of " + ids.length + " elements of type " + type + " found in the persistent cache");
+
+		if(toFetch.isEmpty()) return ret;
+
+		final String[] fetchIds = new String[toFetch.size()];
+		for (int i = 0; i < fetchIds.length; i++)
+			fetchIds[i] = ids[toFetch.get(i)];
+
+		final byte[][] fetched = finder.getData(type, fetchIds);
+		for (int i = 0; i < fetched.length; i++) {
+			ret[toFetch.get(i)] = fetched[i];
+			if(fetched[i] != null) store.put(fetched[i]);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String[] getHashes(String type, String[] ids) throws RemoteException {
+		return finder.getHashes(type, ids);
+	}
+
+	/**
+	 * Retrieves at once the classes listed in the manifest of the data finder (see {@link ClassType#MANIFEST}),
+	 * i.e., the classes already requested by other workers using the same data finder.
+	 * This saves a remote invocation for each class loaded by the jobs.
+	 */
+	public void prefetchClasses() {
+		try {
+			final byte[] manifest = finder.getData(ClassType.NAME, ClassType.MANIFEST);
+			if(manifest == null || manifest.length == 0) return;
+
+			final String[] names = new String(manifest, "UTF-8").split("\n");
+			getData(ClassType.NAME, names);
+
+			if(LOG_FINER) logger.finer("(" + key + ") prefetched " + names.length + " classes");
+
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "(" + key + ") cannot prefetch the classes: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.getClass().getName() + " " + key + ": " + cache;
 	}
 }
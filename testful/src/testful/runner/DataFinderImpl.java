@@ -23,6 +23,8 @@ import java.rmi.server.UnicastRemoteObject;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import testful.TestFul;
@@ -39,6 +41,12 @@ public class DataFinderImpl implements DataFinder {
 	private final String key;
 	private final Map<String, DataType>types;
 
+	/**
+	 * the hashes already calculated. Key=type:id; Value=hash.
+	 * Classes are never memoized: class directories and the manifest may change during a run.
+	 */
+	private final ConcurrentMap<String, String> hashes = new ConcurrentHashMap<String, String>();
+
 	public DataFinderImpl(DataType ... dataType) {
 		key = UUID.randomUUID().toString();
 
@@ -76,4 +84,33 @@ public class DataFinderImpl implements DataFinder {
 		return t.getData(id);
 	}
 
+	@Override
+	public byte[][] getData(String type, String[] ids) throws RemoteException {
+		final byte[][] ret = new byte[ids.length][];
+		for (int i = 0; i < ids.length; i++)
+			ret[i] = getData(type, ids[i]);
+
+		return ret;
+	}
+
+	@Override
+	public String[] getHashes(String type, String[] ids) throws RemoteException {
+		final boolean memoize = !ClassType.NAME.equals(type);
+		final String[] ret = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			final String k = type + ':' + ids[i];
+
+			ret[i] = memoize ? hashes.get(k) : null;
+			if(ret[i] == null) {
+				final byte[] data = getData(type, ids[i]);
+				if(data != null) {
+					ret[i] = ContentCache.hash(data);
+					if(memoize) hashes.put(k, ret[i]);
+				}
+			}
+		}
+
+		return ret;
+	}
+
 }
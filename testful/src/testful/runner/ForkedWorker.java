@@ -0,0 +1,414 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.TestFul;
+import testful.utils.SerializationUtils;
+import testful.utils.Watchdog;
+
+/**
+ * A worker executing jobs in a separate JVM (see {@link ForkedWorkerMain}), which
+ * isolates the generator from the tested code (e.g., leaked threads, exhausted heap, corrupted static state).
+ * Jobs and results are exchanged through the standard input and output of the forked JVM,
+ * which also requests the classes it needs through the same pipe.
+ * The forked JVM is recycled after executing a given number of jobs, or when its heap is almost full.
+ * It is killed (and replaced by a fresh one) when it stays silent for too long while executing a job
+ * (e.g., the tested code deadlocks, or blocks in a static initializer or in native code),
+ * and when the job being executed is cancelled.
+ *
+ * @author matteo
+ */
+public class ForkedWorker extends Worker implements Watchdog.Alarm, Worker.KillSwitch {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	/** parent to child: a job to execute */
+	static final byte JOB = 1;
+	/** parent to child: the data requested by the child */
+	static final byte DATA = 2;
+	/** child to parent: the result of a job */
+	static final byte RESULT = 3;
+	/** child to parent: the exception thrown by a job */
+	static final byte EXCEPTION = 4;
+	/** child to parent: a request for data (e.g., the bytecode of one or more classes) */
+	static final byte DATA_REQUEST = 5;
+	/** child to parent: a request for the hashes of some data (see {@link DataFinder#getHashes(String, String[])}) */
+	static final byte HASH_REQUEST = 6;
+	/** parent to child: the hashes requested by the child */
+	static final byte HASHES = 7;
+
+	/** the number of data finders remembered by the worker */
+	private static final int MAX_FINDERS = 10;
+
+	/** the number of jobs executed by a forked JVM before recycling it */
+	private final int maxJobs;
+
+	/** the percentage of the heap that a forked JVM can use before being recycled */
+	private final int maxMemory;
+
+	/** the time the forked JVM can stay silent while executing a job (in milliseconds) */
+	private final long timeout;
+
+	/** the deadline of the job being executed (armed while waiting for the forked JVM) */
+	private Watchdog.Deadline deadline;
+
+	/** guards the deadline: the forked JVM is not killed after the job has been completed */
+	private final Object deadlineLock = new Object();
+
+	/** true if the forked JVM has been killed because the job took too long */
+	private volatile boolean expired;
+
+	/** true if the forked JVM has been killed (because the job took too long, or it has been cancelled) */
+	private volatile boolean killed;
+
+	/** the forked JVM (null if it is not running); it is read by the threads killing the forked JVM */
+	private volatile Process process;
+	private ObjectOutputStream out;
+	private ObjectInputStream in;
+
+	/** the number of jobs executed by the forked JVM */
+	private int executed;
+
+	/** the data finders of the jobs sent to the forked JVM. Key=dataFinder's key; Value=dataFinder */
+	private final Map<String, DataFinder> finders = new LinkedHashMap<String, DataFinder>(16, 0.75f, true) {
+		private static final long serialVersionUID = -3925722744003467151L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, DataFinder> eldest) {
+			if(size() <= MAX_FINDERS) return false;
+
+			workerManager.setWarm(ForkedWorker.this, eldest.getKey(), false);
+			return true;
+		}
+	};
+
+	public ForkedWorker(WorkerManager manager, int queue) {
+		super(manager, queue);
+
+		maxJobs = Math.max(1, TestFul.getProperty(TestFul.PROPERTY_RUNNER_FORK_JOBS, 1000));
+		maxMemory = TestFul.getProperty(TestFul.PROPERTY_RUNNER_FORK_MEMORY, 80);
+		timeout = Math.max(1, TestFul.getProperty(TestFul.PROPERTY_RUNNER_FORK_TIMEOUT, 60)) * 1000L;
+	}
+
+	@Override
+	protected JobResult execute(Job<?,?,?> ctx) {
+		if(deadline == null) {
+			deadline = Watchdog.getDeadline();
+			deadline.setAlarm(this);
+		}
+
+		// cancelling the job kills the forked JVM
+		Worker.setKillSwitch(this);
+		expired = false;
+		killed = false;
+
+		try {
+			if(process == null) fork();
+
+			// the forked JVM reuses the class loaders of the data finders it already knows
+			final String key = ctx.getFinderKey();
+			if(finders.put(key, ctx.getFinder()) == null)
+				workerManager.setWarm(this, key, true);
+
+			out.writeByte(JOB);
+			out.writeObject(ctx);
+			out.flush();
+			out.reset();
+
+			while(true) {
+				deadline.arm(timeout);
+				if(Worker.isCancelled()) throw new IOException("The job has been cancelled");
+
+				final byte msg = in.readByte();
+
+				switch(msg) {
+				case DATA_REQUEST:
+					serveData();
+					break;
+
+				case HASH_REQUEST:
+					serveHashes();
+					break;
+
+				case RESULT: {
+					final String id = in.readUTF();
+					final int memory = in.readByte();
+					final Serializable result = SerializationUtils.deserialize(readBytes(), false);
+
+					completed(memory);
+
+					if(result == null) return new JobResult(id, new Exception("Cannot read the result of the job " + id));
+					return new JobResult(id, result);
+				}
+
+				case EXCEPTION: {
+					final String id = in.readUTF();
+					final int memory = in.readByte();
+					final String message = in.readUTF();
+					final Serializable exc = SerializationUtils.deserialize(readBytes(), false);
+
+					completed(memory);
+
+					if(exc instanceof Exception) return new JobResult(id, (Exception) exc);
+					return new JobResult(id, new Exception(message));
+				}
+
+				default:
+					throw new IOException("Unexpected message: " + msg);
+				}
+			}
+
+		} catch(Exception e) {
+			disarm();
+
+			if(Worker.isCancelled()) {
+				if(LOG_FINE) logger.fine("Worker " + getName() + ": killed the forked JVM executing the cancelled job " + ctx.id);
+				terminate();
+				return new JobResult(ctx.id, new Exception("The job has been cancelled"));
+			}
+
+			if(expired) {
+				logger.warning("Worker " + getName() + ": killed the forked JVM, silent for " + timeout/1000 + " seconds while executing " + ctx.id);
+				terminate();
+				return new JobResult(ctx.id, new Exception("The forked JVM did not complete the job within " + timeout/1000 + " seconds"));
+			}
+
+			logger.log(Level.WARNING, "Worker " + getName() + ": the forked JVM failed while executing " + ctx.id + ": " + e, e);
+			terminate();
+			return new JobResult(ctx.id, new Exception("The forked JVM failed: " + e, e));
+
+		} finally {
+			disarm();
+		}
+	}
+
+	/**
+	 * The forked JVM completed the job: disarms the deadline, and recycles the forked JVM if it has been
+	 * killed after sending the result back, or if it has executed too many jobs or its heap is almost full.
+	 * @param memory the percentage of the heap used by the forked JVM
+	 */
+	private void completed(int memory) {
+		disarm();
+
+		if(killed) terminate();
+		else recycle(memory);
+	}
+
+	/** Disarms the deadline: once this method returns, the alarm does not kill the forked JVM */
+	private void disarm() {
+		synchronized(deadlineLock) {
+			deadline.disarm();
+		}
+	}
+
+	/**
+	 * The forked JVM has been silent for too long: kills it.
+	 * The worker's thread, blocked reading from the forked JVM, fails and spawns a fresh one for the next job.
+	 */
+	@Override
+	public void expired(Watchdog.Deadline d) {
+		synchronized(deadlineLock) {
+			if(!d.isArmed()) return;
+
+			d.disarm();
+			expired = true;
+			killed = true;
+			destroyProcess();
+		}
+	}
+
+	/**
+	 * The job being executed has been cancelled: kills the forked JVM.
+	 * The worker's thread, blocked reading from the forked JVM, fails and spawns a fresh one for the next job.
+	 */
+	@Override
+	public void kill() {
+		synchronized(deadlineLock) {
+			if(deadline == null || !deadline.isArmed()) return;
+
+			killed = true;
+			destroyProcess();
+		}
+	}
+
+	private void destroyProcess() {
+		final Process p = process;
+		if(p != null) p.destroy();
+	}
+
+	private void serveData() throws IOException {
+		final String key = in.readUTF();
+		final String type = in.readUTF();
+		final String[] ids = new String[in.readInt()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = in.readUTF();
+
+		final DataFinder finder = finders.get(key);
+		final byte[][] data = finder == null ? new byte[ids.length][] : finder.getData(type, ids);
+
+		out.writeByte(DATA);
+		for (byte[] d : data) {
+			if(d == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(d.length);
+				out.write(d);
+			}
+		}
+		out.flush();
+		out.reset();
+	}
+
+	private void serveHashes() throws IOException {
+		final String key = in.readUTF();
+		final String type = in.readUTF();
+		final String[] ids = new String[in.readInt()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = in.readUTF();
+
+		final DataFinder finder = finders.get(key);
+		final String[] hashes = finder == null ? new String[ids.length] : finder.getHashes(type, ids);
+
+		out.writeByte(HASHES);
+		for (String h : hashes) {
+			out.writeBoolean(h != null);
+			if(h != null) out.writeUTF(h);
+		}
+		out.flush();
+		out.reset();
+	}
+
+	private byte[] readBytes() throws IOException {
+		final byte[] ret = new byte[in.readInt()];
+		in.readFully(ret);
+		return ret;
+	}
+
+	/**
+	 * Recycles the forked JVM, if it executed too many jobs or if it is using too much memory
+	 * @param memory the percentage of the heap used by the forked JVM
+	 */
+	private void recycle(int memory) {
+		if(++executed < maxJobs && memory < maxMemory) return;
+
+		if(LOG_FINE) logger.fine("Worker " + getName() + ": recycling the forked JVM (" + executed + " jobs executed, " + memory + "% of the heap used)");
+		terminate();
+	}
+
+	private void fork() throws IOException {
+		final List<String> cmd = new ArrayList<String>();
+		cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+
+		for (String arg : TestFul.getProperty(TestFul.PROPERTY_RUNNER_FORK_JVM_ARGS, "").split(" "))
+			if(!arg.trim().isEmpty()) cmd.add(arg.trim());
+
+		// propagate the configuration of testful
+		for (String prop : System.getProperties().stringPropertyNames())
+			if(prop.startsWith("testful.")) cmd.add("-D" + prop + "=" + System.getProperty(prop));
+
+		cmd.add(ForkedWorkerMain.class.getName());
+
+		if(LOG_FINE) logger.fine("Worker " + getName() + ": forking " + cmd);
+
+		process = new ProcessBuilder(cmd).start();
+		executed = 0;
+
+		// the forked JVM blocks if its standard error is not consumed
+		final InputStream err = process.getErrorStream();
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					byte[] buff = new byte[4096];
+					int n;
+					while((n = err.read(buff)) >= 0)
+						System.err.write(buff, 0, n);
+				} catch(IOException e) {
+					// the forked JVM terminated
+				}
+			}
+		}, getName() + "-stderr");
+		t.setDaemon(true);
+		t.start();
+
+		out = new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream())) {
+			{
+				enableReplaceObject(true);
+			}
+
+			@Override
+			protected Object replaceObject(Object obj) throws IOException {
+				// data finders are accessed through the pipe
+				if(obj instanceof DataFinder && !(obj instanceof ChannelDataFinder))
+					return new ChannelDataFinder(((DataFinder) obj).getKey());
+
+				return obj;
+			}
+		};
+		out.flush();
+
+		in = new ObjectInputStream(new BufferedInputStream(process.getInputStream()));
+	}
+
+	/** Terminates the forked JVM */
+	private void terminate() {
+		if(process == null) return;
+
+		try {
+			out.close();
+		} catch(IOException e) {
+			// the forked JVM already terminated
+		}
+
+		process.destroy();
+
+		// the class loaders of the forked JVM are lost
+		for (String key : finders.keySet())
+			workerManager.setWarm(this, key, false);
+		finders.clear();
+
+		process = null;
+		out = null;
+		in = null;
+	}
+
+	@Override
+	protected void terminated() {
+		terminate();
+	}
+}
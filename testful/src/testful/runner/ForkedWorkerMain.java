@@ -0,0 +1,245 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.TestFul;
+import testful.utils.SerializationUtils;
+
+/**
+ * The main class of a forked worker JVM (see {@link ForkedWorker}).
+ * It receives jobs from the standard input, and sends back the results on the standard output.
+ * The standard output of the tested code is redirected to the standard error.
+ * Classes are retrieved from the parent JVM through the same pipe.
+ *
+ * @author matteo
+ */
+public class ForkedWorkerMain implements ChannelDataFinder.Channel {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+
+	/** the maximum length of exception messages */
+	private static final int MAX_MESSAGE = 1000;
+
+	public static void main(String[] args) {
+		// the forked JVM is accessed only through the pipe
+		System.setProperty(TestFul.PROPERTY_RUNNER_REMOTE, "false");
+
+		final FileOutputStream stdout = new FileOutputStream(FileDescriptor.out);
+		System.setOut(System.err);
+
+		int ret = 0;
+		try {
+			new ForkedWorkerMain(new FileInputStream(FileDescriptor.in), stdout).run();
+		} catch(EOFException e) {
+			// the parent JVM closed the pipe
+		} catch(Throwable e) {
+			logger.log(Level.SEVERE, "Forked worker failed: " + e, e);
+			ret = 1;
+		}
+
+		// kill threads leaked by the tested code
+		System.exit(ret);
+	}
+
+	/** guards the pipe: a request and its response must not be interleaved with other messages */
+	private final Object lock = new Object();
+
+	private final ObjectOutputStream out;
+	private final ObjectInputStream in;
+
+	/** Key=dataFinder's key; Value=dataFinder */
+	private final Map<String, DataFinder> finders = new HashMap<String, DataFinder>();
+
+	/** the keys of the data finders whose classes have been prefetched */
+	private final Set<String> prefetched = new HashSet<String>();
+
+	/** Key=dataFinder's key; Value=class loader available for reuse */
+	private final Map<String, RemoteClassLoader> classLoaders = new HashMap<String, RemoteClassLoader>();
+
+	private ForkedWorkerMain(InputStream input, FileOutputStream output) throws IOException {
+		out = new ObjectOutputStream(new BufferedOutputStream(output));
+		out.flush();
+
+		in = new ObjectInputStream(new BufferedInputStream(input)) {
+			{
+				enableResolveObject(true);
+			}
+
+			@Override
+			protected Object resolveObject(Object obj) throws IOException {
+				if(obj instanceof ChannelDataFinder) return getFinder((ChannelDataFinder) obj);
+				return obj;
+			}
+		};
+	}
+
+	private DataFinder getFinder(ChannelDataFinder finder) throws IOException {
+		final String key = finder.getKey();
+
+		DataFinder ret = finders.get(key);
+		if(ret == null) {
+			finder.setChannel(this);
+			ret = new DataFinderCaching(finder);
+			finders.put(key, ret);
+		}
+
+		return ret;
+	}
+
+	private void run() throws IOException, ClassNotFoundException {
+		JobResult result = null;
+
+		while(true) {
+			final Job<?,?,?> job;
+
+			// send back the result and read the next job without releasing the pipe
+			synchronized(lock) {
+				if(result != null) write(result);
+
+				final byte msg = in.readByte();
+				if(msg != ForkedWorker.JOB) throw new IOException("Unexpected message: " + msg);
+
+				job = (Job<?,?,?>) in.readObject();
+			}
+
+			result = execute(job);
+		}
+	}
+
+	private JobResult execute(Job<?,?,?> job) throws IOException {
+		final String key = job.getFinder().getKey();
+
+		// the first time a data finder is used, retrieve at once the classes that jobs are likely to load
+		if(prefetched.add(key)) ((DataFinderCaching) job.getFinder()).prefetchClasses();
+
+		RemoteClassLoader cl = job.isReloadClasses() && !RemoteClassLoader.RESTORE_STATIC ? null : job.reuse(classLoaders.remove(key));
+		if(cl == null) cl = new RemoteClassLoader(job.getFinder());
+
+		try {
+			Serializable result = job.execute(cl);
+			return new JobResult(job.id, result);
+
+		} catch(Exception e) {
+			return new JobResult(job.id, e);
+
+		} finally {
+			classLoaders.put(key, cl);
+
+			if(Thread.interrupted()) logger.finest("Clean the thread interrupted status");
+		}
+	}
+
+	private void write(JobResult result) throws IOException {
+		final Runtime rt = Runtime.getRuntime();
+		final int memory = (int) (100 * (rt.totalMemory() - rt.freeMemory()) / rt.maxMemory());
+
+		if(result.isException()) {
+			String msg = result.getException().toString();
+			if(msg.length() > MAX_MESSAGE) msg = msg.substring(0, MAX_MESSAGE);
+
+			out.writeByte(ForkedWorker.EXCEPTION);
+			out.writeUTF(result.getKey());
+			out.writeByte(memory);
+			out.writeUTF(msg);
+			writeBytes(SerializationUtils.serialize(result.getException(), false));
+
+		} else {
+			out.writeByte(ForkedWorker.RESULT);
+			out.writeUTF(result.getKey());
+			out.writeByte(memory);
+			writeBytes(SerializationUtils.serialize(result.getResult(), false));
+		}
+
+		out.flush();
+		out.reset();
+	}
+
+	@Override
+	public byte[][] requestData(String key, String type, String[] ids) throws IOException {
+		synchronized(lock) {
+			out.writeByte(ForkedWorker.DATA_REQUEST);
+			out.writeUTF(key);
+			out.writeUTF(type);
+			out.writeInt(ids.length);
+			for (String id : ids)
+				out.writeUTF(id);
+			out.flush();
+			out.reset();
+
+			final byte msg = in.readByte();
+			if(msg != ForkedWorker.DATA) throw new IOException("Unexpected message: " + msg);
+
+			final byte[][] ret = new byte[ids.length][];
+			for (int i = 0; i < ret.length; i++) {
+				final int len = in.readInt();
+				if(len >= 0) {
+					ret[i] = new byte[len];
+					in.readFully(ret[i]);
+				}
+			}
+			return ret;
+		}
+	}
+
+	@Override
+	public String[] requestHashes(String key, String type, String[] ids) throws IOException {
+		synchronized(lock) {
+			out.writeByte(ForkedWorker.HASH_REQUEST);
+			out.writeUTF(key);
+			out.writeUTF(type);
+			out.writeInt(ids.length);
+			for (String id : ids)
+				out.writeUTF(id);
+			out.flush();
+			out.reset();
+
+			final byte msg = in.readByte();
+			if(msg != ForkedWorker.HASHES) throw new IOException("Unexpected message: " + msg);
+
+			final String[] ret = new String[ids.length];
+			for (int i = 0; i < ret.length; i++)
+				if(in.readBoolean()) ret[i] = in.readUTF();
+
+			return ret;
+		}
+	}
+
+	private void writeBytes(byte[] b) throws IOException {
+		out.writeInt(b.length);
+		out.write(b);
+	}
+}
@@ -21,6 +21,7 @@ package testful.runner;
 import java.io.Serializable;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Hosts jobs to be executed, and allows runners to put the result back.
@@ -32,7 +33,33 @@ public interface IJobRepository extends Remote {
 
 	public <I extends Serializable, R extends Serializable> Job<I, R, ? extends IExecutor<I,R>> getJob() throws RemoteException;
 
+	/**
+	 * Retrieves a batch of jobs. The method blocks until at least one job is available,
+	 * then it returns all the available jobs, up to <code>max</code>.
+	 * Jobs are leased to the worker: if it does not send heartbeats
+	 * (see {@link #heartbeat(String)}), the repository re-dispatches its jobs to other workers.
+	 * @param worker the name of the worker retrieving the jobs
+	 * @param max the maximum number of jobs to retrieve (must be greater than 0)
+	 * @return a list containing at least one job
+	 * @throws RemoteException if something goes wrong
+	 */
+	public List<Job<?, ?, ?>> getJobs(String worker, int max) throws RemoteException;
+
+	/**
+	 * Notifies that the worker is alive: the leases of its jobs are renewed
+	 * @param worker the name of the worker
+	 * @throws RemoteException if something goes wrong
+	 */
+	public void heartbeat(String worker) throws RemoteException;
+
 	public void putResult(String key, Serializable result) throws RemoteException;
 
 	public void putException(String key, Exception exc) throws RemoteException;
+
+	/**
+	 * Puts back the outcomes of several jobs at once
+	 * @param results the outcome of the jobs
+	 * @throws RemoteException if something goes wrong
+	 */
+	public void putResults(List<JobResult> results) throws RemoteException;
 }
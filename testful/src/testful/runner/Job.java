@@ -39,6 +39,17 @@ public class Job<I extends Serializable, R extends Serializable, M extends IExec
 
 	private static Logger logger = Logger.getLogger("testful.executor");
 
+	/**
+	 * The priority of a job: jobs with a higher priority are executed before the others.
+	 */
+	public static enum Priority {
+		/** Latency-sensitive jobs, whose result is awaited by a sequential phase (e.g., local search) */
+		HIGH,
+
+		/** Throughput jobs (e.g., bulk evaluation of a population) */
+		NORMAL;
+	}
+
 	private static final long serialVersionUID = 1615872139934821021L;
 
 	private final static String ID_PREFIX = UUID.randomUUID().toString();
@@ -47,9 +58,15 @@ public class Job<I extends Serializable, R extends Serializable, M extends IExec
 
 	private final DataFinder finder;
 
+	/** the key of the data finder (cached, since the finder may be a remote object) */
+	private String finderKey;
+
 	/** True if the job must be executed in a new class loader */
 	private boolean reloadClasses = false;
 
+	/** The priority of the job */
+	private Priority priority = Priority.NORMAL;
+
 	/** The name of the execution manager to use */
 	private final String execManager;
 
@@ -67,6 +84,12 @@ public class Job<I extends Serializable, R extends Serializable, M extends IExec
 		this.id = ID_PREFIX + ":" + ID_SUFFIX.incrementAndGet();
 
 		this.finder = finder;
+		try {
+			finderKey = finder.getKey();
+		} catch(RemoteException e) {
+			// it will be retrieved when needed
+		}
+
 		this.execManager = execManager.getName();
 		this.input = new SerializableEnvelope<I>(input);
 	}
@@ -83,10 +106,32 @@ public class Job<I extends Serializable, R extends Serializable, M extends IExec
 		this.reloadClasses = reloadClasses;
 	}
 
+	public Priority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Sets the priority of the job: jobs with a higher priority are executed first.
+	 * @param priority the priority of the job
+	 */
+	public void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+
 	public DataFinder getFinder() {
 		return finder;
 	}
 
+	/**
+	 * Returns the key of the data finder, without invoking the (possibly remote) data finder
+	 * @return the key of the data finder
+	 * @throws RemoteException if the key is not cached and the data finder is not reachable
+	 */
+	public String getFinderKey() throws RemoteException {
+		if(finderKey == null) finderKey = finder.getKey();
+		return finderKey;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
@@ -100,6 +145,18 @@ public class Job<I extends Serializable, R extends Serializable, M extends IExec
 		}
 	}
 
+	/**
+	 * Prepares a class loader used by previous jobs to execute this job:
+	 * if the job requires fresh classes, the static state of the classes is restored
+	 * (see {@link RemoteClassLoader#restoreStaticState()}).
+	 * @param loader the class loader (can be null)
+	 * @return the class loader, or null if a new class loader must be used
+	 */
+	public RemoteClassLoader reuse(RemoteClassLoader loader) {
+		if(loader == null || !reloadClasses) return loader;
+		return loader.restoreStaticState() ? loader : null;
+	}
+
 	@SuppressWarnings("unchecked")
 	public R execute(RemoteClassLoader loader) throws Exception {
 		try {
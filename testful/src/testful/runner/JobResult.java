@@ -0,0 +1,83 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of a job: it contains either the result or the exception thrown by the job.
+ * It is used to send back several results at once to a job repository.
+ * @author matteo
+ */
+public class JobResult implements Serializable {
+
+	private static final long serialVersionUID = -4304843186123580934L;
+
+	/** the id of the job */
+	private final String key;
+
+	/** the result of the job (null if the job has thrown an exception) */
+	private final Serializable result;
+
+	/** the exception thrown by the job (null if the job completed normally) */
+	private final Exception exception;
+
+	/**
+	 * Creates the outcome of a job completed normally
+	 * @param key the id of the job
+	 * @param result the result of the job
+	 */
+	public JobResult(String key, Serializable result) {
+		this.key = key;
+		this.result = result;
+		exception = null;
+	}
+
+	/**
+	 * Creates the outcome of a job that threw an exception
+	 * @param key the id of the job
+	 * @param exception the exception thrown by the job
+	 */
+	public JobResult(String key, Exception exception) {
+		this.key = key;
+		result = null;
+		this.exception = exception;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public Serializable getResult() {
+		return result;
+	}
+
+	public Exception getException() {
+		return exception;
+	}
+
+	public boolean isException() {
+		return exception != null;
+	}
+
+	@Override
+	public String toString() {
+		return key + (exception != null ? " exception: " + exception : " result: " + result);
+	}
+}
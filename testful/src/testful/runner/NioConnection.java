@@ -0,0 +1,187 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection of the nio transport (see {@link NioTransport}).
+ * Messages are sent as length-prefixed frames: <code>length (int), id (int), type (byte), payload</code>.
+ * The id allows several requests to be in flight on the same connection: each response carries the id of its request.
+ * Frames are read by a dedicated thread, while any thread can send a frame.
+ *
+ * @author matteo
+ */
+abstract class NioConnection {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	/** the size of the header of a frame (excluding its length) */
+	private static final int HEADER = 5;
+
+	/** the maximum size of a frame */
+	private static final int MAX_FRAME = 64 * 1024 * 1024;
+
+	/** The payload of a frame */
+	static class Payload extends DataOutputStream {
+
+		public Payload() {
+			super(new ByteArrayOutputStream());
+		}
+
+		/**
+		 * Writes an array of bytes, prefixed by its length (-1 if data is null)
+		 * @param data the array of bytes to write
+		 * @throws IOException never
+		 */
+		public void writeData(byte[] data) throws IOException {
+			if(data == null) {
+				writeInt(-1);
+			} else {
+				writeInt(data.length);
+				write(data);
+			}
+		}
+
+		public byte[] toByteArray() {
+			return ((ByteArrayOutputStream) out).toByteArray();
+		}
+	}
+
+	/**
+	 * Reads an array of bytes written by {@link Payload#writeData(byte[])}
+	 * @param in the payload
+	 * @return the array of bytes (possibly null)
+	 * @throws IOException if the payload is malformed
+	 */
+	static byte[] readData(DataInputStream in) throws IOException {
+		final int len = in.readInt();
+		if(len < 0) return null;
+
+		final byte[] ret = new byte[len];
+		in.readFully(ret);
+		return ret;
+	}
+
+	protected final SocketChannel channel;
+
+	private final String name;
+
+	/** guards the writes on the channel: frames must not be interleaved */
+	private final Object writeLock = new Object();
+
+	public NioConnection(SocketChannel channel, String name) throws IOException {
+		this.channel = channel;
+		this.name = name;
+
+		channel.configureBlocking(true);
+		channel.socket().setTcpNoDelay(true);
+		channel.socket().setKeepAlive(true);
+	}
+
+	/** Starts the thread reading the frames */
+	public void start() {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final ByteBuffer length = ByteBuffer.allocate(4);
+
+				try {
+					while(true) {
+						length.clear();
+						readFully(length);
+
+						final int len = length.getInt(0);
+						if(len < HEADER || len > MAX_FRAME) throw new IOException("Invalid frame length: " + len);
+
+						final ByteBuffer frame = ByteBuffer.allocate(len);
+						readFully(frame);
+						frame.flip();
+
+						final int id = frame.getInt();
+						final byte type = frame.get();
+						handle(id, type, new DataInputStream(new ByteArrayInputStream(frame.array(), HEADER, len - HEADER)));
+					}
+
+				} catch(IOException e) {
+					if(LOG_FINE) logger.fine("Connection " + name + " closed: " + e);
+					close(e);
+				}
+			}
+		}, name);
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private void readFully(ByteBuffer buff) throws IOException {
+		while(buff.hasRemaining())
+			if(channel.read(buff) < 0) throw new EOFException("Connection " + name + " closed");
+	}
+
+	/**
+	 * Sends a frame
+	 * @param id the id of the frame
+	 * @param type the type of the frame
+	 * @param payload the payload of the frame
+	 * @throws IOException if the connection is broken
+	 */
+	protected void send(int id, byte type, byte[] payload) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(4 + HEADER);
+		header.putInt(HEADER + payload.length).putInt(id).put(type).flip();
+
+		final ByteBuffer[] frame = new ByteBuffer[] { header, ByteBuffer.wrap(payload) };
+
+		synchronized(writeLock) {
+			while(header.hasRemaining() || frame[1].hasRemaining())
+				channel.write(frame);
+		}
+	}
+
+	/**
+	 * Closes the connection
+	 * @param cause the reason
+	 */
+	protected void close(IOException cause) {
+		try {
+			channel.close();
+		} catch(IOException e) {
+			// the connection is already closed
+		}
+	}
+
+	/**
+	 * Handles a frame. This method is called by the thread reading the frames:
+	 * long-running operations must be executed by other threads.
+	 * @param id the id of the frame
+	 * @param type the type of the frame
+	 * @param in the payload of the frame
+	 * @throws IOException if the frame cannot be handled, and the connection must be closed
+	 */
+	protected abstract void handle(int id, byte type, DataInputStream in) throws IOException;
+}
@@ -0,0 +1,322 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.utils.SerializationUtils;
+
+/**
+ * A job repository reached through the nio transport (see {@link NioTransport}).
+ * Any number of threads can issue requests concurrently: they are sent on the
+ * same connection without waiting for the previous responses.
+ * The data finders of the received jobs retrieve the data through the same connection.
+ *
+ * @author matteo
+ */
+class NioJobRepository extends NioConnection implements IJobRepository, ChannelDataFinder.Channel {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	/** A request waiting for its response */
+	private static class Call {
+		final CountDownLatch done = new CountDownLatch(1);
+
+		byte type;
+		DataInputStream in;
+		IOException failure;
+	}
+
+	private final String address;
+
+	private final AtomicInteger ids = new AtomicInteger();
+
+	/** Key=id of the request; Value=the request waiting for the response */
+	private final ConcurrentMap<Integer, Call> calls = new ConcurrentHashMap<Integer, Call>();
+
+	/** the reason why the connection has been closed (null if it is open) */
+	private volatile IOException closed;
+
+	/** Key=dataFinder's key; Value=dataFinder */
+	private final ConcurrentMap<String, DataFinder> finders = new ConcurrentHashMap<String, DataFinder>();
+
+	/** the name of the repository (retrieved on the first request) */
+	private volatile String name;
+
+	public NioJobRepository(SocketChannel channel, String address) throws IOException {
+		super(channel, "NioJobRepository-" + address);
+		this.address = address;
+	}
+
+	@Override
+	protected void handle(int id, byte type, DataInputStream in) throws IOException {
+		final Call call = calls.remove(id);
+
+		// the caller stopped waiting for the response (e.g., it has been interrupted)
+		if(call == null) {
+			if(LOG_FINE) logger.fine("Connection " + address + ": dropped the response " + id + " (nobody is waiting for it)");
+			return;
+		}
+
+		call.type = type;
+		call.in = in;
+		call.done.countDown();
+	}
+
+	@Override
+	protected void close(IOException cause) {
+		closed = cause;
+		super.close(cause);
+
+		for(Integer id : calls.keySet()) {
+			final Call call = calls.remove(id);
+			if(call != null) {
+				call.failure = cause;
+				call.done.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Sends a request and waits for the response
+	 * @param type the type of the request
+	 * @param payload the payload of the request
+	 * @return the payload of the response
+	 * @throws RemoteException if the request fails
+	 */
+	private DataInputStream call(byte type, NioConnection.Payload payload) throws RemoteException {
+		final int id = ids.incrementAndGet();
+		final Call call = new Call();
+		calls.put(id, call);
+
+		try {
+			// the connection may have been closed before registering the call
+			if(closed != null) throw closed;
+
+			send(id, type, payload.toByteArray());
+			call.done.await();
+
+		} catch(IOException e) {
+			calls.remove(id);
+			throw new RemoteException("Cannot contact " + address, e);
+
+		} catch(InterruptedException e) {
+			calls.remove(id);
+			throw new RemoteException("Interrupted while waiting for " + address, e);
+		}
+
+		if(call.failure != null) throw new RemoteException("Cannot contact " + address, call.failure);
+
+		try {
+			if(call.type == NioTransport.ERROR) throw new RemoteException(call.in.readUTF());
+		} catch(IOException e) {
+			throw new RemoteException("Malformed response from " + address, e);
+		}
+
+		return call.in;
+	}
+
+	@Override
+	public String getName() throws RemoteException {
+		if(name == null) {
+			try {
+				name = call(NioTransport.GET_NAME, new Payload()).readUTF();
+			} catch(RemoteException e) {
+				throw e;
+			} catch(IOException e) {
+				throw new RemoteException("Malformed response from " + address, e);
+			}
+		}
+
+		return name;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <I extends Serializable, R extends Serializable> Job<I, R, ? extends IExecutor<I, R>> getJob() throws RemoteException {
+		List<Job<?, ?, ?>> jobs = readJobs(call(NioTransport.GET_JOB, new Payload()));
+		return (Job<I, R, ? extends IExecutor<I, R>>) (jobs.isEmpty() ? null : jobs.get(0));
+	}
+
+	@Override
+	public List<Job<?, ?, ?>> getJobs(String worker, int max) throws RemoteException {
+		try {
+			Payload out = new Payload();
+			out.writeUTF(worker);
+			out.writeInt(max);
+			return readJobs(call(NioTransport.GET_JOBS, out));
+		} catch(RemoteException e) {
+			throw e;
+		} catch(IOException e) {
+			throw new RemoteException("Cannot send the request to " + address, e);
+		}
+	}
+
+	private List<Job<?, ?, ?>> readJobs(DataInputStream in) throws RemoteException {
+		try {
+			final int n = in.readInt();
+			final List<Job<?, ?, ?>> ret = new ArrayList<Job<?, ?, ?>>(n);
+
+			for(int i = 0; i < n; i++) {
+				final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readData(in))) {
+					{
+						enableResolveObject(true);
+					}
+
+					@Override
+					protected Object resolveObject(Object obj) throws IOException {
+						if(obj instanceof ChannelDataFinder) return getFinder((ChannelDataFinder) obj);
+						return obj;
+					}
+				};
+
+				ret.add((Job<?, ?, ?>) ois.readObject());
+			}
+
+			return ret;
+
+		} catch(IOException e) {
+			throw new RemoteException("Malformed jobs from " + address, e);
+		} catch(ClassNotFoundException e) {
+			throw new RemoteException("Malformed jobs from " + address, e);
+		}
+	}
+
+	private DataFinder getFinder(ChannelDataFinder finder) throws RemoteException {
+		final String key = finder.getKey();
+
+		DataFinder ret = finders.get(key);
+		if(ret == null) {
+			finder.setChannel(this);
+			ret = new DataFinderCaching(finder);
+
+			DataFinder prev = finders.putIfAbsent(key, ret);
+			if(prev != null) ret = prev;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public byte[][] requestData(String key, String type, String[] ids) throws IOException {
+		Payload out = new Payload();
+		out.writeUTF(key);
+		out.writeUTF(type);
+		out.writeInt(ids.length);
+		for (String id : ids)
+			out.writeUTF(id);
+
+		final DataInputStream in = call(NioTransport.GET_DATA, out);
+
+		final byte[][] ret = new byte[ids.length][];
+		for (int i = 0; i < ret.length; i++)
+			ret[i] = readData(in);
+
+		return ret;
+	}
+
+	@Override
+	public String[] requestHashes(String key, String type, String[] ids) throws IOException {
+		Payload out = new Payload();
+		out.writeUTF(key);
+		out.writeUTF(type);
+		out.writeInt(ids.length);
+		for (String id : ids)
+			out.writeUTF(id);
+
+		final DataInputStream in = call(NioTransport.GET_HASHES, out);
+
+		final String[] ret = new String[ids.length];
+		for (int i = 0; i < ret.length; i++)
+			if(in.readBoolean()) ret[i] = in.readUTF();
+
+		return ret;
+	}
+
+	@Override
+	public void heartbeat(String worker) throws RemoteException {
+		try {
+			Payload out = new Payload();
+			out.writeUTF(worker);
+			call(NioTransport.HEARTBEAT, out);
+		} catch(RemoteException e) {
+			throw e;
+		} catch(IOException e) {
+			throw new RemoteException("Cannot send the request to " + address, e);
+		}
+	}
+
+	@Override
+	public void putResult(String key, Serializable result) throws RemoteException {
+		putResults(Collections.singletonList(new JobResult(key, result)));
+	}
+
+	@Override
+	public void putException(String key, Exception exc) throws RemoteException {
+		putResults(Collections.singletonList(new JobResult(key, exc)));
+	}
+
+	@Override
+	public void putResults(List<JobResult> results) throws RemoteException {
+		try {
+			Payload out = new Payload();
+			out.writeInt(results.size());
+
+			for(JobResult result : results) {
+				out.writeUTF(result.getKey());
+				out.writeBoolean(result.isException());
+
+				if(result.isException()) {
+					out.writeUTF(NioTransport.truncate(result.getException().toString()));
+					out.writeData(SerializationUtils.serialize(result.getException(), false));
+				} else {
+					out.writeData(SerializationUtils.serialize(result.getResult(), false));
+				}
+			}
+
+			call(NioTransport.PUT_RESULTS, out);
+
+		} catch(RemoteException e) {
+			throw e;
+		} catch(IOException e) {
+			throw new RemoteException("Cannot send the request to " + address, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return address;
+	}
+}
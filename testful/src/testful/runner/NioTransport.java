@@ -0,0 +1,347 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.TestFul;
+import testful.utils.SerializationUtils;
+
+/**
+ * Exports job repositories through a binary protocol: each worker manager opens a single
+ * persistent connection, which multiplexes the requests for jobs, the results and the requests
+ * for data (e.g., the bytecode of classes).
+ * Requests are pipelined: the worker manager does not wait for a response before sending other requests.
+ * The address of a repository is <code>nio://host:port</code>.
+ * Only the job repository uses this transport: remote worker managers are still contacted through RMI
+ * (see {@link RunnerPool#addRemoteWorker(String)}), and data finders are still exported through RMI,
+ * even if the workers receiving jobs through this transport do not use it.
+ *
+ * @author matteo
+ */
+public class NioTransport extends Transport {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	public static final String NAME = "nio";
+
+	private static final String SCHEME = NAME + "://";
+
+	static final NioTransport singleton = new NioTransport();
+
+	/** request: the name of the repository */
+	static final byte GET_NAME = 1;
+	/** request: a job (see {@link IJobRepository#getJob()}) */
+	static final byte GET_JOB = 2;
+	/** request: a batch of jobs (see {@link IJobRepository#getJobs(String, int)}) */
+	static final byte GET_JOBS = 3;
+	/** request: the outcome of several jobs (see {@link IJobRepository#putResults(List)}) */
+	static final byte PUT_RESULTS = 4;
+	/** request: a heartbeat (see {@link IJobRepository#heartbeat(String)}) */
+	static final byte HEARTBEAT = 5;
+	/** request: some data (see {@link DataFinder#getData(String, String[])}) */
+	static final byte GET_DATA = 6;
+	/** the response of a request */
+	static final byte RESPONSE = 7;
+	/** the request failed: the payload contains the error message */
+	static final byte ERROR = 8;
+	/** request: the hashes of some data (see {@link DataFinder#getHashes(String, String[])}) */
+	static final byte GET_HASHES = 9;
+
+	/** the maximum length of exception messages */
+	private static final int MAX_MESSAGE = 1000;
+
+	/** the number of data finders remembered by each connection */
+	private static final int MAX_FINDERS = 100;
+
+	/** Serves the requests of all the connections */
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger n = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "NioTransport-" + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private NioTransport() { }
+
+	/**
+	 * Checks if the address belongs to a repository exported through the nio transport
+	 * @param address the address
+	 * @return true if the address is in the form <code>nio://host:port</code>
+	 */
+	static boolean isAddress(String address) {
+		return address.startsWith(SCHEME);
+	}
+
+	@Override
+	public String export(final IJobRepository rep) throws IOException {
+		final ServerSocketChannel server = ServerSocketChannel.open();
+		server.socket().setReuseAddress(true);
+		server.socket().bind(new InetSocketAddress(TestFul.getProperty(TestFul.PROPERTY_RUNNER_PORT, 0)));
+
+		final String address = SCHEME + InetAddress.getLocalHost().getHostName() + ":" + server.socket().getLocalPort();
+
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						SocketChannel channel = server.accept();
+						if(LOG_FINE) logger.fine("Accepted connection from " + channel.socket().getRemoteSocketAddress());
+						new ServerConnection(channel, rep).start();
+					}
+				} catch(IOException e) {
+					logger.log(Level.WARNING, "Remote evaluation disabled: cannot accept connections on " + address, e);
+				}
+			}
+		}, "NioTransport-" + address);
+		t.setDaemon(true);
+		t.start();
+
+		return address;
+	}
+
+	@Override
+	public IJobRepository connect(String address) throws RemoteException, MalformedURLException {
+		if(!isAddress(address)) throw new MalformedURLException("Invalid address: " + address + " (expected: " + SCHEME + "host:port)");
+
+		final String hostPort = address.substring(SCHEME.length());
+		final int sep = hostPort.lastIndexOf(':');
+
+		final int port;
+		try {
+			port = sep < 0 ? -1 : Integer.parseInt(hostPort.substring(sep + 1));
+		} catch(NumberFormatException e) {
+			throw new MalformedURLException("Invalid port in " + address);
+		}
+		if(port < 0) throw new MalformedURLException("Invalid address: " + address + " (expected: " + SCHEME + "host:port)");
+
+		try {
+			final NioJobRepository ret = new NioJobRepository(SocketChannel.open(new InetSocketAddress(hostPort.substring(0, sep), port)), address);
+			ret.start();
+			return ret;
+		} catch(IOException e) {
+			throw new RemoteException("Cannot connect to " + address, e);
+		}
+	}
+
+	/**
+	 * The connection with a worker manager: it serves its requests
+	 * by invoking the exported repository.
+	 */
+	private class ServerConnection extends NioConnection {
+
+		private final IJobRepository rep;
+
+		/** the data finders of the jobs sent through the connection. Key=dataFinder's key; Value=dataFinder */
+		private final Map<String, DataFinder> finders = Collections.synchronizedMap(new LinkedHashMap<String, DataFinder>(16, 0.75f, true) {
+			private static final long serialVersionUID = -4373125384813698203L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, DataFinder> eldest) {
+				return size() > MAX_FINDERS;
+			}
+		});
+
+		public ServerConnection(SocketChannel channel, IJobRepository rep) throws IOException {
+			super(channel, "NioTransport-" + channel.socket().getRemoteSocketAddress());
+			this.rep = rep;
+		}
+
+		@Override
+		protected void handle(final int id, final byte type, final DataInputStream in) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					byte response;
+					byte[] payload;
+					try {
+						payload = serve(type, in);
+						response = RESPONSE;
+
+					} catch(Exception e) {
+						if(LOG_FINE) logger.log(Level.FINE, "Request " + type + " failed: " + e, e);
+
+						Payload out = new Payload();
+						try {
+							out.writeUTF(truncate(e.toString()));
+						} catch(IOException e1) {
+							// never happens: it is written in memory
+						}
+						payload = out.toByteArray();
+						response = ERROR;
+					}
+
+					try {
+						send(id, response, payload);
+					} catch(IOException e) {
+						close(e);
+					}
+				}
+			});
+		}
+
+		private byte[] serve(byte type, DataInputStream in) throws Exception {
+			final Payload out = new Payload();
+
+			switch(type) {
+			case GET_NAME:
+				out.writeUTF(rep.getName());
+				break;
+
+			case GET_JOB:
+				writeJobs(out, Collections.<Job<?,?,?>> singletonList(rep.getJob()));
+				break;
+
+			case GET_JOBS: {
+				final String worker = in.readUTF();
+				final int max = in.readInt();
+				writeJobs(out, rep.getJobs(worker, max));
+				break;
+			}
+
+			case PUT_RESULTS: {
+				final int n = in.readInt();
+				final List<JobResult> results = new ArrayList<JobResult>(n);
+				for(int i = 0; i < n; i++) {
+					final String key = in.readUTF();
+					final boolean exception = in.readBoolean();
+
+					if(exception) {
+						final String message = in.readUTF();
+						final Serializable exc = SerializationUtils.deserialize(readData(in), false);
+						if(exc instanceof Exception) results.add(new JobResult(key, (Exception) exc));
+						else results.add(new JobResult(key, new Exception(message)));
+
+					} else {
+						final Serializable result = SerializationUtils.deserialize(readData(in), false);
+						if(result == null) results.add(new JobResult(key, new Exception("Cannot read the result of the job " + key)));
+						else results.add(new JobResult(key, result));
+					}
+				}
+
+				rep.putResults(results);
+				break;
+			}
+
+			case HEARTBEAT:
+				rep.heartbeat(in.readUTF());
+				break;
+
+			case GET_DATA: {
+				final String key = in.readUTF();
+				final String dataType = in.readUTF();
+				final String[] dataIds = new String[in.readInt()];
+				for (int i = 0; i < dataIds.length; i++)
+					dataIds[i] = in.readUTF();
+
+				final DataFinder finder = finders.get(key);
+				if(finder == null) throw new IOException("Unknown data finder: " + key);
+
+				for (byte[] data : finder.getData(dataType, dataIds))
+					out.writeData(data);
+				break;
+			}
+
+			case GET_HASHES: {
+				final String key = in.readUTF();
+				final String dataType = in.readUTF();
+				final String[] dataIds = new String[in.readInt()];
+				for (int i = 0; i < dataIds.length; i++)
+					dataIds[i] = in.readUTF();
+
+				final DataFinder finder = finders.get(key);
+				if(finder == null) throw new IOException("Unknown data finder: " + key);
+
+				for (String hash : finder.getHashes(dataType, dataIds)) {
+					out.writeBoolean(hash != null);
+					if(hash != null) out.writeUTF(hash);
+				}
+				break;
+			}
+
+			default:
+				throw new IOException("Unexpected message: " + type);
+			}
+
+			return out.toByteArray();
+		}
+
+		private void writeJobs(Payload out, List<Job<?,?,?>> jobs) throws IOException {
+			out.writeInt(jobs.size());
+
+			for(Job<?,?,?> job : jobs) {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final ObjectOutputStream oos = new ObjectOutputStream(bytes) {
+					{
+						enableReplaceObject(true);
+					}
+
+					@Override
+					protected Object replaceObject(Object obj) throws IOException {
+						// data finders are accessed through the connection
+						if(obj instanceof DataFinder && !(obj instanceof ChannelDataFinder)) {
+							final DataFinder finder = (DataFinder) obj;
+							finders.put(finder.getKey(), finder);
+							return new ChannelDataFinder(finder.getKey());
+						}
+
+						return obj;
+					}
+				};
+				oos.writeObject(job);
+				oos.close();
+
+				out.writeData(bytes.toByteArray());
+			}
+		}
+	}
+
+	static String truncate(String msg) {
+		if(msg.length() > MAX_MESSAGE) return msg.substring(0, MAX_MESSAGE);
+		return msg;
+	}
+}
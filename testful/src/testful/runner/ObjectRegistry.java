@@ -22,8 +22,7 @@ import java.rmi.RemoteException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import testful.utils.CachingMap;
-import testful.utils.CachingMap.Cacheable;
+import testful.utils.ConcurrentCache;
 import testful.utils.SerializationUtils;
 
 /**
@@ -46,7 +45,7 @@ public class ObjectRegistry {
 		}
 	}
 
-	private final CachingMap<String, ISerializable> cache = new CachingMap<String, ISerializable>(50, 5 * 60 * 1000,  1 * 60 * 1000);
+	private final ConcurrentCache<String, ISerializable> cache = new ConcurrentCache<String, ISerializable>(50);
 
 	private final DataFinder finder;
 	private final ClassLoader classLoader;
@@ -58,9 +57,9 @@ public class ObjectRegistry {
 	public ISerializable getObject(String identifier) {
 
 		// check the cache of the objects
-		CachingMap.Cacheable<ISerializable> tmp = cache.get(identifier);
+		ISerializable tmp = cache.get(identifier);
 		if(tmp != null)
-			return tmp.getElement();
+			return tmp;
 
 		try {
 
@@ -68,7 +67,7 @@ public class ObjectRegistry {
 			if(b == null) return null;
 
 			ISerializable object = (ISerializable) SerializationUtils.deserialize(b, ObjectType.COMPRESS, classLoader);
-			cache.put(identifier, new Cacheable<ISerializable>(object));
+			cache.put(identifier, object);
 
 			return object;
 
@@ -18,16 +18,24 @@
 
 package testful.runner;
 
+import java.lang.reflect.Method;
 import java.rmi.RemoteException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import testful.TestFul;
 import testful.utils.ElementWithKey;
 
 /**
  * Remote class loader.
+ * Several threads can load classes at the same time: each class is guarded by its own lock,
+ * and the class loader is registered as parallel capable (when the JVM supports it).
  * @author matteo
  */
 public class RemoteClassLoader extends ClassLoader implements ElementWithKey<String> {
@@ -36,6 +44,20 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 
 	private static final ClassLoader superClassLoader = RemoteClassLoader.class.getClassLoader();
 
+	/** if true, jobs requiring fresh classes reuse class loaders, restoring their static state (see {@link TestFul#PROPERTY_RUNNER_RESTORE_STATIC}) */
+	public static final boolean RESTORE_STATIC = TestFul.getProperty(TestFul.PROPERTY_RUNNER_RESTORE_STATIC, false);
+
+	static {
+		// ClassLoader.registerAsParallelCapable is available since Java 7
+		try {
+			Method register = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+			register.setAccessible(true);
+			register.invoke(null);
+		} catch(Throwable e) {
+			logger.fine("Cannot register the remote class loader as parallel capable: " + e);
+		}
+	}
+
 	/** for these classes, use always the system class loader */
 	private static final String[] SYSTEM_CLASSES = {
 		"testful.coverage.TrackerDatum",
@@ -49,7 +71,6 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 		"testful.coverage.behavior.BehaviorTracker",
 		"testful.coverage.fault.FaultTracker",
 		"testful.coverage.stopper.Stopper",
-		"testful.coverage.stopper.Stopper$1",
 		"testful.coverage.whiteBox.TrackerWhiteBox",
 
 		// Execution Managers
@@ -68,6 +89,7 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 		"testful.model.ClassRegistry$1", // Fix for the sun compiler
 		"testful.runner.Executor",
 		"testful.runner.ObjectRegistry",
+		"testful.runner.StaticState",
 	};
 
 	/** for these packages, use always the system class loader */
@@ -97,18 +119,22 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 		return true;
 	}
 
-	private static long idGenerator = 0;
+	private static final AtomicLong idGenerator = new AtomicLong();
 
 	private final long id;
 	private final DataFinder finder;
-	private final Set<String> loaded;
 	private final String key;
 
+	/** the locks guarding the loading of the classes being loaded (a lock is removed once its class has been defined) */
+	private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+	/** the time spent by each thread to load classes (threads that terminate are forgotten) */
+	private final Map<Thread, AtomicLong> times = Collections.synchronizedMap(new WeakHashMap<Thread, AtomicLong>());
+
 	public RemoteClassLoader(DataFinder finder) throws RemoteException {
 		super(superClassLoader);
 
-		id = idGenerator++;
-		loaded = new HashSet<String>();
+		id = idGenerator.getAndIncrement();
 
 		this.finder = finder;
 		key = finder.getKey();
@@ -123,11 +149,27 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 	}
 
 	@Override
-	protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
 
-		if(canUseSystemClassLoader(name) || loaded.contains(name)) return super.loadClass(name, resolve);
+		if(canUseSystemClassLoader(name)) return super.loadClass(name, resolve);
 
-		return findClass(name);
+		final Object lock = getLock(name);
+		synchronized (lock) {
+			Class<?> c = findLoadedClass(name);
+			if(c == null) c = findClass(name);
+
+			// once the class is defined, findLoadedClass is enough: threads loading it later do not need the lock
+			locks.remove(name, lock);
+
+			if(resolve) resolveClass(c);
+			return c;
+		}
+	}
+
+	private Object getLock(String name) {
+		final Object lock = new Object();
+		final Object prev = locks.putIfAbsent(name, lock);
+		return prev == null ? lock : prev;
 	}
 
 	@Override
@@ -136,14 +178,11 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 		final byte[] b;
 		try {
 
-			synchronized (finder) {
+			final long start = System.currentTimeMillis();
+			b = finder.getData(ClassType.NAME, name);
+			final long end = System.currentTimeMillis();
 
-				final long start = System.currentTimeMillis();
-				b = finder.getData(ClassType.NAME, name);
-				final long end = System.currentTimeMillis();
-
-				time += (end - start);
-			}
+			getTime(Thread.currentThread()).addAndGet(end - start);
 
 		} catch(RemoteException e) {
 			final ClassNotFoundException exc = new ClassNotFoundException("Cannot retrieve the class " + name, e);
@@ -153,31 +192,50 @@ public class RemoteClassLoader extends ClassLoader implements ElementWithKey<Str
 
 		if(b == null) throw new ClassNotFoundException("Cannot find class " + name);
 
-		Class<?> c = defineClass(name, b, 0, b.length);
-		loaded.add(name);
-		return c;
+		return defineClass(name, b, 0, b.length);
+	}
+
+	private AtomicLong getTime(Thread thread) {
+		synchronized(times) {
+			AtomicLong time = times.get(thread);
+			if(time == null) {
+				time = new AtomicLong();
+				times.put(thread, time);
+			}
+			return time;
+		}
+	}
 
+	/**
+	 * Returns the amount of time spent by a thread to load classes (and reset its counter)
+	 * @param thread the thread
+	 * @return the amount of time (ms) spent by the thread to load classes
+	 */
+	public long getLoadingTime(Thread thread) {
+		final AtomicLong time = times.get(thread);
+		return time == null ? 0 : time.getAndSet(0);
 	}
 
-	/** Total time used by method findClass */
-	private long time;
 
 	/**
-	 * Returns the amount of time spent to load classes (and reset the counter)
-	 * @return the amount of time (ms) spent to load classes
+	 * Restores the static state of the instrumented classes initialized so far (see {@link StaticState})
+	 * @return true if the static state has been restored, false if a new class loader must be used
 	 */
-	public long getLoadingTime() {
+	public boolean restoreStaticState() {
+		final Class<?> c = findLoadedClass(StaticState.class.getName());
 
-		final long ret;
-		synchronized (finder) {
-			ret = time;
-			time = 0;
-		}
+		// no instrumented class has been initialized
+		if(c == null) return true;
 
-		return ret;
+		try {
+			c.getMethod("restore").invoke(null);
+			return true;
+		} catch(Exception e) {
+			logger.log(Level.WARNING, "Cannot restore the static state of the classes: " + e.getMessage(), e);
+			return false;
+		}
 	}
 
-
 	@Override
 	public String getKey() {
 		return key;
@@ -0,0 +1,79 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exports job repositories through RMI: they are bound to the RMI registry
+ * running on this machine (a new registry is created, if none is available).
+ *
+ * @author matteo
+ */
+public class RmiTransport extends Transport {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+	private static final boolean LOG_FINER = logger.isLoggable(Level.FINER);
+
+	public static final String NAME = "rmi";
+
+	static final RmiTransport singleton = new RmiTransport();
+
+	private RmiTransport() { }
+
+	@Override
+	public String export(IJobRepository rep) throws IOException {
+		Registry registry = null;
+		try {
+			registry = LocateRegistry.getRegistry(Registry.REGISTRY_PORT);
+			registry.list();
+			if(LOG_FINER) logger.finer("Found a RMI registry");
+		} catch(Exception e) {
+			registry = LocateRegistry.createRegistry(Registry.REGISTRY_PORT);
+			if(LOG_FINER) logger.finer("Created a new RMI registry");
+		}
+
+		final String name = rep.getName();
+		final Remote remote = UnicastRemoteObject.exportObject(rep, 0);
+
+		try {
+			registry.bind(name, remote);
+		} catch(Exception e) {
+			UnicastRemoteObject.unexportObject(rep, true);
+			throw new RemoteException("Cannot bind " + name, e);
+		}
+
+		return name;
+	}
+
+	@Override
+	public IJobRepository connect(String address) throws RemoteException, MalformedURLException, NotBoundException {
+		return (IJobRepository) Naming.lookup(address);
+	}
+}
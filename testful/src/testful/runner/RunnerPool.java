@@ -18,28 +18,23 @@
 
 package testful.runner;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
-import java.rmi.Remote;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import testful.TestFul;
 import testful.utils.ElementManager;
-import testful.utils.ElementWithKey;
+import testful.utils.WorkStealingQueue;
 
 public class RunnerPool implements IRunner, IJobRepository {
 
@@ -58,69 +53,111 @@ public class RunnerPool implements IRunner, IJobRepository {
 	/** manager for futures; it is safe in a multi-threaded environment */
 	private final ElementManager<String, TestfulFuture<?>> futures;
 
-	/** jobs in queue */
-	private final BlockingQueue<Job<?,?,?>> jobs;
+	/** jobs in queue (jobs with a higher priority are sent first) */
+	private final WorkStealingQueue<Job<?,?,?>> jobs;
+
+	/** A job being evaluated by a worker */
+	private static class Lease {
+		final Job<?,?,?> job;
+
+		/** the worker evaluating the job (null if unknown: the lease never expires) */
+		final String worker;
+
+		/** when the job has been sent to the worker */
+		final long start;
+
+		Lease(Job<?,?,?> job, String worker) {
+			this.job = job;
+			this.worker = worker;
+			start = System.currentTimeMillis();
+		}
+	}
 
 	/** jobs being evaluated */
-	private final ConcurrentHashMap<String, Job<?,?,?>> jobsEval;
+	private final ConcurrentHashMap<String, Lease> jobsEval;
+
+	/** Key=worker's name; Value=the time of its last heartbeat */
+	private final ConcurrentHashMap<String, Long> heartbeats;
+
+	/** the time a worker can stay silent before its jobs are re-dispatched (in milliseconds) */
+	private final long leaseTime;
 
 	private final String name;
 
+	/** the address of the runner pool, if it is exported to remote workers (null otherwise) */
+	private final String address;
+
+	/** the worker manager running in this JVM (null if there are no local workers) */
+	private final WorkerManager localWorkerManager;
+
+	/**
+	 * If true, jobs are directly submitted to the local worker manager,
+	 * skipping the queue of jobs.
+	 */
+	private final boolean directSubmission;
+
 	private RunnerPool() {
 		int testBuffer = TestFul.getProperty(TestFul.PROPERTY_RUNNER_TESTREPOSITORY_JOBS, 1000);
-		jobs = new ArrayBlockingQueue<Job<?,?,?>>(testBuffer);
+		jobs = new WorkStealingQueue<Job<?,?,?>>(1, testBuffer, Job.Priority.values().length);
 		name = "testful-" + TestFul.runId;
 
 		futures = new ElementManager<String, TestfulFuture<?>>(new ConcurrentHashMap<String, TestfulFuture<?>>());
-		jobsEval = new ConcurrentHashMap<String, Job<?,?,?>>();
+		jobsEval = new ConcurrentHashMap<String, Lease>();
+		heartbeats = new ConcurrentHashMap<String, Long>();
+		leaseTime = Math.max(1, TestFul.getProperty(TestFul.PROPERTY_RUNNER_LEASE, 60)) * 1000L;
 
 		if(LOG_FINE) logger.fine("Created Runner Pool ");
 
+		final boolean remoteEnabled = TestFul.getProperty(TestFul.PROPERTY_RUNNER_REMOTE, false);
+
 		int localWorkers = TestFul.getProperty(TestFul.PROPERTY_RUNNER_LOCAL_WORKERS, -1);
-		if(localWorkers != 0) {
+		if(localWorkers == 0) {
+			localWorkerManager = null;
+			directSubmission = false;
+
+		} else if(!remoteEnabled) {
+			// only local workers: they can receive jobs directly
+			int workerBuffer = TestFul.getProperty(TestFul.PROPERTY_RUNNER_WORKER_JOBS, 50);
+			localWorkerManager = new WorkerManager(localWorkers, testBuffer + workerBuffer);
+			directSubmission = true;
+			if(LOG_FINE) logger.fine("Submitting jobs directly to local workers");
+
+		} else {
+			// local workers share the queue of jobs with remote workers
+			localWorkerManager = new WorkerManager(localWorkers);
+			directSubmission = false;
 			try {
-				WorkerManager wm = new WorkerManager(localWorkers);
-				wm.addJobRepository(this);
+				localWorkerManager.addJobRepository(this);
 			} catch (RemoteException e) {
 				// never happens: it's done locally!
 			}
 		}
 
-		if(TestFul.getProperty(TestFul.PROPERTY_RUNNER_REMOTE, false)) {
-			Registry registry = null;
-			try {
-				registry = LocateRegistry.getRegistry(Registry.REGISTRY_PORT);
-				registry.list();
-				if(LOG_FINER) logger.finer("Found a RMI registry");
-			} catch(Exception e) {
-				try {
-					registry = LocateRegistry.createRegistry(Registry.REGISTRY_PORT);
-					if(LOG_FINER) logger.finer("Created a new RMI registry");
-				} catch(RemoteException e1) {
-					logger.log(Level.WARNING, "Distributed evaluation disabled", e);
-				}
-			}
-
-			if(registry != null) {
-				Remote remote = null;
-				try {
-					remote = UnicastRemoteObject.exportObject(this, 0);
-				} catch(RemoteException e) {
-					logger.log(Level.WARNING, "Distributed evaluation disabled", e);
-					remote = null;
-				}
-
-				if (remote != null) {
+		if(remoteEnabled) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
 					try {
-						registry.bind(name, remote);
-						logger.info("Registered executorPool at " + name);
-
-					} catch (Exception e) {
-						logger.log(Level.WARNING, "Remote evaluation disabled: ", e);
-						registry = null;
+						while(true) {
+							TimeUnit.MILLISECONDS.sleep(leaseTime / 4);
+							redispatch();
+						}
+					} catch(InterruptedException e) {
+						logger.warning("Interrupted: " + e.getMessage());
 					}
 				}
+			}, "RunnerPool-leases");
+			t.setDaemon(true);
+			t.start();
+
+			String addr = null;
+			try {
+				addr = Transport.getTransport().export(this);
+				logger.info("Registered executorPool at " + addr);
+			} catch(IOException e) {
+				logger.log(Level.WARNING, "Remote evaluation disabled: ", e);
 			}
+			address = addr;
 
 			String remoteProp = TestFul.getProperty(TestFul.PROPERTY_RUNNER_REMOTE_ADDR, "");
 			String[] remotes = remoteProp.split(",");
@@ -131,6 +168,7 @@ public class RunnerPool implements IRunner, IJobRepository {
 			}
 
 		} else { // warn the user if he specifies any remote option
+			address = null;
 
 			String remoteRunnersAddr = TestFul.getProperty(TestFul.PROPERTY_RUNNER_REMOTE_ADDR, "");
 			if(!remoteRunnersAddr.isEmpty()) {
@@ -146,7 +184,10 @@ public class RunnerPool implements IRunner, IJobRepository {
 
 		try {
 			IWorkerManager wm = (IWorkerManager) Naming.lookup(rmiAddress);
-			wm.addJobRepository(this);
+
+			// the remote worker manager connects back through the transport of the runner pool
+			if(address != null && NioTransport.isAddress(address)) wm.addJobRepository(address);
+			else wm.addJobRepository(this);
 			return true;
 		} catch(MalformedURLException e) {
 			logger.log(Level.WARNING, "Invalid RMI address", e);
@@ -164,12 +205,13 @@ public class RunnerPool implements IRunner, IJobRepository {
 	}
 
 	@Override
-	public <I extends Serializable, R extends Serializable> Future<R> execute(Job<I, R, ? extends IExecutor<I,R>> ctx) {
-		TestfulFuture<R> ret = new TestfulFuture<R>(ctx.id);
+	public <I extends Serializable, R extends Serializable> TestfulFuture<R> execute(Job<I, R, ? extends IExecutor<I,R>> ctx) {
+		TestfulFuture<R> ret = new TestfulFuture<R>(ctx.id, this);
 		futures.put(ret);
 
 		try {
-			jobs.put(ctx);
+			if(directSubmission) localWorkerManager.submit(ctx, this);
+			else jobs.put(ctx, ctx.getPriority().ordinal());
 		} catch(InterruptedException e) {
 			// this should not happens
 			logger.log(Level.WARNING, e.getMessage(), e);
@@ -178,13 +220,42 @@ public class RunnerPool implements IRunner, IJobRepository {
 		return ret;
 	}
 
+	/**
+	 * Cancels a job: if it is still in the queue, it is discarded;
+	 * if it is being executed by local workers and mayInterruptIfRunning is true, it is stopped.
+	 * The results of cancelled jobs are ignored.
+	 * @param key the id of the job
+	 * @param mayInterruptIfRunning true if the execution of the job should be stopped
+	 */
+	void cancel(String key, boolean mayInterruptIfRunning) {
+		futures.remove(key);
+		jobsEval.remove(key);
+
+		if(LOG_FINER) logger.finer("Cancelled job " + key);
+
+		if(localWorkerManager != null)
+			localWorkerManager.cancel(key, mayInterruptIfRunning);
+	}
+
+	/**
+	 * Checks if the job has been cancelled (i.e., nobody is waiting for its result)
+	 * @param job the job to check
+	 * @return true if the job has been cancelled
+	 */
+	private boolean isCancelled(Job<?,?,?> job) {
+		return futures.get(job.id) == null;
+	}
+
 	@Override
 	public <I extends Serializable, R extends Serializable> Job<I, R, ? extends IExecutor<I,R>> getJob() throws RemoteException {
 		try {
 
+			Job<?,?,?> job = jobs.take(-1);
+			while(isCancelled(job)) job = jobs.take(-1);
+
 			@SuppressWarnings("unchecked")
-			Job<I, R, ? extends IExecutor<I, R>> ret = (Job<I, R, ? extends IExecutor<I, R>>) jobs.take();
-			jobsEval.put(ret.id, ret);
+			Job<I, R, ? extends IExecutor<I, R>> ret = (Job<I, R, ? extends IExecutor<I, R>>) job;
+			jobsEval.put(ret.id, new Lease(ret, null));
 
 			return ret;
 
@@ -194,116 +265,103 @@ public class RunnerPool implements IRunner, IJobRepository {
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
-	public void putResult(String key, Serializable result) {
-
-		jobsEval.remove(key);
-		TestfulFuture<Serializable> future = (TestfulFuture<Serializable>) futures.remove(key);
-
-		if(future == null) logger.warning("Future with " + key + " not found");
-		else future.setResult(result);
-	}
+	public List<Job<?, ?, ?>> getJobs(String worker, int max) throws RemoteException {
+		try {
 
-	@Override
-	public void putException(String key, Exception exc) throws RemoteException {
+			List<Job<?, ?, ?>> ret = new ArrayList<Job<?,?,?>>(max);
 
-		jobsEval.remove(key);
-		TestfulFuture<?> future = futures.remove(key);
+			// skip cancelled jobs
+			while(ret.isEmpty()) {
+				Job<?, ?, ?> job = jobs.take(-1);
+				if(!isCancelled(job)) ret.add(job);
 
-		if(future == null) logger.warning("Future with " + key + " not found");
-		else future.setException(exc);
-	}
+				Job<?, ?, ?> j;
+				while(ret.size() < max && (j = jobs.poll(-1)) != null)
+					if(!isCancelled(j)) ret.add(j);
+			}
 
-	private static class TestfulFuture<T extends Serializable> implements Future<T>, ElementWithKey<String> {
+			for (Job<?, ?, ?> job : ret)
+				jobsEval.put(job.id, new Lease(job, worker));
 
-		private final String key;
-		private boolean completed = false;
-		private T result = null;
-		private Exception exc = null;
+			if(LOG_FINER) logger.finer("Sending " + ret.size() + " jobs to " + worker);
 
-		public TestfulFuture(String key) {
-			this.key = key;
-		}
+			return ret;
 
-		@Override
-		public String getKey() {
-			return key;
+		} catch(InterruptedException e) {
+			throw new RemoteException("Cannot take the tests", e);
 		}
+	}
 
-		synchronized void setResult(T result) {
-
-			if(TestFul.DEBUG) {
-				if(completed) TestFul.debug(new IllegalStateException("Future already completed!"));
-				if(result == null) TestFul.debug(new Exception("The result cannot be null"));
-			}
-
-			if(completed) throw new IllegalStateException("Future already completed!");
+	@Override
+	public void heartbeat(String worker) {
+		heartbeats.put(worker, System.currentTimeMillis());
+	}
 
-			this.result = result;
-			this.completed = true;
-			notifyAll();
+	/**
+	 * Puts back in the queue the jobs whose lease is expired
+	 * (i.e., their worker did not send any heartbeat for a while),
+	 * and forgets the workers that have been silent for longer than the lease time.
+	 * A re-dispatched job may be completed twice (by its original worker, if it was only slow, and by the new one):
+	 * the first result to arrive completes the future, and the other one is ignored.
+	 * @throws InterruptedException if interrupted while waiting for space in the queue
+	 */
+	private void redispatch() throws InterruptedException {
+		final long now = System.currentTimeMillis();
+
+		int n = 0;
+		for (Lease lease : jobsEval.values()) {
+			if(lease.worker == null) continue;
+
+			Long last = heartbeats.get(lease.worker);
+			long alive = last == null ? lease.start : Math.max(lease.start, last);
+			if(now - alive < leaseTime) continue;
+
+			// the job may have been completed or cancelled in the meanwhile
+			if(!jobsEval.remove(lease.job.id, lease) || isCancelled(lease.job)) continue;
+
+			if(LOG_FINE) logger.fine("Lease of job " + lease.job.id + " (worker " + lease.worker + ") expired");
+			jobs.put(lease.job, lease.job.getPriority().ordinal());
+			n++;
 		}
 
-		synchronized void setException(Exception exc) {
+		if(n > 0) logger.warning("Re-dispatched " + n + " jobs of unresponsive workers");
 
-			if(TestFul.DEBUG) {
-				if(completed) TestFul.debug(new IllegalStateException("Future already completed!"));
-				if(exc == null) TestFul.debug(new Exception("The exception cannot be null"));
-			}
+		// an unresponsive worker sends again a heartbeat if it comes back
+		for (Map.Entry<String, Long> e : heartbeats.entrySet())
+			if(now - e.getValue() >= leaseTime) heartbeats.remove(e.getKey(), e.getValue());
+	}
 
-			if(completed) throw new IllegalStateException("Future already completed!");
+	@Override
+	@SuppressWarnings("unchecked")
+	public void putResult(String key, Serializable result) {
 
-			this.exc = exc;
-			this.completed = true;
-			notifyAll();
-		}
+		jobsEval.remove(key);
+		TestfulFuture<Serializable> future = (TestfulFuture<Serializable>) futures.remove(key);
 
-		@Override
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			throw new UnsupportedOperationException("Cannot cancel tasks");
-		}
+		if(future != null) future.setResult(result);
+		else if(LOG_FINE) logger.fine("Future with " + key + " not found (it may have been cancelled)");
+	}
 
-		@Override
-		public T get() throws InterruptedException, ExecutionException {
-			try {
-				return get(-1, null);
-			} catch(TimeoutException e) {
-				throw new InterruptedException(e.getMessage());
-			}
-		}
+	@Override
+	public void putException(String key, Exception exc) throws RemoteException {
 
-		@Override
-		public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-			if(!completed) {
-				if(unit != null && timeout >= 0) this.wait(unit.toMillis(timeout));
-				else this.wait();
-			}
+		jobsEval.remove(key);
+		TestfulFuture<?> future = futures.remove(key);
 
-			if(!completed) throw new TimeoutException("Timeout expired!");
+		if(future != null) future.setException(exc);
+		else if(LOG_FINE) logger.fine("Future with " + key + " not found (it may have been cancelled)");
+	}
 
-			if(TestFul.DEBUG) {
-				if(result == null && exc == null)
-					TestFul.debug(new Exception("A completed task must have the result or the exception set."));
+	@Override
+	public void putResults(List<JobResult> results) throws RemoteException {
+		for (JobResult r : results) {
+			// a problem with a result must not prevent the others from being delivered
+			try {
+				if(r.isException()) putException(r.getKey(), r.getException());
+				else putResult(r.getKey(), r.getResult());
+			} catch(Exception e) {
+				logger.log(Level.WARNING, "Cannot complete the job " + r.getKey() + ": " + e.getMessage(), e);
 			}
-
-			if(result != null) return result;
-
-			throw new ExecutionException(exc);
-		}
-
-		@Override
-		public boolean isCancelled() {
-			return false;
-		}
-
-		@Override
-		public boolean isDone() {
-			return completed;
-		}
-
-		@Override
-		public TestfulFuture<T> clone() throws CloneNotSupportedException {
-			throw new CloneNotSupportedException("Clone not supported in TestfulFuture");
 		}
 	}
 }
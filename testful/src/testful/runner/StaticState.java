@@ -0,0 +1,124 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The static state of a class, recorded as soon as the class is initialized.
+ * Classes instrumented by <code>testful.coverage.soot.StaticStateInstrumenter</code> invoke
+ * {@link #initialized(String)} at the end of their static initializer; the state of all
+ * the initialized classes can be restored with {@link #restore()}.
+ * This allows a class loader to be reused by jobs requiring fresh classes
+ * (see {@link Job#isReloadClasses()}), instead of loading again all the classes.
+ * The static state is shallow: the values of static fields are restored, as well as
+ * the content of the arrays they refer to, but not the state of other objects (e.g., collections),
+ * and static initializers are not executed again (their coverage is not tracked again).
+ * For this reason, it is disabled by default (see {@link testful.TestFul#PROPERTY_RUNNER_RESTORE_STATIC}).
+ * This class is loaded by the remote class loader: each class loader has its own records.
+ *
+ * @author matteo
+ */
+public class StaticState {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.classloader");
+	private static final boolean LOG_FINER = logger.isLoggable(Level.FINER);
+
+	/** the states of the initialized classes (guarded by itself) */
+	private static final List<StaticState> states = new ArrayList<StaticState>();
+
+	/**
+	 * Records the static state of a class. This method is invoked by the instrumented
+	 * static initializers, after the class has been initialized.
+	 * @param className the name of the class
+	 */
+	public static void initialized(String className) {
+		try {
+			final Class<?> c = Class.forName(className, false, StaticState.class.getClassLoader());
+			final StaticState state = new StaticState(c);
+
+			synchronized(states) {
+				states.add(state);
+			}
+
+			if(LOG_FINER) logger.finer("Recorded the static state of " + className + " (" + state.fields.length + " fields)");
+
+		} catch(Throwable e) {
+			logger.log(Level.WARNING, "Cannot record the static state of " + className + ": " + e, e);
+		}
+	}
+
+	/**
+	 * Restores the static state of all the classes initialized so far
+	 * @throws IllegalAccessException if a field cannot be restored
+	 */
+	public static void restore() throws IllegalAccessException {
+		synchronized(states) {
+			for (StaticState state : states)
+				state.restoreFields();
+		}
+	}
+
+	private final Field[] fields;
+	private final Object[] values;
+
+	/** copies of the arrays referred by the fields (null if a field does not refer to an array) */
+	private final Object[] arrays;
+
+	private StaticState(Class<?> c) throws IllegalAccessException {
+		final List<Field> tmp = new ArrayList<Field>();
+		for (Field f : c.getDeclaredFields()) {
+			final int mod = f.getModifiers();
+			if(Modifier.isStatic(mod) && !Modifier.isFinal(mod)) {
+				f.setAccessible(true);
+				tmp.add(f);
+			}
+		}
+
+		fields = tmp.toArray(new Field[tmp.size()]);
+		values = new Object[fields.length];
+		arrays = new Object[fields.length];
+
+		for (int i = 0; i < fields.length; i++) {
+			final Object value = fields[i].get(null);
+			values[i] = value;
+
+			if(value != null && value.getClass().isArray()) {
+				final int length = Array.getLength(value);
+				arrays[i] = Array.newInstance(value.getClass().getComponentType(), length);
+				System.arraycopy(value, 0, arrays[i], 0, length);
+			}
+		}
+	}
+
+	private void restoreFields() throws IllegalAccessException {
+		for (int i = 0; i < fields.length; i++) {
+			fields[i].set(null, values[i]);
+
+			if(arrays[i] != null)
+				System.arraycopy(arrays[i], 0, values[i], 0, Array.getLength(arrays[i]));
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.Serializable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import testful.TestFul;
+import testful.utils.ElementWithKey;
+
+/**
+ * The future result of a job submitted to the {@link RunnerPool}.
+ * The completion does not require any lock: the state is changed through
+ * compare-and-set operations, and threads waiting for the result are
+ * parked on a latch. It is possible to register listeners, which are
+ * notified as soon as the job completes (or it is cancelled).
+ *
+ * @author matteo
+ * @param <T> the type of the result
+ */
+public class TestfulFuture<T extends Serializable> implements Future<T>, ElementWithKey<String> {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+
+	/**
+	 * Is notified when a future completes
+	 * @param <T> the type of the result
+	 */
+	public static interface Listener<T extends Serializable> {
+
+		/**
+		 * Notifies that the future is completed. This method is called by the thread
+		 * that completes the future: it must be fast and must not block.
+		 * @param future the completed future
+		 */
+		public void done(TestfulFuture<T> future);
+	}
+
+	private static final int RUNNING = 0;
+	private static final int COMPLETING = 1;
+	private static final int DONE = 2;
+	private static final int CANCELLED = 3;
+
+	/** A registered listener (the listeners are kept in a lock-free stack) */
+	private static class Node<T extends Serializable> {
+		final Listener<T> listener;
+		final Node<T> next;
+
+		Node(Listener<T> listener, Node<T> next) {
+			this.listener = listener;
+			this.next = next;
+		}
+	}
+
+	/** Marks the stack of listeners of a completed future */
+	@SuppressWarnings("rawtypes")
+	private static final Node COMPLETED = new Node<Serializable>(null, null);
+
+	private final String key;
+
+	/** the runner pool executing the job (null if the job cannot be cancelled) */
+	private final RunnerPool pool;
+
+	private final AtomicInteger state = new AtomicInteger(RUNNING);
+	private final CountDownLatch latch = new CountDownLatch(1);
+	private final AtomicReference<Node<T>> listeners = new AtomicReference<Node<T>>(null);
+
+	/** the result: it is written before publishing the DONE state */
+	private T result = null;
+
+	/** the exception: it is written before publishing the DONE state */
+	private Exception exc = null;
+
+	public TestfulFuture(String key) {
+		this(key, null);
+	}
+
+	TestfulFuture(String key, RunnerPool pool) {
+		this.key = key;
+		this.pool = pool;
+	}
+
+	@Override
+	public String getKey() {
+		return key;
+	}
+
+	void setResult(T result) {
+
+		if(TestFul.DEBUG && result == null) TestFul.debug(new Exception("The result cannot be null"));
+
+		if(!state.compareAndSet(RUNNING, COMPLETING)) {
+			// the future has been cancelled while the result was coming back: nobody waits for it
+			if(state.get() == CANCELLED) return;
+
+			IllegalStateException e = new IllegalStateException("Future already completed!");
+			if(TestFul.DEBUG) TestFul.debug(e);
+			throw e;
+		}
+
+		this.result = result;
+		complete();
+	}
+
+	void setException(Exception exc) {
+
+		if(TestFul.DEBUG && exc == null) TestFul.debug(new Exception("The exception cannot be null"));
+
+		if(!state.compareAndSet(RUNNING, COMPLETING)) {
+			// the future has been cancelled while the result was coming back: nobody waits for it
+			if(state.get() == CANCELLED) return;
+
+			IllegalStateException e = new IllegalStateException("Future already completed!");
+			if(TestFul.DEBUG) TestFul.debug(e);
+			throw e;
+		}
+
+		this.exc = exc;
+		complete();
+	}
+
+	/** Publishes the completion, wakes up waiting threads and notifies listeners */
+	private void complete() {
+		state.set(DONE);
+		notifyCompletion();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void notifyCompletion() {
+		latch.countDown();
+
+		Node<T> head = listeners.getAndSet(COMPLETED);
+
+		// notify listeners in registration order
+		Node<T> reversed = null;
+		for(Node<T> n = head; n != null; n = n.next)
+			reversed = new Node<T>(n.listener, reversed);
+
+		for(Node<T> n = reversed; n != null; n = n.next)
+			notify(n.listener);
+	}
+
+	private void notify(Listener<T> listener) {
+		try {
+			listener.done(this);
+		} catch(Throwable e) {
+			logger.log(Level.WARNING, "Error in a listener of " + key + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Registers a listener, which is notified when the future completes.
+	 * If the future is already completed, the listener is notified immediately
+	 * by the calling thread.
+	 * @param listener the listener to register
+	 */
+	public void addListener(Listener<T> listener) {
+		while(true) {
+			Node<T> head = listeners.get();
+
+			if(head == COMPLETED) {
+				notify(listener);
+				return;
+			}
+
+			if(listeners.compareAndSet(head, new Node<T>(listener, head)))
+				return;
+		}
+	}
+
+	/**
+	 * Cancels the job: if it is still queued, it is discarded; if it is running
+	 * and mayInterruptIfRunning is true, its execution is stopped (through the {@link testful.coverage.stopper.Stopper}).
+	 * Jobs already sent to remote workers are not stopped, but their result is ignored.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if(!state.compareAndSet(RUNNING, CANCELLED)) return false;
+
+		notifyCompletion();
+
+		if(pool != null) pool.cancel(key, mayInterruptIfRunning);
+
+		return true;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		latch.await();
+		return report();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if(!latch.await(timeout, unit))
+			throw new TimeoutException("Timeout expired!");
+
+		return report();
+	}
+
+	private T report() throws ExecutionException {
+		if(state.get() == CANCELLED)
+			throw new CancellationException("The job " + key + " has been cancelled");
+
+		if(TestFul.DEBUG) {
+			if(result == null && exc == null)
+				TestFul.debug(new Exception("A completed task must have the result or the exception set."));
+		}
+
+		if(result != null) return result;
+
+		throw new ExecutionException(exc);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+
+	@Override
+	public boolean isDone() {
+		final int s = state.get();
+		return s == DONE || s == CANCELLED;
+	}
+
+	@Override
+	public TestfulFuture<T> clone() throws CloneNotSupportedException {
+		throw new CloneNotSupportedException("Clone not supported in TestfulFuture");
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+
+import testful.TestFul;
+
+/**
+ * Makes job repositories reachable by remote worker managers.
+ * Two transports are available:
+ * <ul>
+ * <li><b>rmi</b> (see {@link RmiTransport}): the repository is bound to a RMI registry;</li>
+ * <li><b>nio</b> (see {@link NioTransport}): jobs, results and data requests are multiplexed
+ * on a single persistent connection per worker manager.</li>
+ * </ul>
+ * The transport used to export the repository is chosen through the
+ * {@link TestFul#PROPERTY_RUNNER_TRANSPORT} property, while the transport used to connect
+ * to a repository is chosen according to its address.
+ *
+ * @author matteo
+ */
+public abstract class Transport {
+
+	/**
+	 * Exports the job repository
+	 * @param rep the job repository
+	 * @return the address of the job repository
+	 * @throws IOException if the job repository cannot be exported
+	 */
+	public abstract String export(IJobRepository rep) throws IOException;
+
+	/**
+	 * Connects to a job repository
+	 * @param address the address of the job repository
+	 * @return the job repository
+	 * @throws RemoteException if it is not possible to connect to the job repository
+	 * @throws MalformedURLException if the address is not valid
+	 * @throws NotBoundException if the address does not refer to a job repository
+	 */
+	public abstract IJobRepository connect(String address) throws RemoteException, MalformedURLException, NotBoundException;
+
+	/**
+	 * Returns the transport selected by the user to export job repositories
+	 * @return the transport selected by the user
+	 */
+	public static Transport getTransport() {
+		final String name = TestFul.getProperty(TestFul.PROPERTY_RUNNER_TRANSPORT, RmiTransport.NAME);
+
+		if(NioTransport.NAME.equalsIgnoreCase(name)) return NioTransport.singleton;
+		return RmiTransport.singleton;
+	}
+
+	/**
+	 * Returns the transport able to reach the given address
+	 * @param address the address of a job repository
+	 * @return the transport able to reach the given address
+	 */
+	public static Transport getTransport(String address) {
+		if(NioTransport.isAddress(address)) return NioTransport.singleton;
+		return RmiTransport.singleton;
+	}
+}
@@ -20,6 +20,13 @@ package testful.runner;
 
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,13 +40,77 @@ public class Worker extends Thread {
 	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
 	private static final boolean LOG_FINER = logger.isLoggable(Level.FINER);
 
+	/**
+	 * Stops the execution of the job being evaluated by a worker
+	 * (e.g., the {@link testful.coverage.stopper.Stopper}).
+	 */
+	public static interface KillSwitch {
+
+		/**
+		 * Stops the execution of the current job. This method is called
+		 * by the thread cancelling the job: it must be fast and must not block.
+		 */
+		public void kill();
+	}
+
+	/**
+	 * Registers the kill switch of the job being executed by the current thread.
+	 * If the current thread is not a worker, it does nothing.
+	 * @param killSwitch the kill switch (null to de-register it)
+	 */
+	public static void setKillSwitch(KillSwitch killSwitch) {
+		final Thread t = Thread.currentThread();
+		if(!(t instanceof Worker)) return;
+
+		final Worker w = (Worker) t;
+		synchronized(w) {
+			w.killSwitch = killSwitch;
+		}
+	}
+
+	/**
+	 * Checks if the job being executed by the current thread has been cancelled.
+	 * @return true if the current thread is a worker, and its job has been cancelled
+	 */
+	public static boolean isCancelled() {
+		final Thread t = Thread.currentThread();
+		if(!(t instanceof Worker)) return false;
+
+		return ((Worker) t).cancelled;
+	}
+
 	private static int idGenerator = 0;
 
-	private final WorkerManager workerManager;
+	/** the maximum number of class loaders held by a worker */
+	private static final int MAX_LOADERS = 8;
+
+	protected final WorkerManager workerManager;
+
+	/** the id of the worker's queue in the worker manager */
+	private final int queue;
+
+	/** the id of the job being executed (guarded by this) */
+	private String current;
+
+	/** the kill switch of the job being executed (guarded by this) */
+	private KillSwitch killSwitch;
+
+	/** true if the job being executed has been cancelled */
+	private volatile boolean cancelled;
+
+	/** true if the worker must terminate */
+	private volatile boolean retired;
+
+	/**
+	 * The class loaders held by the worker, in access order (used only by the worker's thread).
+	 * Key=dataFinder's key; Value=class loader
+	 */
+	private final Map<String, RemoteClassLoader> loaders = new LinkedHashMap<String, RemoteClassLoader>(16, 0.75f, true);
 
-	public Worker(WorkerManager manager) {
+	public Worker(WorkerManager manager, int queue) {
 		super("Worker-" + ++idGenerator);
 		workerManager = manager;
+		this.queue = queue;
 		setDaemon(true);
 	}
 
@@ -47,30 +118,169 @@ public class Worker extends Thread {
 	public void run() {
 		if(LOG_FINE) logger.fine("Created worker " + getName());
 
+		final int batch = workerManager.getBatchSize();
+
+		/** results not yet sent back to the worker manager */
+		final List<JobResult> results = new ArrayList<JobResult>(batch);
+
 		try {
-			while(true) {
-				Job<?,?,?> ctx = workerManager.getJob();
+			while(!retired) {
 
-				RemoteClassLoader cl;
-				try {
-					cl = workerManager.getClassLoader(ctx);
-				} catch(RemoteException e) {
-					logger.warning("Worker " + getName() + " cannot retrieve the class loader: " + e.getMessage());
-					workerManager.putException(ctx, e, null);
-					continue;
+				// send back the results if there is nothing more to do right now
+				Job<?,?,?> ctx = workerManager.pollJob(queue);
+				if(ctx == null) {
+					flush(results);
+
+					// periodically check if the worker has been retired
+					ctx = workerManager.pollJob(queue, 1, TimeUnit.SECONDS);
+					if(ctx == null) continue;
 				}
 
+				// skip cancelled jobs
+				if(workerManager.discardCancelled(ctx)) continue;
+
+				// only the results going to remote job repositories are worth batching
+				final boolean batched = workerManager.isBatched(ctx);
+
+				setCurrent(ctx.id);
+				final long start = System.nanoTime();
 				try {
 					if(LOG_FINER) logger.finer("Worker " + getName() + " is evaluating " + ctx.id);
-					Serializable result = ctx.execute(cl);
-					workerManager.putResult(ctx, result, cl);
+					results.add(execute(ctx));
+
+				} finally {
+					setCurrent(null);
+					workerManager.jobExecuted(System.nanoTime() - start);
 
-				} catch(Exception e) {
-					workerManager.putException(ctx, e, cl);
+					// clear the interrupted status possibly set by a cancellation
+					if(Thread.interrupted() && LOG_FINER) logger.finer("Worker " + getName() + ": cleared the interrupted status");
 				}
+
+				if(!batched || results.size() >= batch) flush(results);
 			}
-		} catch(RemoteException e) {
+		} catch(InterruptedException e) {
 			logger.warning("Worker " + getName() + " interrupted: " + e.getMessage());
+		} finally {
+			flush(results);
+
+			// release the warm class loaders before the queue can be assigned to a new worker
+			terminated();
+			workerManager.workerTerminated(this);
+			if(LOG_FINE) logger.fine("Worker " + getName() + " terminated");
+		}
+	}
+
+	/**
+	 * Executes a job in a class loader provided by the worker manager
+	 * @param ctx the job to execute
+	 * @return the result of the job
+	 */
+	protected JobResult execute(Job<?,?,?> ctx) {
+		RemoteClassLoader cl;
+		try {
+			cl = ctx.isReloadClasses() && !RemoteClassLoader.RESTORE_STATIC ? null : ctx.reuse(loaders.remove(ctx.getFinderKey()));
+			if(cl == null) cl = workerManager.getClassLoader(ctx);
+		} catch(RemoteException e) {
+			logger.warning("Worker " + getName() + " cannot retrieve the class loader: " + e.getMessage());
+			return new JobResult(ctx.id, e);
 		}
+
+		try {
+			Serializable result = ctx.execute(cl);
+			return new JobResult(ctx.id, result);
+
+		} catch(Exception e) {
+			return new JobResult(ctx.id, e);
+
+		} finally {
+			hold(cl);
+		}
+	}
+
+	/**
+	 * Keeps a class loader for the next jobs using the same data finder
+	 * @param cl the class loader
+	 */
+	private void hold(RemoteClassLoader cl) {
+		final String key = cl.getKey();
+
+		final RemoteClassLoader prev = loaders.put(key, cl);
+		if(prev != null) workerManager.reuseClassLoader(prev);
+		else workerManager.setWarm(this, key, true);
+
+		if(loaders.size() > MAX_LOADERS) {
+			final Iterator<Entry<String, RemoteClassLoader>> it = loaders.entrySet().iterator();
+			final Entry<String, RemoteClassLoader> eldest = it.next();
+			it.remove();
+
+			workerManager.setWarm(this, eldest.getKey(), false);
+			workerManager.reuseClassLoader(eldest.getValue());
+		}
+	}
+
+	/**
+	 * Releases the resources of the worker: it is invoked when the worker terminates
+	 */
+	protected void terminated() {
+		for (Entry<String, RemoteClassLoader> e : loaders.entrySet()) {
+			workerManager.setWarm(this, e.getKey(), false);
+			workerManager.reuseClassLoader(e.getValue());
+		}
+
+		loaders.clear();
+	}
+
+	/**
+	 * Retires the worker: it terminates after completing its current job
+	 */
+	void retire() {
+		retired = true;
+	}
+
+	boolean isRetired() {
+		return retired;
+	}
+
+	/**
+	 * Returns the id of the worker's queue in the worker manager
+	 * @return the id of the worker's queue
+	 */
+	int getQueue() {
+		return queue;
+	}
+
+	private synchronized void setCurrent(String id) {
+		current = id;
+		cancelled = false;
+		killSwitch = null;
+	}
+
+	/**
+	 * Cancels a job, if it is being executed by this worker:
+	 * its kill switch is activated, stopping its execution.
+	 * @param id the id of the job to cancel
+	 * @return true if the job was being executed by this worker
+	 */
+	synchronized boolean cancel(String id) {
+		if(current == null || !current.equals(id)) return false;
+
+		if(LOG_FINE) logger.fine("Worker " + getName() + ": cancelling " + id);
+
+		cancelled = true;
+		if(killSwitch != null) killSwitch.kill();
+
+		return true;
+	}
+
+	private void flush(List<JobResult> results) {
+		if(results.isEmpty()) return;
+
+		try {
+			workerManager.putResults(results);
+		} catch(RemoteException e) {
+			// never happens
+		}
+
+		results.clear();
 	}
 }
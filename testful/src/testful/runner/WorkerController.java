@@ -0,0 +1,142 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically adapts the number of workers and the number of prefetched jobs
+ * of a {@link WorkerManager} to the load of the machine.
+ * <ul>
+ * <li>if the garbage collector is too busy, or if the machine is overloaded
+ * (e.g., it is running other workloads), a worker is retired and fewer jobs are prefetched;</li>
+ * <li>if jobs are piling up and the machine has spare resources, a new worker is started.</li>
+ * </ul>
+ * The number of prefetched jobs is set to keep the workers busy for a period
+ * (according to the average execution time of jobs).
+ *
+ * @author matteo
+ */
+class WorkerController implements Runnable {
+
+	private static final Logger logger = Logger.getLogger("testful.executor.worker");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	/** the time between two adaptations (in milliseconds) */
+	private static final long PERIOD = 2000;
+
+	/** if the fraction of time spent in garbage collection is greater than this threshold, the worker manager is overloaded */
+	private static final float GC_HIGH = 0.25f;
+
+	/** new workers are started only if the fraction of time spent in garbage collection is less than this threshold */
+	private static final float GC_LOW = 0.10f;
+
+	/** if the system load is greater than (number of cpus) * LOAD_HIGH, the machine is overloaded */
+	private static final float LOAD_HIGH = 1.25f;
+
+	private final WorkerManager manager;
+
+	private final OperatingSystemMXBean os;
+	private final List<GarbageCollectorMXBean> gcs;
+	private final int cpus;
+
+	private long lastTime;
+	private long lastGcTime;
+	private long lastExecuted;
+	private long lastJobsTime;
+
+	public WorkerController(WorkerManager manager) {
+		this.manager = manager;
+
+		os = ManagementFactory.getOperatingSystemMXBean();
+		gcs = ManagementFactory.getGarbageCollectorMXBeans();
+		cpus = Runtime.getRuntime().availableProcessors();
+	}
+
+	@Override
+	public void run() {
+		lastTime = System.currentTimeMillis();
+		lastGcTime = getGcTime();
+		lastExecuted = manager.getExecutedJobs();
+		lastJobsTime = manager.getJobsTime();
+
+		try {
+			while(true) {
+				TimeUnit.MILLISECONDS.sleep(PERIOD);
+				adapt();
+			}
+		} catch(InterruptedException e) {
+			logger.warning("Worker controller interrupted: " + e.getMessage());
+		}
+	}
+
+	private void adapt() {
+		final long now = System.currentTimeMillis();
+		final long gcTime = getGcTime();
+		final long executed = manager.getExecutedJobs();
+		final long jobsTime = manager.getJobsTime();
+
+		final long elapsed = Math.max(1, now - lastTime);
+		final float gc = (gcTime - lastGcTime) / (float) elapsed;
+		final double load = os.getSystemLoadAverage(); // negative if not available
+
+		final long nJobs = executed - lastExecuted;
+		/** the average execution time of jobs (ms), or -1 if no jobs have been executed */
+		final float latency = nJobs > 0 ? (jobsTime - lastJobsTime) / (nJobs * 1000000f) : -1;
+
+		lastTime = now;
+		lastGcTime = gcTime;
+		lastExecuted = executed;
+		lastJobsTime = jobsTime;
+
+		final int waiting = manager.getWaitingJobs();
+		final boolean overloaded = gc > GC_HIGH || load > cpus * LOAD_HIGH;
+
+		if(overloaded) {
+			if(manager.retireWorker() && LOG_FINE)
+				logger.fine(String.format("Retired a worker (gc: %.0f%%, load: %.2f): %d workers", gc * 100, load, manager.getWorkersNumber()));
+
+		} else if(waiting > manager.getWorkersNumber() && gc < GC_LOW && load < cpus) {
+			if(manager.addWorker() && LOG_FINE)
+				logger.fine(String.format("Started a worker (%d jobs waiting, gc: %.0f%%, load: %.2f): %d workers", waiting, gc * 100, load, manager.getWorkersNumber()));
+		}
+
+		// prefetch enough jobs to keep the workers busy for a period
+		final int workers = manager.getWorkersNumber();
+		if(overloaded) manager.setPrefetch(workers);
+		else if(latency > 0) manager.setPrefetch((int) Math.ceil(workers * PERIOD / latency));
+
+		if(LOG_FINE) logger.fine(String.format("Worker controller: %d workers, %d jobs waiting, latency %.2f ms, gc %.0f%%, load %.2f, prefetch %d", workers, waiting, latency, gc * 100, load, manager.getPrefetch()));
+	}
+
+	private long getGcTime() {
+		long ret = 0;
+		for (GarbageCollectorMXBean gc : gcs) {
+			long t = gc.getCollectionTime();
+			if(t > 0) ret += t;
+		}
+		return ret;
+	}
+}
@@ -21,26 +21,32 @@ package testful.runner;
 import java.io.EOFException;
 import java.io.Serializable;
 import java.net.MalformedURLException;
-import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import testful.TestFul;
-import testful.utils.CachingMap;
-import testful.utils.CachingMap.Cacheable;
+import testful.utils.WorkStealingQueue;
 
 public class WorkerManager implements IWorkerManager, IJobRepository {
 
@@ -51,30 +57,93 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 
 	private volatile boolean running = true;
 
-	private final BlockingQueue<Job<?,?,?>> jobs;
+	/** the name of the worker manager: it identifies the worker manager in job repositories */
+	private final String name = "runner-" + TestFul.runId + "-" + UUID.randomUUID();
+
+	/** the time between two heartbeats sent to job repositories (in milliseconds) */
+	private final long heartbeat;
+
+	/**
+	 * jobs waiting to be executed: each worker has its own queue, and steals jobs from the others' ones.
+	 * Jobs with a higher priority are executed first.
+	 */
+	private final WorkStealingQueue<Job<?,?,?>> jobs;
 	private final Map<String, IJobRepository> results;
 
-	private final static int MAX_ELEMS = 3;
-	private final static long MIN_AGE = 15 * 60 * 1000; // 15 min
+	/** the ids of cancelled jobs, which have not been discarded yet */
+	private final Set<String> cancelled;
+
+	/** the local workers */
+	private final List<Worker> workers;
+
+	/** the maximum number of local workers */
+	private final int maxWorkers;
+
+	/** if true, workers execute jobs in separate JVMs */
+	private final boolean fork;
+
+	/** the maximum number of jobs retrieved at once from job repositories (it is always less than or equal to batch) */
+	private volatile int prefetch;
+
+	/** the time spent executing jobs (in nanoseconds) */
+	private final AtomicLong jobsTime = new AtomicLong();
+
+	/** the maximum number of jobs (and results) exchanged at once with job repositories */
+	private final int batch;
+
+	/** the class loaders of data finders unused for this time are discarded (in milliseconds) */
 	private final static long MIN_UNUSED = 5 * 60 * 1000; //  5 min
 
-	/** the datafinders. Key=dataFinder's key; Value=dataFinder */
-	private final CachingMap<String, DataFinder> finders;
+	/** The data finder of a key, and its class loaders not held by any worker */
+	private static class LoaderPool {
+		final DataFinder finder;
 
-	/** Key=dataFinder's key; Value=queue of available classloader */
-	private final CachingMap<String, Queue<RemoteClassLoader>> classLoaders;
+		/** the idle class loaders (at most one for each worker) */
+		final Queue<RemoteClassLoader> idle = new ConcurrentLinkedQueue<RemoteClassLoader>();
+
+		/** when the pool has been used for the last time */
+		volatile long lastUsed = System.currentTimeMillis();
+
+		LoaderPool(DataFinder finder) {
+			this.finder = finder;
+		}
+	}
+
+	/** Key=dataFinder's key; Value=the pool of class loaders */
+	private final ConcurrentHashMap<String, LoaderPool> pools;
+
+	/**
+	 * Key=dataFinder's key; Value=the queues of the workers holding a warm class loader for the key.
+	 * Jobs are routed to these workers, which do not need to load again the classes.
+	 */
+	private final ConcurrentHashMap<String, BitSet> warm;
+
+	/** spreads jobs among the workers holding a warm class loader */
+	private final AtomicInteger routed = new AtomicInteger();
 
 	private AtomicLong executedJobs = new AtomicLong();
 
 	public WorkerManager(int cpu) {
+		this(cpu, TestFul.getProperty(TestFul.PROPERTY_RUNNER_WORKER_JOBS, 50));
+	}
+
+	/**
+	 * Creates a worker manager
+	 * @param cpu the number of workers to start (-1 to start one worker per cpu)
+	 * @param buffer the maximum number of jobs waiting to be executed
+	 */
+	WorkerManager(int cpu, int buffer) {
 		if(LOG_FINE) logger.fine("Starting: Worker Manager (" + TestFul.runId + ")");
 
-		int buffer = TestFul.getProperty(TestFul.PROPERTY_RUNNER_WORKER_JOBS, 50);
-		jobs = new ArrayBlockingQueue<Job<?,?,?>>(buffer);
+		batch = Math.max(1, TestFul.getProperty(TestFul.PROPERTY_RUNNER_BATCH, 20));
+		heartbeat = Math.max(1, TestFul.getProperty(TestFul.PROPERTY_RUNNER_LEASE, 60)) * 1000 / 4;
 		results = new ConcurrentHashMap<String, IJobRepository>();
+		cancelled = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		workers = new CopyOnWriteArrayList<Worker>();
+		prefetch = batch;
 
-		finders = new CachingMap<String, DataFinder>(MAX_ELEMS, MIN_AGE, MIN_UNUSED);
-		classLoaders = new CachingMap<String, Queue<RemoteClassLoader>>(MAX_ELEMS, MIN_AGE, MIN_UNUSED);
+		pools = new ConcurrentHashMap<String, LoaderPool>();
+		warm = new ConcurrentHashMap<String, BitSet>();
 
 		if(cpu > 0) {
 			logger.info("Starting with " + cpu + " local executor threads");
@@ -85,30 +154,49 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 			logger.info("Detected " + cpu + " cpus (or cores): starting one thread per cpus.");
 		}
 
-		for(int i = 0; i < cpu; i++) createWorker();
+		fork = TestFul.getProperty(TestFul.PROPERTY_RUNNER_FORK, false);
+		if(fork && cpu > 0) logger.info("Workers execute jobs in separate JVMs");
+
+		final boolean adaptive = cpu > 0 && TestFul.getProperty(TestFul.PROPERTY_RUNNER_ADAPTIVE, false);
+		maxWorkers = adaptive ? Math.max(cpu, Runtime.getRuntime().availableProcessors()) : cpu;
+
+		jobs = new WorkStealingQueue<Job<?,?,?>>(maxWorkers, buffer, Job.Priority.values().length);
+
+		for(int i = 0; i < cpu; i++) createWorker(i);
 
 		logger.info("Started " + cpu + " workers");
+
+		if(adaptive) {
+			logger.info("Adapting the number of workers to the load (up to " + maxWorkers + " workers)");
+			Thread t = new Thread(new WorkerController(this), "WorkerController");
+			t.setDaemon(true);
+			t.start();
+		}
 	}
 
 	@Override
 	public void addJobRepository(final IJobRepository rep) throws RemoteException {
-		final String name = rep.getName();
+		final String repName = rep.getName();
 
-		if(!testRepositories.add(name)) return;
+		if(!testRepositories.add(repName)) return;
 
 		Thread t = new Thread(new Runnable() {
 
 			@Override
 			public void run() {
 				try {
-					String msg = "Added " + name;
+					String msg = "Added " + repName;
 					logger.info(msg);
 
 					while(running) {
-						Job<?,?,?> j = rep.getJob();
-						logger.finest("Retrieved test: " + j.id);
-						results.put(j.id, rep);
-						jobs.put(j);
+						// do not retrieve more jobs than the ones that can be stored
+						final int max = Math.max(1, Math.min(prefetch, jobs.remainingCapacity()));
+
+						for (Job<?, ?, ?> j : rep.getJobs(name, max)) {
+							logger.finest("Retrieved test: " + j.id);
+							results.put(j.id, rep);
+							jobs.put(j, j.getPriority().ordinal(), route(j));
+						}
 					}
 
 				} catch(InterruptedException e) {
@@ -127,20 +215,41 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 				}
 			}
 		});
-		t.setName("WorkerManager-" + name);
+		t.setName("WorkerManager-" + repName);
+		t.setDaemon(true);
+		t.start();
+
+		// renew the leases of the jobs taken from the repository
+		t = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					while(running) {
+						TimeUnit.MILLISECONDS.sleep(heartbeat);
+						rep.heartbeat(name);
+					}
+				} catch(InterruptedException e) {
+					logger.warning("Interrupted: " + e.getMessage());
+				} catch(RemoteException e) {
+					logger.warning("Cannot send the heartbeat to " + repName + ": " + e.getMessage());
+				}
+			}
+		});
+		t.setName("WorkerManager-heartbeat-" + repName);
 		t.setDaemon(true);
 		t.start();
 	}
 
 	@Override
 	public void addJobRepository(String repName) throws RemoteException, MalformedURLException, NotBoundException {
-		IJobRepository rep = (IJobRepository) Naming.lookup(repName);
+		IJobRepository rep = Transport.getTransport(repName).connect(repName);
 		addJobRepository(rep);
 	}
 
 	@Override
-	public String getName() throws RemoteException {
-		return "runner-" + TestFul.runId;
+	public String getName() {
+		return name;
 	}
 
 	public void stop() {
@@ -163,58 +272,342 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 		logger.info("Bye\n");
 	}
 
-	private void createWorker() {
-		Worker w = new Worker(this);
+	/**
+	 * Submits a job directly to the workers, without using any intermediate job repository.
+	 * This is possible only when the job repository and the workers run in the same JVM.
+	 * @param job the job to execute
+	 * @param rep the job repository that receives the result
+	 * @throws InterruptedException if interrupted while waiting for space in the queue
+	 */
+	void submit(Job<?,?,?> job, IJobRepository rep) throws InterruptedException {
+		results.put(job.id, rep);
+		jobs.put(job, job.getPriority().ordinal(), route(job));
+	}
+
+	/**
+	 * Cancels a job submitted to this worker manager.
+	 * If the job is waiting to be executed, it is discarded as soon as a worker retrieves it;
+	 * if it is being executed and mayInterruptIfRunning is true, its execution is stopped.
+	 * In both cases, its result is not sent back to the job repository.
+	 * @param id the id of the job
+	 * @param mayInterruptIfRunning true if the job should be stopped if it is running
+	 */
+	void cancel(String id, boolean mayInterruptIfRunning) {
+		if(!results.containsKey(id)) return;
+
+		cancelled.add(id);
+
+		// the job completed in the meanwhile
+		if(!results.containsKey(id)) {
+			cancelled.remove(id);
+			return;
+		}
+
+		if(mayInterruptIfRunning) {
+			for (Worker w : workers)
+				if(w.cancel(id)) return;
+		}
+	}
+
+	/**
+	 * Checks if a job has been cancelled: in this case, it is discarded.
+	 * @param job the job to check
+	 * @return true if the job has been cancelled and must not be executed
+	 */
+	boolean discardCancelled(Job<?,?,?> job) {
+		if(cancelled.isEmpty() || !cancelled.remove(job.id)) return false;
+
+		results.remove(job.id);
+		executedJobs.incrementAndGet();
+		return true;
+	}
+
+	private void createWorker(int queue) {
+		Worker w = fork ? new ForkedWorker(this, queue) : new Worker(this, queue);
+		workers.add(w);
 		w.setDaemon(true);
 		w.start();
 	}
 
+	/**
+	 * Starts a new worker, if the maximum number of workers has not been reached yet
+	 * @return true if the worker has been started
+	 */
+	synchronized boolean addWorker() {
+		if(getWorkersNumber() >= maxWorkers) return false;
+
+		// retired workers may still be running: their queues (and their warm class loaders) must not be shared
+		final BitSet used = new BitSet();
+		for (Worker w : workers)
+			used.set(w.getQueue());
+
+		final int queue = used.nextClearBit(0);
+		if(queue >= maxWorkers) return false;
+
+		createWorker(queue);
+		return true;
+	}
+
+	/**
+	 * Retires the most recent worker (it terminates after completing its current job).
+	 * The last worker is never retired.
+	 * @return true if a worker has been retired
+	 */
+	synchronized boolean retireWorker() {
+		if(getWorkersNumber() <= 1) return false;
+
+		for (int i = workers.size() - 1; i >= 0; i--) {
+			Worker w = workers.get(i);
+			if(!w.isRetired()) {
+				w.retire();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Notifies that a worker has terminated
+	 * @param w the terminated worker
+	 */
+	void workerTerminated(Worker w) {
+		workers.remove(w);
+	}
+
+	/**
+	 * Returns the number of active (i.e., not retired) workers
+	 * @return the number of active workers
+	 */
+	int getWorkersNumber() {
+		int n = 0;
+		for (Worker w : workers)
+			if(!w.isRetired()) n++;
+
+		return n;
+	}
+
+	int getMaxWorkersNumber() {
+		return maxWorkers;
+	}
+
+	/**
+	 * Sets the maximum number of jobs retrieved at once from job repositories
+	 * @param prefetch the number of jobs (it is capped to the batch size)
+	 */
+	void setPrefetch(int prefetch) {
+		this.prefetch = Math.max(1, Math.min(batch, prefetch));
+	}
+
+	int getPrefetch() {
+		return prefetch;
+	}
+
+	int getWaitingJobs() {
+		return jobs.size();
+	}
+
+	long getExecutedJobs() {
+		return executedJobs.get();
+	}
+
+	/**
+	 * Returns the time spent executing jobs
+	 * @return the time spent executing jobs (in nanoseconds)
+	 */
+	long getJobsTime() {
+		return jobsTime.get();
+	}
+
+	/**
+	 * Records the execution time of a job
+	 * @param nanos the execution time, in nanoseconds
+	 */
+	void jobExecuted(long nanos) {
+		jobsTime.addAndGet(nanos);
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public <I extends Serializable, R extends Serializable> Job<I, R, ? extends IExecutor<I,R>> getJob() throws RemoteException {
 		try {
-			return (Job<I, R, ? extends IExecutor<I, R>>) jobs.take();
+			return (Job<I, R, ? extends IExecutor<I, R>>) jobs.take(-1);
 		} catch(InterruptedException e) {
 			throw new RemoteException("interrupted", e);
 		}
 	}
 
-	public RemoteClassLoader getClassLoader(Job<?,?,?> ctx) throws RemoteException {
-		DataFinder finder = ctx.getFinder();
-		String key = finder.getKey();
+	/**
+	 * Retrieves a job, waiting up to the specified wait time if necessary
+	 * @param worker the worker requesting the job
+	 * @param timeout how long to wait before giving up
+	 * @param unit the unit of the timeout
+	 * @return a job, or null if the timeout expires
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	Job<?,?,?> pollJob(int worker, long timeout, TimeUnit unit) throws InterruptedException {
+		return jobs.poll(worker, timeout, unit);
+	}
 
-		RemoteClassLoader ret = null;
-		if(!ctx.isReloadClasses()) {
-			synchronized(classLoaders) {
-				Cacheable<Queue<RemoteClassLoader>> q = classLoaders.get(key);
-				if(q != null) ret = q.getElement().poll();
+	/**
+	 * Retrieves a job, if one is immediately available
+	 * @param worker the worker requesting the job
+	 * @return a job, or null if there are no jobs waiting to be executed
+	 */
+	Job<?,?,?> pollJob(int worker) {
+		return jobs.poll(worker);
+	}
+
+	@Override
+	public void heartbeat(String worker) {
+		// jobs are not leased: the worker manager does not re-dispatch them
+	}
+
+	@Override
+	public List<Job<?, ?, ?>> getJobs(String worker, int max) throws RemoteException {
+		try {
+			List<Job<?, ?, ?>> ret = new ArrayList<Job<?,?,?>>(max);
+			ret.add(jobs.take(-1));
+
+			Job<?,?,?> j;
+			while(ret.size() < max && (j = jobs.poll(-1)) != null)
+				ret.add(j);
+
+			return ret;
+		} catch(InterruptedException e) {
+			throw new RemoteException("interrupted", e);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of jobs (and results) exchanged at once with job repositories
+	 * @return the size of batches
+	 */
+	public int getBatchSize() {
+		return batch;
+	}
+
+	/**
+	 * Checks if the result of a job can be held back, and sent with other results in a batch.
+	 * Results going to job repositories running in this JVM (including direct submissions)
+	 * and results of {@link Job.Priority#HIGH} jobs are sent back immediately:
+	 * only results going to remote job repositories are batched.
+	 * @param job the job
+	 * @return true if the result of the job can be batched
+	 */
+	boolean isBatched(Job<?,?,?> job) {
+		if(job.getPriority() == Job.Priority.HIGH) return false;
+
+		final IJobRepository rep = results.get(job.id);
+		return rep != null && !(rep instanceof RunnerPool) && !(rep instanceof WorkerManager);
+	}
+
+	/**
+	 * Returns a class loader for the job: an idle one if it is possible, a new one otherwise.
+	 * @param ctx the job
+	 * @return the class loader for the job
+	 * @throws RemoteException if the data finder of the job is not reachable
+	 */
+	public RemoteClassLoader getClassLoader(Job<?,?,?> ctx) throws RemoteException {
+		final String key = ctx.getFinderKey();
+
+		LoaderPool pool = pools.get(key);
+		if(pool == null) {
+			final DataFinder finder = ctx.getFinder();
+			final DataFinderCaching caching = finder instanceof DataFinderCaching ? (DataFinderCaching) finder : new DataFinderCaching(finder);
+			pool = new LoaderPool(caching);
+
+			final LoaderPool prev = pools.putIfAbsent(key, pool);
+			if(prev != null) {
+				pool = prev;
+			} else {
+				discardUnusedPools();
+
+				// the first time a data finder is used, retrieve at once the classes that jobs are likely to load
+				caching.prefetchClasses();
 			}
 		}
 
-		// if cacheable and cached
-		if(ret != null) return ret;
+		pool.lastUsed = System.currentTimeMillis();
 
-		Cacheable<DataFinder> cacheableFinder;
-		synchronized(finders) {
-			cacheableFinder = finders.get(key);
+		RemoteClassLoader ret = null;
+		if(!ctx.isReloadClasses() || RemoteClassLoader.RESTORE_STATIC) ret = ctx.reuse(pool.idle.poll());
+		if(ret == null) ret = new RemoteClassLoader(pool.finder);
 
-			if(cacheableFinder == null) {
-				if(finder instanceof DataFinderCaching) cacheableFinder = new Cacheable<DataFinder>(finder);
-				else cacheableFinder = new Cacheable<DataFinder>(new DataFinderCaching(finder));
+		return ret;
+	}
 
-				finders.put(key, cacheableFinder);
+	/** Discards the pools of class loaders that have not been used recently */
+	private void discardUnusedPools() {
+		final long now = System.currentTimeMillis();
+
+		for (Iterator<LoaderPool> it = pools.values().iterator(); it.hasNext(); ) {
+			if(now - it.next().lastUsed > MIN_UNUSED) {
+				it.remove();
+				if(LOG_FINE) logger.fine("Discarded an unused pool of class loaders");
 			}
 		}
+	}
 
-		ret = new RemoteClassLoader(cacheableFinder.getElement());
+	/**
+	 * Marks a worker as holding (or not) a warm class loader for a data finder:
+	 * jobs using that data finder are routed to the worker.
+	 * @param w the worker
+	 * @param key the key of the data finder
+	 * @param isWarm true if the worker holds a class loader for the data finder
+	 */
+	void setWarm(Worker w, String key, boolean isWarm) {
+		BitSet b = warm.get(key);
+		if(b == null) {
+			if(!isWarm) return;
+
+			b = new BitSet();
+			BitSet prev = warm.putIfAbsent(key, b);
+			if(prev != null) b = prev;
+		}
 
-		return ret;
+		synchronized(b) {
+			b.set(w.getQueue(), isWarm);
+		}
+	}
+
+	/**
+	 * Chooses the worker which should execute the job
+	 * @param job the job
+	 * @return the queue of a worker holding a warm class loader for the job, or -1 if there are none
+	 */
+	private int route(Job<?,?,?> job) {
+		final BitSet b;
+		try {
+			b = warm.get(job.getFinderKey());
+		} catch(RemoteException e) {
+			return -1;
+		}
+
+		if(b == null) return -1;
+
+		synchronized(b) {
+			final int n = b.cardinality();
+			if(n == 0) return -1;
+
+			int k = (routed.getAndIncrement() & Integer.MAX_VALUE) % n;
+			int i = b.nextSetBit(0);
+			while(k-- > 0) i = b.nextSetBit(i + 1);
+			return i;
+		}
 	}
 
 	@Override
 	public void putException(String key, Exception exc) throws RemoteException {
+		IJobRepository rep = results.remove(key);
+
+		// the job has been cancelled while it was running: nobody waits for its result
+		if(!cancelled.isEmpty() && cancelled.remove(key)) {
+			executedJobs.incrementAndGet();
+			return;
+		}
+
 		try {
-			IJobRepository rep = results.remove(key);
 			rep.putException(key, exc);
 		} catch(Exception e) {
 			logger.log(Level.WARNING, "Cannot put the result back in the job repository: " + e.getMessage(), e);
@@ -236,8 +629,15 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 
 	@Override
 	public void putResult(String key, Serializable result) throws RemoteException {
+		IJobRepository rep = results.remove(key);
+
+		// the job has been cancelled while it was running: nobody waits for its result
+		if(!cancelled.isEmpty() && cancelled.remove(key)) {
+			executedJobs.incrementAndGet();
+			return;
+		}
+
 		try {
-			IJobRepository rep = results.remove(key);
 			rep.putResult(key, result);
 		} catch(Exception e) {
 			logger.log(Level.WARNING, "Cannot put the result back in the job repository: " + e.getMessage(), e);
@@ -256,19 +656,58 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 		}
 	}
 
-	private void reuseClassLoader(RemoteClassLoader cl) {
-		synchronized(classLoaders) {
-			Cacheable<Queue<RemoteClassLoader>> q = classLoaders.get(cl.getKey());
+	@Override
+	public void putResults(List<JobResult> res) throws RemoteException {
+		if(res.isEmpty()) return;
+
+		// group the results by job repository
+		Map<IJobRepository, List<JobResult>> groups = new HashMap<IJobRepository, List<JobResult>>();
+		for (JobResult r : res) {
+			IJobRepository rep = results.remove(r.getKey());
+
+			// the job has been cancelled while it was running: nobody waits for its result
+			if(!cancelled.isEmpty() && cancelled.remove(r.getKey())) {
+				executedJobs.incrementAndGet();
+				continue;
+			}
+
+			if(rep == null) {
+				logger.warning("Cannot find the job repository for " + r.getKey());
+				continue;
+			}
+
+			List<JobResult> group = groups.get(rep);
+			if(group == null) {
+				group = new ArrayList<JobResult>(res.size());
+				groups.put(rep, group);
+			}
+
+			group.add(r);
+		}
 
-			if(q == null) {
-				q = new Cacheable<Queue<RemoteClassLoader>>(new ArrayBlockingQueue<RemoteClassLoader>(10));
-				classLoaders.put(cl.getKey(), q);
+		for (Entry<IJobRepository, List<JobResult>> group : groups.entrySet()) {
+			try {
+				group.getKey().putResults(group.getValue());
+			} catch(Exception e) {
+				logger.log(Level.WARNING, "Cannot put the results back in the job repository: " + e.getMessage(), e);
 			}
 
-			q.getElement().offer(cl);
+			executedJobs.addAndGet(group.getValue().size());
 		}
 	}
 
+	/**
+	 * Makes a class loader available for other jobs
+	 * @param cl the class loader
+	 */
+	void reuseClassLoader(RemoteClassLoader cl) {
+		final LoaderPool pool = pools.get(cl.getKey());
+
+		// each worker uses one class loader at a time
+		if(pool != null && pool.idle.size() < maxWorkers)
+			pool.idle.offer(cl);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder("Testful runner - ").append(new Date().toString());
@@ -282,6 +721,9 @@ public class WorkerManager implements IWorkerManager, IJobRepository {
 		sb.append(current - waiting).append(" running, ");
 		sb.append(done).append(" completed.");
 
+		for(LoaderPool pool : pools.values())
+			sb.append("\n  cache: ").append(pool.finder);
+
 		long max = Runtime.getRuntime().maxMemory();
 		long free = Runtime.getRuntime().freeMemory();
 		long total = Runtime.getRuntime().totalMemory();
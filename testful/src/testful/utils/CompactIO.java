@@ -0,0 +1,154 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2010  Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.BitSet;
+
+/**
+ * Compact binary encoding of common data: variable-length integers and bit sets.
+ * It is used by the externalizable classes (e.g., coverage information) to keep
+ * their serialized form small.
+ * @author matteo
+ */
+public class CompactIO {
+
+	/** bit sets encoded as the gaps between consecutive set bits */
+	private static final int BITSET_GAPS = 0;
+
+	/** bit sets encoded as their raw bytes */
+	private static final int BITSET_RAW = 1;
+
+	/**
+	 * Writes a non-negative integer using 1 to 5 bytes (7 bits per byte).
+	 * Negative integers are valid, but they always use 5 bytes.
+	 * @param out the output
+	 * @param value the integer to write
+	 * @throws IOException if the output fails
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads an integer written by {@link #writeVarInt(DataOutput, int)}
+	 * @param in the input
+	 * @return the integer
+	 * @throws IOException if the input fails or it is malformed
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+		int ret = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final int b = in.readUnsignedByte();
+			ret |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) return ret;
+		}
+
+		throw new StreamCorruptedException("Malformed variable-length integer");
+	}
+
+	/**
+	 * Returns the number of bytes used to encode an integer
+	 * @param value the integer
+	 * @return the number of bytes used by {@link #writeVarInt(DataOutput, int)}
+	 */
+	private static int sizeVarInt(int value) {
+		int ret = 1;
+		while((value & ~0x7F) != 0) {
+			ret++;
+			value >>>= 7;
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes a bit set, choosing the smaller encoding among
+	 * the gaps between the set bits (for sparse sets) and the raw bytes (for dense sets).
+	 * @param out the output
+	 * @param bs the bit set to write
+	 * @throws IOException if the output fails
+	 */
+	public static void writeBitSet(DataOutput out, BitSet bs) throws IOException {
+		final int length = bs.length();
+
+		int gapsSize = 0;
+		for (int i = bs.nextSetBit(0), prev = -1; i >= 0; prev = i, i = bs.nextSetBit(i+1))
+			gapsSize += sizeVarInt(i - prev - 1);
+
+		final int rawSize = (length + 7) / 8;
+
+		if(gapsSize <= rawSize) {
+			out.writeByte(BITSET_GAPS);
+			writeVarInt(out, bs.cardinality());
+			for (int i = bs.nextSetBit(0), prev = -1; i >= 0; prev = i, i = bs.nextSetBit(i+1))
+				writeVarInt(out, i - prev - 1);
+
+		} else {
+			out.writeByte(BITSET_RAW);
+			writeVarInt(out, rawSize);
+			for (int i = 0; i < rawSize; i++) {
+				int b = 0;
+				for (int j = 0; j < 8; j++)
+					if(bs.get(i * 8 + j)) b |= 1 << j;
+				out.writeByte(b);
+			}
+		}
+	}
+
+	/**
+	 * Reads a bit set written by {@link #writeBitSet(DataOutput, BitSet)}
+	 * @param in the input
+	 * @return the bit set
+	 * @throws IOException if the input fails or it is malformed
+	 */
+	public static BitSet readBitSet(DataInput in) throws IOException {
+		final BitSet ret = new BitSet();
+
+		switch(in.readByte()) {
+		case BITSET_GAPS: {
+			final int cardinality = readVarInt(in);
+			for (int i = 0, pos = -1; i < cardinality; i++) {
+				pos += readVarInt(in) + 1;
+				ret.set(pos);
+			}
+			return ret;
+		}
+
+		case BITSET_RAW: {
+			final int rawSize = readVarInt(in);
+			for (int i = 0; i < rawSize; i++) {
+				final int b = in.readUnsignedByte();
+				for (int j = 0; j < 8; j++)
+					if((b & (1 << j)) != 0) ret.set(i * 8 + j);
+			}
+			return ret;
+		}
+
+		default:
+			throw new StreamCorruptedException("Unknown encoding of the bit set");
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2010  Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent cache, bounded by the total weight of its elements (e.g., their size in bytes).
+ * Reads are lock-free: they only mark the element as recently used.
+ * When the cache is full, elements are evicted following the CLOCK policy:
+ * elements are scanned in insertion order, recently used elements are given a second chance
+ * (and their mark is cleared), while the others are evicted. The cost of evictions is amortized O(1).
+ * The cache keeps some statistics: the number of hits, misses and evictions.
+ *
+ * @author matteo
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ConcurrentCache<K, V> {
+
+	/** Calculates the weight of values */
+	public static interface Weigher<V> {
+
+		/**
+		 * Calculates the weight of a value
+		 * @param value the value
+		 * @return the weight of the value (must be non-negative)
+		 */
+		public int weigh(V value);
+	}
+
+	/** Weighs each value 1: the cache is bounded by the number of its elements */
+	private static final Weigher<Object> SINGLETON = new Weigher<Object>() {
+		@Override
+		public int weigh(Object value) {
+			return 1;
+		}
+	};
+
+	/** Weighs arrays of bytes by their length */
+	public static final Weigher<byte[]> BYTES = new Weigher<byte[]>() {
+		@Override
+		public int weigh(byte[] value) {
+			return value.length;
+		}
+	};
+
+	private static class Node<K, V> {
+		final K key;
+		final V value;
+		final int weight;
+
+		/** true if the element has been used since the last time the clock hand has passed */
+		volatile boolean referenced;
+
+		Node(K key, V value, int weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<K, Node<K, V>>();
+
+	/** the minimum number of stale nodes in the clock that triggers its compaction */
+	private static final int MIN_STALE = 64;
+
+	/** the clock: elements in insertion order (it may contain elements already removed from the map) */
+	private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<Node<K, V>>();
+
+	/**
+	 * the number of stale nodes in the clock (i.e., whose elements have been removed or replaced):
+	 * when they outnumber the elements in the cache, the clock is compacted
+	 */
+	private final AtomicInteger stale = new AtomicInteger();
+
+	private final Weigher<? super V> weigher;
+	private final long maxWeight;
+	private final AtomicLong weight = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a cache bounded by the number of its elements
+	 * @param maxElems the maximum number of elements in the cache
+	 */
+	public ConcurrentCache(int maxElems) {
+		this(maxElems, SINGLETON);
+	}
+
+	/**
+	 * Creates a cache bounded by the total weight of its elements
+	 * @param maxWeight the maximum weight of the elements in the cache
+	 * @param weigher the weigher calculating the weight of each element
+	 */
+	public ConcurrentCache(long maxWeight, Weigher<? super V> weigher) {
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Retrieves an element from the cache
+	 * @param key the key of the element
+	 * @return the element, or null if it is not in the cache
+	 */
+	public V get(K key) {
+		final Node<K, V> node = map.get(key);
+
+		if(node == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		if(!node.referenced) node.referenced = true;
+		hits.incrementAndGet();
+		return node.value;
+	}
+
+	/**
+	 * Inserts an element in the cache, possibly evicting other elements
+	 * @param key the key of the element
+	 * @param value the element
+	 */
+	public void put(K key, V value) {
+		final Node<K, V> node = new Node<K, V>(key, value, weigher.weigh(value));
+
+		final Node<K, V> old = map.put(key, node);
+		weight.addAndGet(old == null ? node.weight : node.weight - old.weight);
+		clock.offer(node);
+
+		if(weight.get() > maxWeight) evict();
+		if(old != null) addStale();
+	}
+
+	/**
+	 * Removes an element from the cache
+	 * @param key the key of the element
+	 */
+	public void remove(K key) {
+		final Node<K, V> node = map.remove(key);
+		if(node != null) {
+			weight.addAndGet(-node.weight);
+			addStale();
+		}
+	}
+
+	/** A node of the clock has become stale: compacts the clock if stale nodes outnumber the elements in the cache */
+	private void addStale() {
+		if(stale.incrementAndGet() > Math.max(MIN_STALE, map.size())) compact();
+	}
+
+	/** Removes the stale nodes from the clock (the cost is amortized by the stale nodes accumulated before) */
+	private void compact() {
+		synchronized(clock) {
+			if(stale.get() <= Math.max(MIN_STALE, map.size())) return;
+
+			int removed = 0;
+			for (Iterator<Node<K, V>> it = clock.iterator(); it.hasNext(); ) {
+				final Node<K, V> node = it.next();
+				if(map.get(node.key) != node) {
+					it.remove();
+					removed++;
+				}
+			}
+
+			stale.addAndGet(-removed);
+		}
+	}
+
+	/** Removes all the elements from the cache */
+	public void clear() {
+		synchronized(clock) {
+			Node<K, V> node;
+			while((node = clock.poll()) != null) {
+				if(map.remove(node.key, node)) weight.addAndGet(-node.weight);
+				else stale.decrementAndGet();
+			}
+		}
+	}
+
+	/** Moves the hand of the clock until the cache is not full anymore */
+	private void evict() {
+		synchronized(clock) {
+			// after two rounds, elements are evicted even if they have been used in the meantime
+			int chances = 2 * map.size();
+
+			while(weight.get() > maxWeight) {
+				final Node<K, V> node = clock.poll();
+				if(node == null) return;
+
+				// the element has been removed or replaced
+				if(map.get(node.key) != node) {
+					stale.decrementAndGet();
+					continue;
+				}
+
+				if(node.referenced && chances-- > 0) {
+					node.referenced = false;
+					clock.offer(node);
+					continue;
+				}
+
+				if(map.remove(node.key, node)) {
+					weight.addAndGet(-node.weight);
+					evictions.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the cache
+	 * @return the number of elements in the cache
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * Returns the number of nodes in the clock, including the stale ones (used by tests)
+	 * @return the number of nodes in the clock
+	 */
+	int getClockSize() {
+		return clock.size();
+	}
+
+	/**
+	 * Returns the total weight of the elements in the cache
+	 * @return the total weight of the elements in the cache
+	 */
+	public long getWeight() {
+		return weight.get();
+	}
+
+	/**
+	 * Returns the number of successful lookups
+	 * @return the number of successful lookups
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of failed lookups
+	 * @return the number of failed lookups
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of elements evicted to make room for new ones
+	 * @return the number of evicted elements
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return size() + " elements (weight " + getWeight() + "/" + maxWeight + "; hits: " + getHits() + ", misses: " + getMisses() + ", evictions: " + getEvictions() + ")";
+	}
+}
@@ -24,13 +24,18 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -235,10 +240,31 @@ public class ElementManager<K, T extends ElementWithKey<K>> implements Iterable<
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
-		out.writeInt(map.size());
+		CompactIO.writeVarInt(out, map.size());
+
+		// externalizable elements are written directly, without the stream's class descriptors:
+		// each class is written only once, and the elements refer to it by index (0 = serialized)
+		final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+		for (T v : map.values()) {
+			if(v instanceof Externalizable) {
+				Integer id = classes.get(v.getClass());
+				if(id == null) {
+					id = classes.size() + 1;
+					classes.put(v.getClass(), id);
+
+					CompactIO.writeVarInt(out, id);
+					out.writeObject(v.getClass());
+				} else {
+					CompactIO.writeVarInt(out, id);
+				}
+
+				((Externalizable) v).writeExternal(out);
 
-		for (T v : map.values())
-			out.writeObject(v);
+			} else {
+				CompactIO.writeVarInt(out, 0);
+				out.writeObject(v);
+			}
+		}
 	}
 
 	/* (non-Javadoc)
@@ -247,10 +273,43 @@ public class ElementManager<K, T extends ElementWithKey<K>> implements Iterable<
 	@Override
 	@SuppressWarnings("unchecked")
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-		int size = in.readInt();
+		int size = CompactIO.readVarInt(in);
 
+		final List<Constructor<?>> classes = new ArrayList<Constructor<?>>();
 		for (int i = 0; i < size; i++) {
-			T v = (T) in.readObject();
+			final int id = CompactIO.readVarInt(in);
+
+			final T v;
+			if(id == 0) {
+				v = (T) in.readObject();
+
+			} else {
+				if(id == classes.size() + 1) {
+					final Class<?> c = (Class<?>) in.readObject();
+					if(!Externalizable.class.isAssignableFrom(c)) throw new InvalidClassException(c.getName(), "not externalizable");
+
+					try {
+						final Constructor<?> cns = c.getDeclaredConstructor();
+						cns.setAccessible(true);
+						classes.add(cns);
+					} catch (NoSuchMethodException e) {
+						throw new InvalidClassException(c.getName(), "no default constructor");
+					}
+
+				} else if(id > classes.size()) {
+					throw new StreamCorruptedException("Invalid class reference: " + id);
+				}
+
+				final Constructor<?> cns = classes.get(id - 1);
+				try {
+					v = (T) cns.newInstance();
+				} catch (Exception e) {
+					throw new InvalidClassException(cns.getDeclaringClass().getName(), "cannot create an instance: " + e);
+				}
+
+				((Externalizable) v).readExternal(in);
+			}
+
 			map.put(v.getKey(), v);
 		}
 	}
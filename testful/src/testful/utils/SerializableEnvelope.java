@@ -20,6 +20,7 @@ package testful.utils;
 
 import java.io.Externalizable;
 import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
@@ -31,11 +32,45 @@ import java.util.logging.Logger;
  * It supports caching both
  * of objects (so to allow efficient local evaluations)
  * and of serialized objects (so to avoid useless deserializations).
+ * Objects implementing {@link Direct} are written directly in the stream carrying the envelope,
+ * without being serialized in a separate array of bytes, if their class is available to
+ * every JVM running jobs (i.e., it is in the classes of the runner: see the patternset runner in build.xml).
+ * Other objects are serialized in a separate array of bytes, which is de-serialized with the
+ * class loader of the job (see {@link #getObject(ClassLoader)}).
  * @param <T> the type of the object being transferred
  * @author matteo
  */
 public class SerializableEnvelope<T extends Serializable> implements Externalizable {
 
+	/**
+	 * Objects whose externalized form only refers to classes available to the class loader of TestFul
+	 * in every JVM running jobs (i.e., they do not need the class loader of the job to be de-serialized).
+	 * They must have a public default constructor.
+	 * Objects whose class is not in the classes of the runner are serialized as the other objects.
+	 */
+	public static interface Direct extends Externalizable { }
+
+	/** the packages of the classes available to every JVM running jobs (see the patternset runner in build.xml) */
+	private static final String[] RUNNER_PACKAGES = {
+		"testful.runner.",
+		"testful.utils.",
+	};
+
+	/**
+	 * Checks if an object can be written directly in the stream carrying the envelope
+	 * @param object the object
+	 * @return true if the object is {@link Direct}, and its class is available to every JVM running jobs
+	 */
+	private static boolean isDirect(Object object) {
+		if(!(object instanceof Direct)) return false;
+
+		final String name = object.getClass().getName();
+		for (String pkg : RUNNER_PACKAGES)
+			if(name.startsWith(pkg)) return true;
+
+		return false;
+	}
+
 	private static final Logger logger = Logger.getLogger("testful.utils.SerializableEnvelope");
 
 	private transient T object;
@@ -72,9 +107,17 @@ public class SerializableEnvelope<T extends Serializable> implements Externaliza
 	 */
 	@Override
 	public void writeExternal(ObjectOutput out) throws IOException {
+		if(isDirect(object)) {
+			out.writeBoolean(true);
+			out.writeUTF(object.getClass().getName());
+			((Direct) object).writeExternal(out);
+			return;
+		}
+
 		if(serialized == null)
 			serialized = SerializationUtils.serialize(object, false);
 
+		out.writeBoolean(false);
 		out.writeInt(serialized.length);
 		out.write(serialized);
 	}
@@ -83,8 +126,26 @@ public class SerializableEnvelope<T extends Serializable> implements Externaliza
 	 * @see java.io.Externalizable#readExternal(java.io.ObjectInput)
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
 
+		if(in.readBoolean()) {
+			final String name = in.readUTF();
+			final Class<?> c = Class.forName(name, false, SerializableEnvelope.class.getClassLoader());
+			if(!Direct.class.isAssignableFrom(c)) throw new InvalidClassException(name, "not a direct object");
+
+			final Direct direct;
+			try {
+				direct = (Direct) c.newInstance();
+			} catch (Exception e) {
+				throw new InvalidClassException(name, "cannot create an instance: " + e);
+			}
+
+			direct.readExternal(in);
+			object = (T) direct;
+			return;
+		}
+
 		int len = in.readInt();
 		serialized = new byte[len];
 
@@ -0,0 +1,194 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A watchdog shared by all the threads of the JVM: a single daemon thread
+ * checks the deadlines of all the threads every {@link #TICK} milliseconds.
+ * Each thread owns a single {@link Deadline}: arming and disarming it is a volatile write,
+ * which does not require any lock nor allocation.
+ * <br/>
+ * This class must be loaded by the system class loader, to be shared among workers.
+ *
+ * @author matteo
+ */
+public final class Watchdog {
+
+	private static final Logger logger = Logger.getLogger("testful.utils.timer");
+	private static final boolean LOG_FINE = logger.isLoggable(Level.FINE);
+
+	/** The resolution of the watchdog, in milliseconds */
+	public static final int TICK = 10;
+
+	/** Once expired, the alarm rings again after this amount of time (ms), until the deadline is disarmed */
+	private static final int SNOOZE = 20;
+
+	/** Is notified when a deadline expires */
+	public static interface Alarm {
+
+		/**
+		 * Notifies that the deadline is expired. This method is called by the thread of the watchdog:
+		 * it must be fast and must not block.
+		 * @param deadline the expired deadline
+		 */
+		public void expired(Deadline deadline);
+	}
+
+	/** The deadline of a thread */
+	public static final class Deadline {
+
+		/** the thread owning the deadline */
+		private final Thread owner;
+
+		/** the expiration time (as reported by System.currentTimeMillis()), or zero if the deadline is not armed */
+		private final AtomicLong expiration = new AtomicLong();
+
+		/** the one to notify when the deadline expires */
+		private volatile Alarm alarm;
+
+		private Deadline(Thread owner) {
+			this.owner = owner;
+		}
+
+		/**
+		 * Sets the one to notify when the deadline expires
+		 * @param alarm the one to notify (null to ignore the expiration)
+		 */
+		public void setAlarm(Alarm alarm) {
+			this.alarm = alarm;
+		}
+
+		/**
+		 * Arms the deadline: in maxExecTime milliseconds the alarm rings.
+		 * @param maxExecTime the amount of time to wait before ringing the alarm
+		 */
+		public void arm(long maxExecTime) {
+			// the watchdog can see the deadline a bit later: no need for a full fence
+			expiration.lazySet(System.currentTimeMillis() + maxExecTime);
+		}
+
+		/**
+		 * Disarms the deadline: the alarm does not ring anymore (unless the deadline is armed again).
+		 */
+		public void disarm() {
+			expiration.set(0);
+		}
+
+		/**
+		 * Checks if the deadline is armed
+		 * @return true if the deadline is armed
+		 */
+		public boolean isArmed() {
+			return expiration.get() != 0;
+		}
+
+		/**
+		 * Postpones the deadline, if it is still armed
+		 * @param delay the amount of time to wait (from now) before ringing the alarm
+		 */
+		public void postpone(long delay) {
+			final long e = expiration.get();
+			if(e != 0) expiration.compareAndSet(e, System.currentTimeMillis() + delay);
+		}
+
+		/**
+		 * Returns the thread owning the deadline
+		 * @return the thread owning the deadline
+		 */
+		public Thread getOwner() {
+			return owner;
+		}
+
+		@Override
+		public String toString() {
+			return owner.getName() + "-deadline";
+		}
+	}
+
+	/** the deadlines of the threads */
+	private static final CopyOnWriteArrayList<Deadline> deadlines = new CopyOnWriteArrayList<Deadline>();
+
+	private static final ThreadLocal<Deadline> threadDeadline = new ThreadLocal<Deadline>() {
+		@Override
+		protected Deadline initialValue() {
+			final Deadline d = new Deadline(Thread.currentThread());
+			deadlines.add(d);
+			return d;
+		}
+	};
+
+	static {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while(true) {
+					try {
+						Thread.sleep(TICK);
+					} catch(InterruptedException e) {
+						// the watchdog never stops
+					}
+
+					final long now = System.currentTimeMillis();
+
+					for(Deadline d : deadlines) {
+						// forget the deadlines of terminated threads
+						if(!d.owner.isAlive()) {
+							deadlines.remove(d);
+							continue;
+						}
+
+						final long e = d.expiration.get();
+						if(e == 0 || e > now || !d.expiration.compareAndSet(e, now + SNOOZE)) continue;
+
+						final Alarm alarm = d.alarm;
+						if(alarm == null) {
+							if(LOG_FINE) logger.fine("The alarm " + d + " is ringing, but no one cares about it!");
+							continue;
+						}
+
+						try {
+							alarm.expired(d);
+						} catch(Throwable exc) {
+							logger.log(Level.WARNING, "Error in the alarm " + d + ": " + exc.getMessage(), exc);
+						}
+					}
+				}
+			}
+		}, "testful-watchdog");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Returns the deadline of the current thread
+	 * @return the deadline of the current thread
+	 */
+	public static Deadline getDeadline() {
+		return threadDeadline.get();
+	}
+
+	private Watchdog() {
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded blocking queue split in several lock-free sub-queues, one for each consumer.
+ * Elements are spread among sub-queues in a round-robin fashion; each consumer
+ * takes elements from its own sub-queue, and steals them from the others when it is empty.
+ * Elements are always taken from the head of sub-queues, to preserve (roughly)
+ * the insertion order.
+ * Elements can be inserted with different priority levels (0 is the highest one):
+ * elements with a higher priority are always taken first, and each level has
+ * its own capacity (i.e., elements never wait for space behind elements of other levels).
+ * @author matteo
+ * @param <E> the type of the elements
+ */
+public class WorkStealingQueue<E> {
+
+	/** the sub-queues (for each priority level, one per consumer) */
+	private final Queue<E>[][] queues;
+
+	/** the number of elements in the queue */
+	private final Semaphore available;
+
+	/** the number of elements that can be inserted in the queue (one for each priority level) */
+	private final Semaphore[] space;
+
+	/** the sub-queue receiving the next element */
+	private final AtomicInteger next;
+
+	/**
+	 * Creates a new work-stealing queue, with a single priority level
+	 * @param consumers the number of consumers (i.e., of sub-queues)
+	 * @param capacity the maximum number of elements in the queue
+	 */
+	public WorkStealingQueue(int consumers, int capacity) {
+		this(consumers, capacity, 1);
+	}
+
+	/**
+	 * Creates a new work-stealing queue
+	 * @param consumers the number of consumers (i.e., of sub-queues)
+	 * @param capacity the maximum number of elements in the queue for each priority level
+	 * @param levels the number of priority levels
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public WorkStealingQueue(int consumers, int capacity, int levels) {
+		if(consumers < 1) consumers = 1;
+		if(levels < 1) levels = 1;
+
+		queues = new Queue[levels][consumers];
+		space = new Semaphore[levels];
+		for (int l = 0; l < levels; l++) {
+			space[l] = new Semaphore(capacity);
+			for (int i = 0; i < consumers; i++)
+				queues[l][i] = new ConcurrentLinkedQueue<E>();
+		}
+
+		available = new Semaphore(0);
+		next = new AtomicInteger();
+	}
+
+	/**
+	 * Inserts an element with the lowest priority, waiting if necessary for space to become available
+	 * @param e the element to insert
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(E e) throws InterruptedException {
+		put(e, queues.length - 1);
+	}
+
+	/**
+	 * Inserts an element, waiting if necessary for space to become available
+	 * @param e the element to insert
+	 * @param level the priority level of the element (0 is the highest priority)
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(E e, int level) throws InterruptedException {
+		put(e, level, -1);
+	}
+
+	/**
+	 * Inserts an element in the sub-queue of a given consumer, waiting if necessary for space to become available.
+	 * The consumer takes it before the elements of other sub-queues, but other consumers can still steal it.
+	 * @param e the element to insert
+	 * @param level the priority level of the element (0 is the highest priority)
+	 * @param consumer the id of the consumer (between 0 and consumers-1), or -1 to spread elements in a round-robin fashion
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void put(E e, int level, int consumer) throws InterruptedException {
+		if(e == null) throw new NullPointerException("Cannot insert null elements");
+
+		final Queue<E>[] q = queues[level];
+		final int i = consumer >= 0 ? consumer % q.length : (next.getAndIncrement() & Integer.MAX_VALUE) % q.length;
+
+		space[level].acquire();
+		q[i].offer(e);
+		available.release();
+	}
+
+	/**
+	 * Retrieves and removes an element, waiting if necessary until one becomes available
+	 * @param consumer the id of the consumer (between 0 and consumers-1), or -1 if it is unknown
+	 * @return the element
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public E take(int consumer) throws InterruptedException {
+		available.acquire();
+		return remove(consumer);
+	}
+
+	/**
+	 * Retrieves and removes an element, if one is available
+	 * @param consumer the id of the consumer (between 0 and consumers-1), or -1 if it is unknown
+	 * @return the element, or null if the queue is empty
+	 */
+	public E poll(int consumer) {
+		if(!available.tryAcquire()) return null;
+		return remove(consumer);
+	}
+
+	/**
+	 * Retrieves and removes an element, waiting up to the specified wait time if necessary
+	 * @param consumer the id of the consumer (between 0 and consumers-1), or -1 if it is unknown
+	 * @param timeout how long to wait before giving up
+	 * @param unit the unit of the timeout
+	 * @return the element, or null if the timeout expires
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public E poll(int consumer, long timeout, TimeUnit unit) throws InterruptedException {
+		if(!available.tryAcquire(timeout, unit)) return null;
+		return remove(consumer);
+	}
+
+	/**
+	 * Removes an element. The caller must have acquired a permit from <code>available</code>:
+	 * this guarantees that there is an element for him in one of the sub-queues.
+	 */
+	private E remove(int consumer) {
+		while(true) {
+			for (int l = 0; l < queues.length; l++) {
+				final Queue<E>[] q = queues[l];
+				final int start = consumer >= 0 ? consumer % q.length : 0;
+
+				for (int i = 0; i < q.length; i++) {
+					E e = q[(start + i) % q.length].poll();
+					if(e != null) {
+						space[l].release();
+						return e;
+					}
+				}
+			}
+
+			// other consumers took the elements while scanning the sub-queues: retry
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the queue
+	 * @return the number of elements in the queue
+	 */
+	public int size() {
+		return available.availablePermits();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the number of elements that can be inserted without blocking (with the lowest priority)
+	 * @return the number of elements that can be inserted without blocking
+	 */
+	public int remainingCapacity() {
+		return remainingCapacity(queues.length - 1);
+	}
+
+	/**
+	 * Returns the number of elements with the given priority that can be inserted without blocking
+	 * @param level the priority level
+	 * @return the number of elements that can be inserted without blocking
+	 */
+	public int remainingCapacity(int level) {
+		return space[level].availablePermits();
+	}
+}
@@ -37,6 +37,7 @@ public class AllTests {
 		suite.addTestSuite(CoverageDataFlowTestCase.class);
 		suite.addTestSuite(CoveragePUseTestCase.class);
 		suite.addTestSuite(StopperTestCase.class);
+		suite.addTestSuite(TrackerWhiteBoxTestCase.class);
 		//$JUnit-END$
 
 		return suite;
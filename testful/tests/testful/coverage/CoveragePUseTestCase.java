@@ -46,7 +46,7 @@ import testful.utils.ElementManager;
  */
 public class CoveragePUseTestCase extends GenericTestCase {
 
-	private static final Stack EMPTY_STACK = new Stack(new Integer[0]);
+	private static final Stack EMPTY_STACK = new Stack(new int[0]);
 
 	private void checkDistance(Test t, Map<ConditionTargetDatum, Double> distance) throws Exception {
 
@@ -0,0 +1,86 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.coverage;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Measures the overhead of the checks inserted by the
+ * {@link testful.coverage.stopper.ExecutionStopperInstrumenter} on the
+ * loop-heavy class of the testCut (apache.Fraction: greatest common divisors and continued fractions).
+ * Each argument is a class path containing apache.Fraction: the original class
+ * and the class instrumented with and without safepoints (see the target test.stopper.benchmark in build.xml).
+ *
+ * @author matteo
+ */
+public class StopperBenchmark {
+
+	private static final int ROUNDS = 10;
+	private static final int WARMUP = 5;
+	private static final int N = 100000;
+
+	public static void main(String[] args) throws Exception {
+		final int[] num = new int[N];
+		final int[] den = new int[N];
+		final double[] values = new double[N];
+		for (int i = 0; i < N; i++) {
+			num[i] = 1 + (int) ((i * 7919L * 7919L) % 1000000007);
+			den[i] = 2 + (int) ((i * 104729L * 104729L) % 999999937);
+			values[i] = Math.sqrt(i + 2);
+		}
+
+		for (String classPath : args) {
+			final String[] entries = classPath.split(File.pathSeparator);
+			final URL[] urls = new URL[entries.length];
+			for (int i = 0; i < entries.length; i++)
+				urls[i] = new File(entries[i]).toURI().toURL();
+
+			final ClassLoader loader = new URLClassLoader(urls, StopperBenchmark.class.getClassLoader());
+			final Class<?> fraction = loader.loadClass("apache.Fraction");
+			final Constructor<?> gcd = fraction.getConstructor(int.class, int.class);
+			final Constructor<?> continued = fraction.getConstructor(double.class, double.class, int.class);
+
+			long bestGcd = Long.MAX_VALUE;
+			long bestContinued = Long.MAX_VALUE;
+			int sink = 0;
+			for (int r = 0; r < WARMUP + ROUNDS; r++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < N; i++)
+					sink += gcd.newInstance(num[i], den[i]).hashCode();
+				final long timeGcd = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < N; i++)
+					sink += continued.newInstance(values[i], 1e-9, 100).hashCode();
+				final long timeContinued = System.nanoTime() - start;
+
+				if(r >= WARMUP) {
+					bestGcd = Math.min(bestGcd, timeGcd);
+					bestContinued = Math.min(bestContinued, timeContinued);
+				}
+			}
+
+			System.out.printf("%s%n  gcd: %.1f ns/op, continued fraction: %.1f ns/op (%d)%n",
+					classPath, bestGcd / (double) N, bestContinued / (double) N, sink);
+		}
+	}
+}
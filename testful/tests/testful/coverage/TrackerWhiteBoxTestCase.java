@@ -0,0 +1,103 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.coverage;
+
+import junit.framework.TestCase;
+import testful.coverage.whiteBox.ContextualId;
+import testful.coverage.whiteBox.Stack;
+import testful.coverage.whiteBox.TrackerWhiteBox;
+
+/**
+ * Tests the context tracking of the white-box tracker
+ * @author matteo
+ */
+public class TrackerWhiteBoxTestCase extends TestCase {
+
+	private final TrackerWhiteBox tracker = TrackerWhiteBox.getTracker();
+
+	@Override
+	protected void setUp() throws Exception {
+		tracker.reset();
+	}
+
+	public void testStack() {
+		assertEquals("[]", tracker.getStack().toString());
+
+		tracker.trackCall(3);
+		final Stack s3 = tracker.getStack();
+		assertEquals("[3]", s3.toString());
+
+		tracker.trackCall(5);
+		tracker.trackCall(3);
+		assertEquals("[3, 5]", tracker.getStack().toString());
+
+		tracker.trackReturn(3);
+		assertEquals("[3, 5]", tracker.getStack().toString());
+
+		tracker.trackReturn(5);
+		assertSame(s3, tracker.getStack());
+
+		tracker.trackReturn(3);
+		assertEquals("[]", tracker.getStack().toString());
+
+		// unmatched returns are ignored
+		tracker.trackReturn(3);
+		tracker.trackReturn(1000);
+		assertEquals("[]", tracker.getStack().toString());
+	}
+
+	public void testResetAfterMismatchedReturn() {
+		tracker.trackCall(3);
+		tracker.trackCall(5);
+
+		// the return pops a method that is not on the top of the stack
+		tracker.trackReturn(3);
+		assertEquals("[3]", tracker.getStack().toString());
+
+		tracker.reset();
+		tracker.trackCall(3);
+		assertEquals("[3]", tracker.getStack().toString());
+		tracker.trackCall(5);
+		assertEquals("[3, 5]", tracker.getStack().toString());
+	}
+
+	public void testDataAccess() {
+		tracker.trackCall(1);
+		final ContextualId d = tracker.getDataAccess(7);
+		assertEquals("7[1]", d.toString());
+		assertSame(d, tracker.getDataAccess(7));
+
+		tracker.trackCall(2);
+		assertEquals("7[1, 2]", tracker.getDataAccess(7).toString());
+		tracker.trackReturn(2);
+		assertSame(d, tracker.getDataAccess(7));
+
+		final ContextualId[] ids = new ContextualId[5000];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = tracker.getDataAccess(i);
+		for (int i = 0; i < ids.length; i++)
+			assertSame(ids[i], tracker.getDataAccess(i));
+
+		tracker.reset();
+		assertEquals("7[]", tracker.getDataAccess(7).toString());
+
+		tracker.trackCall(1);
+		assertSame(d, tracker.getDataAccess(7));
+	}
+}
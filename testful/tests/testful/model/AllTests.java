@@ -37,6 +37,7 @@ public class AllTests {
 		suite.addTestSuite(OptimalTestCase.class);
 		suite.addTestSuite(OperationResultTestExecutorTestCase.class);
 		suite.addTestSuite(ArrayTestCase.class);
+		suite.addTestSuite(InvokerFactoryTestCase.class);
 		//$JUnit-END$
 
 		suite.addTest(testful.model.transformation.AllTests.suite());
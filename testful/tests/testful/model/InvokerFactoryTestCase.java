@@ -0,0 +1,90 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the call stubs generated by the {@link InvokerFactory}
+ * @author matteo
+ */
+public class InvokerFactoryTestCase extends TestCase {
+
+	private final InvokerFactory factory = new InvokerFactory(InvokerFactoryTestCase.class.getClassLoader());
+
+	public void testStatic() throws Exception {
+		Invoker max = factory.create(Math.class, Math.class.getMethod("max", Long.TYPE, Long.TYPE));
+		assertEquals(Long.valueOf(7), max.invoke(null, new Object[] { 7, 'a' - 'b' }));
+
+		Invoker valueOf = factory.create(String.class, String.class.getMethod("valueOf", Character.TYPE));
+		assertEquals("x", valueOf.invoke(null, new Object[] { 'x' }));
+	}
+
+	public void testVirtual() throws Exception {
+		Invoker substring = factory.create(String.class, String.class.getMethod("substring", Integer.TYPE, Integer.TYPE));
+		assertEquals("es", substring.invoke("test", new Object[] { (byte) 1, 3.0 }));
+
+		Invoker add = factory.create(List.class, List.class.getMethod("add", Object.class));
+		List<Object> list = new ArrayList<Object>();
+		assertEquals(Boolean.TRUE, add.invoke(list, new Object[] { "a" }));
+		assertEquals(1, list.size());
+
+		Invoker clear = factory.create(ArrayList.class, ArrayList.class.getMethod("clear"));
+		assertNull(clear.invoke(list, new Object[0]));
+		assertTrue(list.isEmpty());
+	}
+
+	public void testConstructor() throws Exception {
+		Invoker cns = factory.create(StringBuilder.class.getConstructor(String.class));
+		assertEquals("abc", cns.invoke(null, new Object[] { "abc" }).toString());
+	}
+
+	public void testExceptions() throws Exception {
+		Invoker charAt = factory.create(String.class, String.class.getMethod("charAt", Integer.TYPE));
+		try {
+			charAt.invoke("test", new Object[] { 10 });
+			fail("The exception has not been thrown");
+		} catch(InvocationTargetException e) {
+			assertTrue(e.getTargetException() instanceof IndexOutOfBoundsException);
+		}
+
+		// conversion errors are not thrown by the invoked method
+		try {
+			charAt.invoke("test", new Object[] { true });
+			fail("The exception has not been thrown");
+		} catch(IllegalArgumentException e) {
+		}
+
+		Invoker cns = factory.create(Integer.class.getConstructor(String.class));
+		try {
+			cns.invoke(null, new Object[] { "x" });
+			fail("The exception has not been thrown");
+		} catch(InvocationTargetException e) {
+			assertTrue(e.getTargetException() instanceof NumberFormatException);
+		}
+	}
+
+	public void testNotAccessible() throws Exception {
+		assertNull(factory.create(Object.class, Object.class.getDeclaredMethod("clone")));
+	}
+}
@@ -30,7 +30,11 @@ public class AllTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		//$JUnit-BEGIN$
+		suite.addTestSuite(BlobTypeTestCase.class);
 		suite.addTestSuite(ClassFinderTestCase.class);
+		suite.addTestSuite(ContentCacheTestCase.class);
+		suite.addTestSuite(StaticStateTestCase.class);
+		suite.addTestSuite(TestfulFutureTestCase.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,57 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2010 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link BlobType}
+ * @author matteo
+ */
+public class BlobTypeTestCase extends TestCase {
+
+	private static byte[] blob(int i) {
+		final byte[] ret = new byte[1024 * 1024];
+		Arrays.fill(ret, (byte) i);
+		return ret;
+	}
+
+	public void testPinned() throws Exception {
+		final BlobType blobs = new BlobType();
+
+		final byte[] data = blob(0);
+		final String pinned = blobs.pin(data);
+		final String unpinned = blobs.add(blob(1));
+
+		// exceed the size of the blobs kept
+		for (int i = 2; i < 100; i++)
+			blobs.add(blob(i));
+
+		assertNull(blobs.getData(unpinned));
+		assertTrue(Arrays.equals(data, blobs.getData(pinned)));
+
+		blobs.release(pinned);
+		for (int i = 100; i < 200; i++)
+			blobs.add(blob(i));
+
+		assertNull(blobs.getData(pinned));
+	}
+}
@@ -104,6 +104,26 @@ public class ClassFinderTestCase extends GenericTestCase {
 		assertNotNull(c);
 	}
 
+	public void testManifest() throws Exception {
+		ConfigProject config = new ConfigProject(GenericTestCase.getConfig());
+		config.addLibrary(new File("lib/jdom.jar").getAbsoluteFile());
+
+		ClassType classType = new ClassType(config);
+		DataFinderImpl finder = new DataFinderImpl(classType);
+
+		assertEquals(0, finder.getData(ClassType.NAME, ClassType.MANIFEST).length);
+		assertNotNull(finder.getData(ClassType.NAME, "JDOMAbout"));
+		assertEquals("JDOMAbout", new String(finder.getData(ClassType.NAME, ClassType.MANIFEST), "UTF-8"));
+
+		DataFinderCaching caching = new DataFinderCaching(finder);
+		caching.prefetchClasses();
+
+		byte[][] b = caching.getData(ClassType.NAME, new String[] { "JDOMAbout", "NotExisting" });
+		assertEquals(2, b.length);
+		assertNotNull(b[0]);
+		assertNull(b[1]);
+	}
+
 	public void testInnerClass() throws Exception {
 		ClassType classType = new ClassType(GenericTestCase.getConfig());
 		DataFinderImpl finder = new DataFinderImpl(classType);
@@ -0,0 +1,113 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ContentCache}
+ * @author matteo
+ */
+public class ContentCacheTestCase extends TestCase {
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = File.createTempFile("testful-cache", "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(dir);
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if(children != null)
+			for (File c : children) delete(c);
+
+		f.delete();
+	}
+
+	public void testPutGet() throws Exception {
+		ContentCache cache = new ContentCache(dir, Long.MAX_VALUE);
+
+		byte[] data = "some bytecode".getBytes("UTF-8");
+		String hash = ContentCache.hash(data);
+		assertEquals(40, hash.length());
+
+		assertNull(cache.get(hash));
+
+		cache.put(data);
+		assertTrue(Arrays.equals(data, cache.get(hash)));
+
+		// the cache is persistent
+		assertTrue(Arrays.equals(data, new ContentCache(dir, Long.MAX_VALUE).get(hash)));
+	}
+
+	public void testCorrupted() throws Exception {
+		ContentCache cache = new ContentCache(dir, Long.MAX_VALUE);
+
+		byte[] data = "some bytecode".getBytes("UTF-8");
+		String hash = ContentCache.hash(data);
+		cache.put(data);
+
+		File file = new File(new File(dir, hash.substring(0, 2)), hash);
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("corrupted".getBytes("UTF-8"));
+		out.close();
+
+		assertNull(cache.get(hash));
+		assertFalse(file.exists());
+	}
+
+	public void testEviction() throws Exception {
+		ContentCache cache = new ContentCache(dir, 400);
+
+		byte[][] data = new byte[4][100];
+		for (int i = 0; i < data.length; i++) {
+			Arrays.fill(data[i], (byte) i);
+			cache.put(data[i]);
+		}
+
+		// the least recently used element is data[1], followed by data[0]
+		final long now = System.currentTimeMillis();
+		for (int i = 0; i < data.length; i++) {
+			File file = new File(new File(dir, ContentCache.hash(data[i]).substring(0, 2)), ContentCache.hash(data[i]));
+			assertTrue(file.setLastModified(i == 1 ? now - 7200000 : now - 3600000 + i * 1000));
+		}
+
+		// the cache exceeds its maximum size: the least recently used elements are evicted
+		byte[] last = new byte[100];
+		Arrays.fill(last, (byte) 4);
+		cache.put(last);
+
+		assertNull(cache.get(ContentCache.hash(data[1])));
+		assertNull(cache.get(ContentCache.hash(data[0])));
+		assertTrue(Arrays.equals(data[3], cache.get(ContentCache.hash(data[3]))));
+		assertTrue(Arrays.equals(last, cache.get(ContentCache.hash(last))));
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link StaticState}
+ * @author matteo
+ */
+public class StaticStateTestCase extends TestCase {
+
+	/** mimics a class instrumented by the StaticStateInstrumenter */
+	private static class Instrumented {
+		static final int CONSTANT = 1;
+		static int counter = 10;
+		static String name = "initial";
+		static int[] array = { 1, 2, 3 };
+
+		static {
+			StaticState.initialized(Instrumented.class.getName());
+		}
+	}
+
+	/** the number of executions of the static initializer of {@link Cut} (i.e., its coverage) */
+	public static final AtomicInteger clinit = new AtomicInteger();
+
+	/** mimics a class under test, instrumented by the StaticStateInstrumenter, with a static collection */
+	public static class Cut {
+		static List<String> log = new ArrayList<String>();
+
+		static {
+			clinit.incrementAndGet();
+			StaticState.initialized(Cut.class.getName());
+		}
+
+		public static int run(String s) {
+			log.add(s);
+			return log.size();
+		}
+	}
+
+	/** loads its own copy of {@link Cut} and {@link StaticState}, like a remote class loader */
+	private static class CutLoader extends ClassLoader {
+
+		CutLoader() {
+			super(StaticStateTestCase.class.getClassLoader());
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if(!name.equals(Cut.class.getName()) && !name.equals(StaticState.class.getName()))
+				return super.loadClass(name, resolve);
+
+			Class<?> c = findLoadedClass(name);
+			if(c == null) {
+				try {
+					final InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+					final ByteArrayOutputStream out = new ByteArrayOutputStream();
+					final byte[] buff = new byte[4096];
+					for(int n = in.read(buff); n >= 0; n = in.read(buff))
+						out.write(buff, 0, n);
+					in.close();
+
+					final byte[] b = out.toByteArray();
+					c = defineClass(name, b, 0, b.length);
+				} catch(IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+
+			if(resolve) resolveClass(c);
+			return c;
+		}
+	}
+
+	/**
+	 * Executes a job requiring fresh classes
+	 * @return the size of the static collection, and the number of executions of the static initializer
+	 */
+	private static int[] execute(ClassLoader loader) throws Exception {
+		final int before = clinit.get();
+		final Method run = loader.loadClass(Cut.class.getName()).getMethod("run", String.class);
+		final int size = (Integer) run.invoke(null, "job");
+		return new int[] { size, clinit.get() - before };
+	}
+
+	/**
+	 * Jobs requiring fresh classes must observe the same static collections and
+	 * the same coverage of static initializers, regardless of the class loaders being reused.
+	 */
+	public void testReloadClasses() throws Exception {
+		// full reload: each job uses a new class loader
+		final int[] fresh1 = execute(new CutLoader());
+		final int[] fresh2 = execute(new CutLoader());
+		assertTrue(Arrays.equals(new int[] { 1, 1 }, fresh1));
+		assertTrue(Arrays.equals(fresh1, fresh2));
+
+		// the class loader is reused only if the static state is restored
+		final ClassLoader loader = new CutLoader();
+		final int[] reused1 = execute(loader);
+		final int[] reused2;
+		if(RemoteClassLoader.RESTORE_STATIC) {
+			loader.loadClass(StaticState.class.getName()).getMethod("restore").invoke(null);
+			reused2 = execute(loader);
+		} else {
+			reused2 = execute(new CutLoader());
+		}
+
+		assertTrue(Arrays.equals(fresh1, reused1));
+		assertTrue("the static state is not restored as a full reload: " + Arrays.toString(reused2), Arrays.equals(fresh2, reused2));
+	}
+
+	public void testRestore() throws Exception {
+		final int[] array = Instrumented.array;
+
+		Instrumented.counter++;
+		Instrumented.name = "modified";
+		Instrumented.array[0] = 42;
+		Instrumented.array = new int[0];
+
+		StaticState.restore();
+
+		assertEquals(1, Instrumented.CONSTANT);
+		assertEquals(10, Instrumented.counter);
+		assertEquals("initial", Instrumented.name);
+		assertSame(array, Instrumented.array);
+		assertEquals(1, Instrumented.array[0]);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.runner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link TestfulFuture} and the {@link CompletionQueue}
+ * @author matteo
+ */
+public class TestfulFutureTestCase extends TestCase {
+
+	public void testResult() throws Exception {
+		TestfulFuture<Integer> f = new TestfulFuture<Integer>("f");
+		assertFalse(f.isDone());
+
+		try {
+			f.get(10, TimeUnit.MILLISECONDS);
+			fail("The future is not completed");
+		} catch (TimeoutException e) {
+		}
+
+		f.setResult(42);
+		assertTrue(f.isDone());
+		assertEquals(Integer.valueOf(42), f.get());
+
+		try {
+			f.setResult(43);
+			fail("The future is already completed");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	public void testException() throws Exception {
+		TestfulFuture<Integer> f = new TestfulFuture<Integer>("f");
+		f.setException(new Exception("exc"));
+
+		try {
+			f.get();
+			fail("The future must throw an exception");
+		} catch (ExecutionException e) {
+			assertEquals("exc", e.getCause().getMessage());
+		}
+	}
+
+	public void testListeners() throws Exception {
+		final List<String> notified = new ArrayList<String>();
+
+		TestfulFuture<Integer> f = new TestfulFuture<Integer>("f");
+		for (final String name : new String[] { "a", "b" }) {
+			f.addListener(new TestfulFuture.Listener<Integer>() {
+				@Override
+				public void done(TestfulFuture<Integer> future) {
+					notified.add(name);
+				}
+			});
+		}
+
+		assertTrue(notified.isEmpty());
+		f.setResult(1);
+
+		f.addListener(new TestfulFuture.Listener<Integer>() {
+			@Override
+			public void done(TestfulFuture<Integer> future) {
+				notified.add("c");
+			}
+		});
+
+		assertEquals("[a, b, c]", notified.toString());
+	}
+
+	public void testCompletionOrder() throws Exception {
+		CompletionQueue<Integer, String> queue = new CompletionQueue<Integer, String>();
+
+		TestfulFuture<Integer> f1 = new TestfulFuture<Integer>("f1");
+		TestfulFuture<Integer> f2 = new TestfulFuture<Integer>("f2");
+		queue.add(f1, "first");
+		queue.add(f2, "second");
+		assertEquals(2, queue.size());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+		f2.setResult(2);
+		assertEquals("second", queue.take().getValue());
+
+		f1.setResult(1);
+		assertEquals("first", queue.take().getValue());
+		assertTrue(queue.isEmpty());
+	}
+
+	public void testCancel() throws Exception {
+		final List<String> notified = new ArrayList<String>();
+
+		TestfulFuture<Integer> f = new TestfulFuture<Integer>("f");
+		f.addListener(new TestfulFuture.Listener<Integer>() {
+			@Override
+			public void done(TestfulFuture<Integer> future) {
+				notified.add(future.isCancelled() ? "cancelled" : "done");
+			}
+		});
+
+		assertTrue(f.cancel(true));
+		assertTrue(f.isCancelled());
+		assertTrue(f.isDone());
+		assertEquals("[cancelled]", notified.toString());
+		assertFalse(f.cancel(true));
+
+		try {
+			f.get(10, TimeUnit.MILLISECONDS);
+			fail("The future has been cancelled");
+		} catch (CancellationException e) {
+		}
+
+		// a result racing with the cancellation is ignored
+		f.setResult(1);
+		f.setException(new Exception("exc"));
+		assertTrue(f.isCancelled());
+		assertEquals("[cancelled]", notified.toString());
+	}
+
+	public void testCancelAll() throws Exception {
+		CompletionQueue<Integer, String> queue = new CompletionQueue<Integer, String>();
+
+		TestfulFuture<Integer> f1 = new TestfulFuture<Integer>("f1");
+		TestfulFuture<Integer> f2 = new TestfulFuture<Integer>("f2");
+		queue.add(f1, "first");
+		queue.add(f2, "second");
+
+		f1.setResult(1);
+		assertEquals(1, queue.cancelAll());
+		assertFalse(f1.isCancelled());
+		assertTrue(f2.isCancelled());
+
+		assertEquals("first", queue.take().getValue());
+		assertTrue(queue.take().getKey().isCancelled());
+		assertTrue(queue.isEmpty());
+	}
+}
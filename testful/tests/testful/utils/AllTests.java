@@ -26,7 +26,10 @@ public class AllTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		//$JUnit-BEGIN$
+		suite.addTestSuite(CompactIOTestCase.class);
+		suite.addTestSuite(ConcurrentCacheTestCase.class);
 		suite.addTestSuite(SerializableEnvelopeTestCase.class);
+		suite.addTestSuite(WorkStealingQueueTestCase.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,89 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link CompactIO}
+ * @author matteo
+ */
+public class CompactIOTestCase extends TestCase {
+
+	public void testVarInt() throws Exception {
+		final int[] values = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for(int v : values) CompactIO.writeVarInt(out, v);
+		out.close();
+
+		// small values take a single byte
+		assertEquals(1, size(0));
+		assertEquals(1, size(127));
+		assertEquals(2, size(128));
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for(int v : values) assertEquals(v, CompactIO.readVarInt(in));
+		assertEquals(-1, in.read());
+	}
+
+	public void testBitSet() throws Exception {
+		// sparse: encoded with gaps
+		BitSet sparse = new BitSet();
+		sparse.set(3);
+		sparse.set(1000);
+		sparse.set(100000);
+		assertTrue(roundTrip(sparse) < 16);
+
+		// dense: encoded as raw bits
+		BitSet dense = new BitSet();
+		for(int i = 0; i < 4000; i += 3) dense.set(i);
+		assertTrue(roundTrip(dense) <= 4000 / 8 + 4);
+
+		roundTrip(new BitSet());
+	}
+
+	private static int size(int v) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		CompactIO.writeVarInt(out, v);
+		out.close();
+		return bytes.size();
+	}
+
+	private static int roundTrip(BitSet bs) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		CompactIO.writeBitSet(out, bs);
+		out.close();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(bs, CompactIO.readBitSet(in));
+		assertEquals(-1, in.read());
+
+		return bytes.size();
+	}
+}
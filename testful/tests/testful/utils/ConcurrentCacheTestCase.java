@@ -0,0 +1,103 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ConcurrentCache}
+ * @author matteo
+ */
+public class ConcurrentCacheTestCase extends TestCase {
+
+	public void testWeight() throws Exception {
+		ConcurrentCache<String, byte[]> cache = new ConcurrentCache<String, byte[]>(10, ConcurrentCache.BYTES);
+
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		assertEquals(8, cache.getWeight());
+
+		// replacing an element updates the weight
+		cache.put("b", new byte[2]);
+		assertEquals(6, cache.getWeight());
+		assertEquals(2, cache.get("b").length);
+
+		cache.put("c", new byte[4]);
+		assertEquals(10, cache.getWeight());
+		assertEquals(0, cache.getEvictions());
+
+		cache.put("d", new byte[4]);
+		assertTrue(cache.getWeight() <= 10);
+		assertEquals(1, cache.getEvictions());
+	}
+
+	public void testSecondChance() throws Exception {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(3);
+
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(3, "three");
+
+		// the oldest element has been used: the next one is evicted
+		assertEquals("one", cache.get(1));
+		cache.put(4, "four");
+
+		assertEquals(3, cache.size());
+		assertEquals("one", cache.get(1));
+		assertNull(cache.get(2));
+		assertEquals("three", cache.get(3));
+		assertEquals("four", cache.get(4));
+
+		assertEquals(4, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	public void testRemove() throws Exception {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(2);
+
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.remove(1);
+		assertEquals(1, cache.size());
+
+		cache.put(3, "three");
+		assertEquals(2, cache.size());
+		assertEquals(0, cache.getEvictions());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	public void testChurn() throws Exception {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<Integer, String>(1000);
+
+		// the cache never becomes full, but its elements are continuously replaced and removed
+		for (int i = 0; i < 100000; i++) {
+			cache.put(i % 10, "value");
+			cache.put(i % 10, "other value");
+			cache.remove((i + 5) % 10);
+		}
+
+		assertTrue(cache.size() <= 10);
+		assertTrue("the clock keeps " + cache.getClockSize() + " nodes", cache.getClockSize() < 200);
+		assertEquals(0, cache.getEvictions());
+	}
+}
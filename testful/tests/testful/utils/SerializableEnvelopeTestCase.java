@@ -59,6 +59,21 @@ public class SerializableEnvelopeTestCase extends TestCase {
 		}
 	}
 
+	public static class Direct implements SerializableEnvelope.Direct {
+
+		public int i;
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			out.writeInt(i);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			i = in.readInt();
+		}
+	}
+
 	public void testNoSerialization() {
 
 		NotSerializable object = new NotSerializable();
@@ -87,4 +102,15 @@ public class SerializableEnvelopeTestCase extends TestCase {
 
 	}
 
+	public void testDirect() throws Exception {
+		Direct object = new Direct();
+		object.i = 120;
+
+		// the object is written in the stream carrying the envelope, and it is available without a class loader
+		SerializableEnvelope<Direct> foo = SerializationUtils.copy(new SerializableEnvelope<Direct>(object));
+		Direct deser = foo.getObject(null);
+
+		assertNotSame(object, deser);
+		assertEquals(object.i, deser.i);
+	}
 }
@@ -0,0 +1,121 @@
+/*
+ * TestFul - http://code.google.com/p/testful/
+ * Copyright (C) 2011 Matteo Miraz
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package testful.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link WorkStealingQueue}
+ * @author matteo
+ */
+public class WorkStealingQueueTestCase extends TestCase {
+
+	public void testSteal() throws Exception {
+		WorkStealingQueue<Integer> q = new WorkStealingQueue<Integer>(4, 10);
+
+		for (int i = 0; i < 4; i++)
+			q.put(i);
+
+		assertEquals(4, q.size());
+		assertEquals(6, q.remainingCapacity());
+
+		// consumer 0 takes its element, then steals the others' ones
+		for (int i = 0; i < 4; i++)
+			assertEquals(Integer.valueOf(i), q.poll(0));
+
+		assertNull(q.poll(0));
+		assertTrue(q.isEmpty());
+		assertEquals(10, q.remainingCapacity());
+	}
+
+	public void testPriority() throws Exception {
+		WorkStealingQueue<String> q = new WorkStealingQueue<String>(2, 2, 2);
+
+		q.put("low1");
+		q.put("low2");
+		assertEquals(0, q.remainingCapacity());
+
+		// high-priority elements do not wait for space behind low-priority ones
+		q.put("high", 0);
+		assertEquals(1, q.remainingCapacity(0));
+
+		assertEquals("high", q.take(0));
+		assertEquals("low1", q.take(0));
+		assertEquals("low2", q.take(0));
+		assertTrue(q.isEmpty());
+	}
+
+	public void testConsumer() throws Exception {
+		WorkStealingQueue<String> q = new WorkStealingQueue<String>(2, 10);
+
+		q.put("a");
+		q.put("b", 0, 1);
+		q.put("c", 0, 1);
+
+		// consumer 1 takes its own elements first, then steals the others
+		assertEquals("b", q.take(1));
+		assertEquals("c", q.take(1));
+		assertEquals("a", q.take(1));
+		assertTrue(q.isEmpty());
+	}
+
+	public void testConcurrent() throws Exception {
+		final int consumers = 4;
+		final int elems = 10000;
+		final WorkStealingQueue<Integer> q = new WorkStealingQueue<Integer>(consumers, 16);
+		final AtomicLong sum = new AtomicLong();
+
+		Thread[] threads = new Thread[consumers];
+		for (int i = 0; i < consumers; i++) {
+			final int id = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while(true) {
+							int e = q.take(id);
+							if(e < 0) return;
+							sum.addAndGet(e);
+						}
+					} catch (InterruptedException e) {
+						fail(e.getMessage());
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		long expected = 0;
+		for (int i = 0; i < elems; i++) {
+			q.put(i);
+			expected += i;
+		}
+
+		for (int i = 0; i < consumers; i++)
+			q.put(-1);
+
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(expected, sum.get());
+		assertTrue(q.isEmpty());
+	}
+}